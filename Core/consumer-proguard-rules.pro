@@ -0,0 +1,14 @@
+# ProGuard rules applied to the apps using Core
+
+# Gson type adapters generated by GsonProcessor. GeneratedTypeAdapterFactory loads the generated
+# registry by name, the registry matches the annotated classes by name, and the adapters translate
+# the names of the fields without @SerializedName with a FieldNamingStrategy, through reflection
+-keepattributes *Annotation*,Signature
+-keep @interface org.zalando.core.network.GenerateTypeAdapter
+-keepnames @org.zalando.core.network.GenerateTypeAdapter class *
+-keepclassmembers @org.zalando.core.network.GenerateTypeAdapter class * {
+  <fields>;
+}
+-keep class org.zalando.core.network.GeneratedTypeAdapters {
+  public <init>(com.google.gson.FieldNamingStrategy);
+}
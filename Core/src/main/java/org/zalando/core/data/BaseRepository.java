@@ -3,17 +3,32 @@ package org.zalando.core.data;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.SingleTransformer;
 import io.reactivex.annotations.NonNull;
-import io.reactivex.functions.Function;
+import io.reactivex.functions.Action;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import org.zalando.core.exception.BaseThrowable;
 
 /**
  * Base implementation of {@link org.zalando.core.data.BaseRepository}
  */
 public abstract class BaseRepository {
 
+  private static final int MAX_BACKOFF_DELAY_MILLIS = 10000;
+
+  // Requests running, by the key given by the caller. Guarded by themselves
+  private final Map<Object, Observable<?>> inFlightObservables = new HashMap<>();
+  private final Map<Object, Single<?>> inFlightSingles = new HashMap<>();
+
   /**
-   * Applies an exponential retrial logic to {@link Observable}
+   * Applies an exponential retrial logic to {@link Observable}, with full jitter and delays capped
+   * at 10s. Only {@link BaseThrowable.Type#RECOVERABLE} errors are retried. Use a {@link
+   * RetryPolicy} for more control
    *
    * @param maxRetries {@link Integer} with the maximum amount or retrials
    * @param initialDelayInMillis {@link Integer} with the initial delay in millis
@@ -22,53 +37,146 @@ public abstract class BaseRepository {
    */
   public <T> ObservableTransformer<T, T> applyExponentialBackoff(final int maxRetries,
       final int initialDelayInMillis) {
+    return new RetryPolicy.Builder()
+        .setMaxRetries(maxRetries)
+        .setBaseDelay(initialDelayInMillis, TimeUnit.MILLISECONDS)
+        .setMaxDelay(Math.max(initialDelayInMillis, MAX_BACKOFF_DELAY_MILLIS),
+            TimeUnit.MILLISECONDS)
+        .build()
+        .forObservable();
+  }
+
+  /**
+   * Shares the {@link Observable} among all the subscribers using the same key while it is
+   * running, so concurrent requests for the same resource only subscribe once upstream. The
+   * request is forgotten once it terminates or all its subscribers are gone
+   *
+   * @param key {@link Object} identifying the request, with proper equals and hashCode
+   * @param <T> {@link T} type of the {@link Observable}
+   * @return {@link ObservableTransformer} to modify the {@link Observable}
+   */
+  public <T> ObservableTransformer<T, T> applyDeduplicationToObservable(@NonNull final Object key) {
     return new ObservableTransformer<T, T>() {
       @Override
-      public ObservableSource<T> apply(Observable<T> observable) {
-        return observable
-            .retryWhen(new RetryWithExponentialDelay(maxRetries, initialDelayInMillis));
+      public ObservableSource<T> apply(final Observable<T> observable) {
+        return Observable.defer(new Callable<ObservableSource<T>>() {
+          @Override
+          public ObservableSource<T> call() throws Exception {
+            return inFlightObservable(key, observable);
+          }
+        });
       }
     };
   }
 
   /**
-   * Class to apply to {@link Observable} an exponential retry backoff
+   * Shares the {@link Single} among all the subscribers using the same key while it is running,
+   * so concurrent requests for the same resource only subscribe once upstream. The request is
+   * forgotten once it terminates or all its subscribers are gone
+   *
+   * @param key {@link Object} identifying the request, with proper equals and hashCode
+   * @param <T> {@link T} type of the {@link Single}
+   * @return {@link SingleTransformer} to modify the {@link Single}
    */
-  private class RetryWithExponentialDelay implements
-      Function<Observable<Throwable>, ObservableSource<?>> {
+  public <T> SingleTransformer<T, T> applyDeduplicationToSingle(@NonNull final Object key) {
+    return new SingleTransformer<T, T>() {
+      @Override
+      public SingleSource<T> apply(final Single<T> single) {
+        return Single.defer(new Callable<SingleSource<T>>() {
+          @Override
+          public SingleSource<T> call() throws Exception {
+            return inFlightSingle(key, single);
+          }
+        });
+      }
+    };
+  }
 
-    private final int maxRetries;
-    private int retryDelayMillis;
-    private int retryCount;
+  /**
+   * Emits the value cached for the key in the given {@link RepositoryCache}, if any, followed by
+   * the values of the {@link Observable}, which are cached as they arrive
+   *
+   * @param cache {@link RepositoryCache} holding the values
+   * @param key {@link String} identifying the request
+   * @param <T> {@link T} type of the {@link Observable}
+   * @return {@link ObservableTransformer} to modify the {@link Observable}
+   */
+  public <T> ObservableTransformer<T, T> applyCacheToObservable(
+      @NonNull RepositoryCache<T> cache, @NonNull String key) {
+    return cache.cacheThenNetwork(key);
+  }
+
+  /**
+   * Emits the value cached for the key in the given {@link RepositoryCache} if there is a valid
+   * one, otherwise subscribes to the {@link Single} and caches its value
+   *
+   * @param cache {@link RepositoryCache} holding the values
+   * @param key {@link String} identifying the request
+   * @param <T> {@link T} type of the {@link Single}
+   * @return {@link SingleTransformer} to modify the {@link Single}
+   */
+  public <T> SingleTransformer<T, T> applyCacheToSingle(@NonNull RepositoryCache<T> cache,
+      @NonNull String key) {
+    return cache.readThrough(key);
+  }
+
+  private <T> Observable<T> inFlightObservable(Object key, Observable<T> observable) {
+    synchronized (inFlightObservables) {
+      @SuppressWarnings("unchecked")
+      Observable<T> shared = (Observable<T>) inFlightObservables.get(key);
+      if (shared == null) {
+        final InFlightRemoval removal = new InFlightRemoval(inFlightObservables, key);
+        shared = observable
+            .doOnTerminate(removal)
+            .doOnDispose(removal)
+            .share();
+        removal.request = shared;
+        inFlightObservables.put(key, shared);
+      }
+      return shared;
+    }
+  }
 
-    RetryWithExponentialDelay(final int maxRetries, final int retryDelayMillis) {
-      this.maxRetries = maxRetries;
-      this.retryDelayMillis = retryDelayMillis;
-      this.retryCount = 0;
+  private <T> Single<T> inFlightSingle(Object key, Single<T> single) {
+    synchronized (inFlightSingles) {
+      @SuppressWarnings("unchecked")
+      Single<T> shared = (Single<T>) inFlightSingles.get(key);
+      if (shared == null) {
+        final InFlightRemoval removal = new InFlightRemoval(inFlightSingles, key);
+        shared = single.toObservable()
+            .doOnTerminate(removal)
+            .doOnDispose(removal)
+            .share()
+            .singleOrError();
+        removal.request = shared;
+        inFlightSingles.put(key, shared);
+      }
+      return shared;
+    }
+  }
 
+  /**
+   * Removes a request from the running ones, unless it has already been replaced by a new one
+   */
+  private static class InFlightRemoval implements Action {
+
+    private final Map<Object, ?> requests;
+    private final Object key;
+    // Guarded by requests
+    private Object request;
+
+    InFlightRemoval(Map<Object, ?> requests, Object key) {
+      this.requests = requests;
+      this.key = key;
     }
 
     @Override
-    public ObservableSource<?> apply(@NonNull Observable<Throwable> attempts) throws Exception {
-
-      return attempts
-          .flatMap(new Function<Throwable, ObservableSource<?>>() {
-            @Override
-            public ObservableSource<?> apply(@NonNull Throwable throwable) throws Exception {
-              if (++retryCount < maxRetries) {
-
-                // apply the exponential backoff
-                retryDelayMillis *= retryCount;
-
-                // When this Observable calls onNext, the original
-                // Observable will be retried (i.e. re-subscribed).
-                return Observable.timer(retryDelayMillis, TimeUnit.MILLISECONDS);
-              }
-
-              // Max retries hit. Just pass the error along.
-              return Observable.error(throwable);
-            }
-          });
+    public void run() throws Exception {
+      synchronized (requests) {
+        if (requests.get(key) == request) {
+          requests.remove(key);
+        }
+      }
     }
   }
 
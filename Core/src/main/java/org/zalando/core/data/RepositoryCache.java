@@ -0,0 +1,540 @@
+package org.zalando.core.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+import io.reactivex.MaybeOnSubscribe;
+import io.reactivex.MaybeSource;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.SingleTransformer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.zalando.core.utils.Preconditions;
+import timber.log.Timber;
+
+/**
+ * Two tier read-through cache for the results of a repository. The memory tier is a {@link
+ * LruCache} bounded by number of entries, so repeated reads are served synchronously. The disk tier
+ * keeps every value as a JSON file named after the digest of its key, bounded by number of files
+ * as well. Disk operations run one at a time, in the order they were requested, on a worker of the
+ * given {@link Scheduler}, so a value invalidated or replaced is never read back. Entries of both
+ * tiers expire once the time to live is over, expired files are swept from disk.
+ *
+ * Values are cached through {@link BaseRepository#applyCacheToObservable(RepositoryCache, String)},
+ * which emits the cached value and then the network one, and {@link
+ * BaseRepository#applyCacheToSingle(RepositoryCache, String)}, which only goes to the network when
+ * nothing is cached.
+ *
+ * @param <T> {@link T} type of the cached values
+ */
+public class RepositoryCache<T> {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String FIELD_SAVED_AT = "savedAt";
+  private static final String FIELD_VALUE = "value";
+  private static final String FILE_EXTENSION = ".json";
+  private static final String TEMPORARY_EXTENSION = ".tmp";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Gson gson;
+  private final Type type;
+  private final File directory;
+  private final int maxDiskEntries;
+  private final long timeToLiveMillis;
+  private final Scheduler scheduler;
+  // Runs the disk operations in order, one at a time
+  private final Scheduler.Worker diskWorker;
+  private final LruCache<String, Entry<T>> memory;
+  // Guards the changes of memory and invalidations
+  private final Object lock = new Object();
+  // Increased on every invalidation, so reads started before do not move values to memory
+  private long invalidations;
+  // Whether the files expired in previous sessions were swept. Only used by the disk worker
+  private boolean swept;
+
+  /**
+   * Constructor, doing the disk operations on {@link Schedulers#io()}
+   *
+   * @param gson {@link Gson} to serialise the values on disk
+   * @param type {@link Type} of the values
+   * @param maxMemoryEntries {@link Integer} with the maximum amount of values kept in memory
+   * @param directory {@link File} with the directory of the disk tier, only used by this cache
+   * @param maxDiskEntries {@link Integer} with the maximum amount of values kept on disk
+   * @param timeToLive {@link Long} with the time the values are valid
+   * @param unit {@link TimeUnit} of the time to live
+   */
+  public RepositoryCache(@NonNull Gson gson, @NonNull Type type, int maxMemoryEntries,
+      @NonNull File directory, int maxDiskEntries, long timeToLive, @NonNull TimeUnit unit) {
+
+    this(gson, type, maxMemoryEntries, directory, maxDiskEntries, timeToLive, unit,
+        Schedulers.io());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param gson {@link Gson} to serialise the values on disk
+   * @param type {@link Type} of the values
+   * @param maxMemoryEntries {@link Integer} with the maximum amount of values kept in memory
+   * @param directory {@link File} with the directory of the disk tier, only used by this cache
+   * @param maxDiskEntries {@link Integer} with the maximum amount of values kept on disk
+   * @param timeToLive {@link Long} with the time the values are valid
+   * @param unit {@link TimeUnit} of the time to live
+   * @param scheduler {@link Scheduler} for the disk operations, also providing the current time.
+   * The cache keeps one of its workers
+   */
+  public RepositoryCache(@NonNull Gson gson, @NonNull Type type, int maxMemoryEntries,
+      @NonNull File directory, int maxDiskEntries, long timeToLive, @NonNull TimeUnit unit,
+      @NonNull Scheduler scheduler) {
+
+    Preconditions.checkArgument(maxMemoryEntries > 0, "Memory entries must be positive");
+    Preconditions.checkArgument(maxDiskEntries > 0, "Disk entries must be positive");
+    Preconditions.checkArgument(timeToLive > 0, "Time to live must be positive");
+    this.gson = gson;
+    this.type = type;
+    this.directory = directory;
+    this.maxDiskEntries = maxDiskEntries;
+    this.timeToLiveMillis = unit.toMillis(timeToLive);
+    this.scheduler = scheduler;
+    this.diskWorker = scheduler.createWorker();
+    this.memory = new LruCache<>(maxMemoryEntries);
+  }
+
+  /**
+   * Emits the cached value of the given key, if any, and then the values of the {@link
+   * Observable}, which are cached as they arrive
+   *
+   * @param key {@link String} identifying the request
+   * @return {@link ObservableTransformer} to modify the {@link Observable}
+   */
+  ObservableTransformer<T, T> cacheThenNetwork(@NonNull final String key) {
+
+    return new ObservableTransformer<T, T>() {
+      @Override
+      public ObservableSource<T> apply(Observable<T> observable) {
+
+        return Observable.concat(get(key).toObservable(), observable.doOnNext(new Put(key)));
+      }
+    };
+  }
+
+  /**
+   * Emits the cached value of the given key if there is one, otherwise the value of the {@link
+   * Single}, which is cached
+   *
+   * @param key {@link String} identifying the request
+   * @return {@link SingleTransformer} to modify the {@link Single}
+   */
+  SingleTransformer<T, T> readThrough(@NonNull final String key) {
+
+    return new SingleTransformer<T, T>() {
+      @Override
+      public SingleSource<T> apply(Single<T> single) {
+
+        return get(key).switchIfEmpty(single.doOnSuccess(new Put(key)).toMaybe()).toSingle();
+      }
+    };
+  }
+
+  /**
+   * Provides the cached value of the given key. Values in memory are emitted synchronously, values
+   * on disk are read on the {@link Scheduler}, after the disk operations requested before, and
+   * moved to memory
+   *
+   * @param key {@link String} identifying the request
+   * @return {@link Maybe} with the value, empty if nothing valid is cached
+   */
+  public Maybe<T> get(@NonNull final String key) {
+
+    return Maybe.defer(new Callable<MaybeSource<T>>() {
+      @Override
+      public MaybeSource<T> call() throws Exception {
+
+        final Entry<T> entry = memory.get(key);
+        if (entry != null) {
+          if (isValid(entry)) {
+            return Maybe.just(entry.value);
+          }
+          memory.remove(key);
+        }
+        return Maybe.create(new MaybeOnSubscribe<T>() {
+          @Override
+          public void subscribe(final MaybeEmitter<T> emitter) throws Exception {
+
+            final long readInvalidations = invalidations();
+            emitter.setDisposable(diskWorker.schedule(new Runnable() {
+              @Override
+              public void run() {
+
+                final T value = readFromDisk(key, readInvalidations);
+                if (value != null) {
+                  emitter.onSuccess(value);
+                } else {
+                  emitter.onComplete();
+                }
+              }
+            }));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Caches the given value in memory right away and on disk on the {@link Scheduler}
+   *
+   * @param key {@link String} identifying the request
+   * @param value {@link T} to cache
+   */
+  public void put(@NonNull final String key, @NonNull T value) {
+
+    final Entry<T> entry = new Entry<>(value, scheduler.now(TimeUnit.MILLISECONDS));
+    synchronized (lock) {
+      memory.put(key, entry);
+    }
+    diskWorker.schedule(new Runnable() {
+      @Override
+      public void run() {
+
+        writeToDisk(key, entry);
+      }
+    });
+  }
+
+  /**
+   * Removes the value of the given key from both tiers, so the next read goes to the network
+   *
+   * @param key {@link String} identifying the request
+   */
+  public void invalidate(@NonNull final String key) {
+
+    synchronized (lock) {
+      invalidations++;
+      memory.remove(key);
+    }
+    diskWorker.schedule(new Runnable() {
+      @Override
+      public void run() {
+
+        final File file = fileOf(key);
+        if (file.exists() && !file.delete()) {
+          Timber.w("invalidate: unable to delete %s", file);
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes all the values from both tiers
+   */
+  public void invalidateAll() {
+
+    synchronized (lock) {
+      invalidations++;
+      memory.evictAll();
+    }
+    diskWorker.schedule(new Runnable() {
+      @Override
+      public void run() {
+
+        final File[] files = directory.listFiles();
+        if (files == null) {
+          return;
+        }
+        for (File file : files) {
+          if (!file.delete()) {
+            Timber.w("invalidateAll: unable to delete %s", file);
+          }
+        }
+      }
+    });
+  }
+
+  private boolean isValid(Entry<T> entry) {
+
+    return isValid(entry.savedAt);
+  }
+
+  private boolean isValid(long savedAt) {
+
+    return scheduler.now(TimeUnit.MILLISECONDS) - savedAt < timeToLiveMillis;
+  }
+
+  private long invalidations() {
+
+    synchronized (lock) {
+      return invalidations;
+    }
+  }
+
+  /**
+   * Reads the value of the given key from disk, moving it to memory. Expired and unreadable files
+   * are deleted. Runs on the disk worker
+   *
+   * @param key {@link String} identifying the request
+   * @param readInvalidations {@link Long} with the invalidations when the read was requested
+   * @return {@link T} cached or null if there is no valid one, or it was invalidated meanwhile
+   */
+  @Nullable
+  private T readFromDisk(String key, long readInvalidations) {
+
+    final File file = fileOf(key);
+    if (!file.exists()) {
+      return null;
+    }
+
+    Entry<T> entry = null;
+    JsonReader reader = null;
+    try {
+      reader = new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+      long savedAt = 0;
+      T value = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        final String name = reader.nextName();
+        if (FIELD_SAVED_AT.equals(name)) {
+          savedAt = reader.nextLong();
+        } else if (FIELD_VALUE.equals(name)) {
+          value = gson.fromJson(reader, type);
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (value != null) {
+        entry = new Entry<>(value, savedAt);
+      }
+    } catch (IOException | RuntimeException e) {
+      Timber.w(e, "readFromDisk: unable to read %s", file);
+    } finally {
+      closeQuietly(reader);
+    }
+
+    if (entry == null || !isValid(entry)) {
+      file.delete();
+      return null;
+    }
+    synchronized (lock) {
+      if (invalidations != readInvalidations) {
+        return null;
+      }
+      // Keeps the newer value if another one was put meanwhile
+      if (memory.get(key) == null) {
+        memory.put(key, entry);
+      }
+    }
+    return entry.value;
+  }
+
+  /**
+   * Writes the given entry to disk, and sweeps the disk tier when it is over its size. It goes to a
+   * temporary file first, so a crash never leaves a partially written one. Runs on the disk worker
+   *
+   * @param key {@link String} identifying the request
+   * @param entry {@link Entry} to write
+   */
+  private void writeToDisk(String key, Entry<T> entry) {
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Timber.w("writeToDisk: unable to create %s", directory);
+      return;
+    }
+    final File file = fileOf(key);
+    final File temporaryFile = new File(directory, file.getName() + TEMPORARY_EXTENSION);
+    JsonWriter writer = null;
+    try {
+      writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), UTF_8));
+      writer.beginObject();
+      writer.name(FIELD_SAVED_AT).value(entry.savedAt);
+      writer.name(FIELD_VALUE);
+      gson.toJson(entry.value, type, writer);
+      writer.endObject();
+      // Closed here, as failing to flush fails the write
+      writer.close();
+    } catch (IOException | RuntimeException e) {
+      Timber.w(e, "writeToDisk: unable to write %s", temporaryFile);
+      closeQuietly(writer);
+      temporaryFile.delete();
+      return;
+    }
+    if (!temporaryFile.renameTo(file)) {
+      Timber.w("writeToDisk: unable to rename %s", temporaryFile);
+      temporaryFile.delete();
+    }
+
+    final File[] files = directory.listFiles();
+    if (!swept || (files != null && files.length > maxDiskEntries)) {
+      swept = true;
+      sweep(files);
+    }
+  }
+
+  /**
+   * Deletes the expired and the temporary files left, and then the oldest files over the maximum
+   * amount of entries. Runs on the disk worker
+   *
+   * @param files {@link File} array with the files of the directory, null if it can not be listed
+   */
+  private void sweep(@Nullable File[] files) {
+
+    if (files == null) {
+      return;
+    }
+    final long[] savedAts = new long[files.length];
+    final Integer[] kept = new Integer[files.length];
+    int keptCount = 0;
+    for (int i = 0; i < files.length; i++) {
+      final Long savedAt = files[i].getName().endsWith(FILE_EXTENSION)
+          ? readSavedAt(files[i]) : null;
+      if (savedAt != null && isValid(savedAt)) {
+        savedAts[i] = savedAt;
+        kept[keptCount++] = i;
+      } else if (!files[i].delete()) {
+        Timber.w("sweep: unable to delete %s", files[i]);
+      }
+    }
+    if (keptCount <= maxDiskEntries) {
+      return;
+    }
+
+    // Newest first
+    Arrays.sort(kept, 0, keptCount, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer first, Integer second) {
+
+        final long firstSavedAt = savedAts[first];
+        final long secondSavedAt = savedAts[second];
+        return firstSavedAt < secondSavedAt ? 1 : (firstSavedAt == secondSavedAt ? 0 : -1);
+      }
+    });
+    for (int i = maxDiskEntries; i < keptCount; i++) {
+      final File file = files[kept[i]];
+      if (!file.delete()) {
+        Timber.w("sweep: unable to delete %s", file);
+      }
+    }
+  }
+
+  /**
+   * Reads when the value of the given file was saved, which is written first
+   *
+   * @param file {@link File} of a value
+   * @return {@link Long} with the time it was saved, null if it can not be read
+   */
+  @Nullable
+  private static Long readSavedAt(File file) {
+
+    JsonReader reader = null;
+    try {
+      reader = new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+      reader.beginObject();
+      if (reader.hasNext() && FIELD_SAVED_AT.equals(reader.nextName())) {
+        return reader.nextLong();
+      }
+    } catch (IOException | RuntimeException e) {
+      Timber.w(e, "readSavedAt: unable to read %s", file);
+    } finally {
+      closeQuietly(reader);
+    }
+    return null;
+  }
+
+  /**
+   * Closes the given reader or writer, logging any failure. try-with-resources needs API 19
+   *
+   * @param closeable {@link Closeable} to close, or null if it was not opened
+   */
+  private static void closeQuietly(@Nullable Closeable closeable) {
+
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      Timber.w(e, "closeQuietly: unable to close %s", closeable);
+    }
+  }
+
+  /**
+   * Provides the file of the given key, named after the MD5 digest of the key in hex
+   *
+   * @param key {@link String} identifying the request
+   * @return {@link File} of the key in the directory of the cache
+   */
+  private File fileOf(String key) {
+
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("MD5").digest(key.getBytes(UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+    final char[] name = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      name[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+      name[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+    }
+    return new File(directory, new String(name) + FILE_EXTENSION);
+  }
+
+  /**
+   * Caches every value received for a key
+   */
+  private final class Put implements Consumer<T> {
+
+    private final String key;
+
+    Put(String key) {
+
+      this.key = key;
+    }
+
+    @Override
+    public void accept(T value) throws Exception {
+
+      put(key, value);
+    }
+  }
+
+  /**
+   * Cached value with the time it was saved
+   */
+  private static final class Entry<T> {
+
+    final T value;
+    final long savedAt;
+
+    Entry(T value, long savedAt) {
+
+      this.value = value;
+      this.savedAt = savedAt;
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package org.zalando.core.data;
+
+import android.support.annotation.NonNull;
+import java.util.HashMap;
+import java.util.Map;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Limits the retries done by all the calls sharing it, usually all the calls to one host. It is a
+ * token bucket: every retry takes a token and tokens are given back at a fixed rate, so when a
+ * backend fails the clients stop retrying once the budget is spent instead of multiplying its load
+ */
+public final class RetryBudget {
+
+  private static final int DEFAULT_MAX_RETRIES = 10;
+  private static final double DEFAULT_RETRIES_PER_SECOND = 1;
+
+  // Budgets by host. Guarded by itself
+  private static final Map<String, RetryBudget> HOST_BUDGETS = new HashMap<>();
+
+  private final int maxRetries;
+  private final double retriesPerMilli;
+  // Guarded by this
+  private double tokens;
+  private long lastRefillMillis = -1;
+
+  /**
+   * Constructor
+   *
+   * @param maxRetries {@link Integer} with the retries allowed in a burst
+   * @param retriesPerSecond {@link Double} with the rate at which retries are given back
+   */
+  public RetryBudget(int maxRetries, double retriesPerSecond) {
+
+    Preconditions.checkArgument(maxRetries > 0, "Max retries must be positive");
+    Preconditions.checkArgument(retriesPerSecond > 0, "Retries per second must be positive");
+    this.maxRetries = maxRetries;
+    this.retriesPerMilli = retriesPerSecond / 1000;
+    this.tokens = maxRetries;
+  }
+
+  /**
+   * Provides the budget shared by all the calls to the given host, allowing bursts of 10 retries
+   * and one more retry per second
+   *
+   * @param host {@link String} with the host
+   * @return {@link RetryBudget} of the host
+   */
+  public static RetryBudget forHost(@NonNull String host) {
+
+    synchronized (HOST_BUDGETS) {
+      RetryBudget budget = HOST_BUDGETS.get(host);
+      if (budget == null) {
+        budget = new RetryBudget(DEFAULT_MAX_RETRIES, DEFAULT_RETRIES_PER_SECOND);
+        HOST_BUDGETS.put(host, budget);
+      }
+      return budget;
+    }
+  }
+
+  /**
+   * Takes a retry from the budget, if there is any left
+   *
+   * @param nowMillis {@link Long} with the current time in millis
+   * @return {@link Boolean} indicating if the retry is allowed
+   */
+  synchronized boolean tryAcquire(long nowMillis) {
+
+    if (lastRefillMillis >= 0 && nowMillis > lastRefillMillis) {
+      tokens = Math.min(maxRetries, tokens + (nowMillis - lastRefillMillis) * retriesPerMilli);
+    }
+    lastRefillMillis = Math.max(lastRefillMillis, nowMillis);
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+}
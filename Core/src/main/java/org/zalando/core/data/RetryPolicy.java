@@ -0,0 +1,295 @@
+package org.zalando.core.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.SingleTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.zalando.core.exception.BaseThrowable;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Retries failed requests with exponential backoff and full jitter: the delay before a retry is a
+ * random time between zero and the base delay doubled on every attempt, capped by the max delay.
+ * Only errors of type {@link BaseThrowable.Type#RECOVERABLE} are retried, and every retry has to
+ * be granted by the {@link RetryBudget}, if any, so clients spread their retries and stop them
+ * when the backend keeps failing.
+ *
+ * The policy has no state of its own, every subscription counts its own attempts.
+ */
+public final class RetryPolicy {
+
+  private final int maxRetries;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private final RetryBudget budget;
+  private final Listener listener;
+  private final Scheduler scheduler;
+  private final Random random;
+
+  private RetryPolicy(Builder builder) {
+
+    this.maxRetries = builder.maxRetries;
+    this.baseDelayMillis = builder.baseDelayMillis;
+    this.maxDelayMillis = builder.maxDelayMillis;
+    this.budget = builder.budget;
+    this.listener = builder.listener;
+    this.scheduler = builder.scheduler;
+    this.random = builder.random;
+  }
+
+  /**
+   * Applies the policy to an {@link Observable}
+   *
+   * @param <T> {@link T} type of the {@link Observable}
+   * @return {@link ObservableTransformer} to modify the {@link Observable}
+   */
+  public <T> ObservableTransformer<T, T> forObservable() {
+
+    return new ObservableTransformer<T, T>() {
+      @Override
+      public ObservableSource<T> apply(Observable<T> observable) {
+
+        return observable.retryWhen(new RetryHandler());
+      }
+    };
+  }
+
+  /**
+   * Applies the policy to a {@link Single}
+   *
+   * @param <T> {@link T} type of the {@link Single}
+   * @return {@link SingleTransformer} to modify the {@link Single}
+   */
+  public <T> SingleTransformer<T, T> forSingle() {
+
+    return new SingleTransformer<T, T>() {
+      @Override
+      public SingleSource<T> apply(Single<T> single) {
+
+        return single.toObservable().retryWhen(new RetryHandler()).singleOrError();
+      }
+    };
+  }
+
+  /**
+   * Checks if the given error can be retried
+   *
+   * @param throwable {@link Throwable} to check
+   * @return {@link Boolean} indicating if it is {@link BaseThrowable.Type#RECOVERABLE}
+   */
+  static boolean isRecoverable(Throwable throwable) {
+
+    final BaseThrowable baseThrowable = throwable instanceof BaseThrowable
+        ? (BaseThrowable) throwable : new BaseThrowable(throwable);
+    return baseThrowable.getType() == BaseThrowable.Type.RECOVERABLE;
+  }
+
+  /**
+   * Computes the delay before the given retry
+   *
+   * @param retry {@link Integer} with the number of the retry, starting at 1
+   * @return {@link Long} with a random delay in millis between zero and the capped backoff
+   */
+  long delayMillis(int retry) {
+
+    // Doubling stops once past the cap, so it never overflows
+    long ceiling = baseDelayMillis;
+    for (int i = 1; i < retry && ceiling < maxDelayMillis; i++) {
+      ceiling *= 2;
+    }
+    ceiling = Math.min(ceiling, maxDelayMillis);
+    synchronized (random) {
+      return (long) (random.nextDouble() * (ceiling + 1));
+    }
+  }
+
+  /**
+   * Decides on every error of one subscription if it is retried, and when
+   */
+  private final class RetryHandler implements
+      Function<Observable<Throwable>, ObservableSource<?>> {
+
+    @Override
+    public ObservableSource<?> apply(Observable<Throwable> attempts) throws Exception {
+
+      // Called once per subscription, so the count is not shared by resubscriptions
+      final int[] retries = new int[1];
+      return attempts.flatMap(new Function<Throwable, ObservableSource<?>>() {
+        @Override
+        public ObservableSource<?> apply(Throwable throwable) throws Exception {
+
+          if (!isRecoverable(throwable) || retries[0] >= maxRetries) {
+            if (listener != null) {
+              listener.onGiveUp(retries[0], throwable);
+            }
+            return Observable.error(throwable);
+          }
+          if (budget != null && !budget.tryAcquire(scheduler.now(TimeUnit.MILLISECONDS))) {
+            if (listener != null) {
+              listener.onBudgetExhausted(retries[0], throwable);
+            }
+            return Observable.error(throwable);
+          }
+          final int retry = ++retries[0];
+          final long delay = delayMillis(retry);
+          if (listener != null) {
+            listener.onRetry(retry, delay, throwable);
+          }
+          return Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler);
+        }
+      });
+    }
+  }
+
+  /**
+   * Metrics hooks of a {@link RetryPolicy}. Called from the thread where the error is received
+   */
+  public interface Listener {
+
+    /**
+     * Called when a retry is scheduled
+     *
+     * @param retry {@link Integer} with the number of the retry, starting at 1
+     * @param delayMillis {@link Long} with the delay before the retry
+     * @param throwable {@link Throwable} that caused the retry
+     */
+    void onRetry(int retry, long delayMillis, @NonNull Throwable throwable);
+
+    /**
+     * Called when an error is not retried because it is not recoverable or there are no retries
+     * left
+     *
+     * @param retries {@link Integer} with the retries done
+     * @param throwable {@link Throwable} passed along
+     */
+    void onGiveUp(int retries, @NonNull Throwable throwable);
+
+    /**
+     * Called when a recoverable error is not retried because the {@link RetryBudget} is spent
+     *
+     * @param retries {@link Integer} with the retries done
+     * @param throwable {@link Throwable} passed along
+     */
+    void onBudgetExhausted(int retries, @NonNull Throwable throwable);
+  }
+
+  /**
+   * Builder of {@link RetryPolicy}
+   */
+  public static final class Builder {
+
+    private int maxRetries = 3;
+    private long baseDelayMillis = 100;
+    private long maxDelayMillis = 10000;
+    private RetryBudget budget;
+    private Listener listener;
+    private Scheduler scheduler = Schedulers.computation();
+    private Random random = new Random();
+
+    /**
+     * Set the maximum amount of retries, 3 by default
+     *
+     * @param maxRetries {@link Integer} with the maximum amount of retries
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setMaxRetries(int maxRetries) {
+
+      Preconditions.checkArgument(maxRetries >= 0, "Max retries can not be negative");
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Set the delay of the first retry, doubled on every following one. 100ms by default
+     *
+     * @param baseDelay {@link Long} with the delay
+     * @param unit {@link TimeUnit} of the delay
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setBaseDelay(long baseDelay, @NonNull TimeUnit unit) {
+
+      Preconditions.checkArgument(baseDelay >= 0, "Base delay can not be negative");
+      this.baseDelayMillis = unit.toMillis(baseDelay);
+      return this;
+    }
+
+    /**
+     * Set the maximum delay before a retry, 10s by default
+     *
+     * @param maxDelay {@link Long} with the delay
+     * @param unit {@link TimeUnit} of the delay
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setMaxDelay(long maxDelay, @NonNull TimeUnit unit) {
+
+      Preconditions.checkArgument(maxDelay > 0, "Max delay must be positive");
+      this.maxDelayMillis = unit.toMillis(maxDelay);
+      return this;
+    }
+
+    /**
+     * Set the budget every retry has to be granted by, none by default
+     *
+     * @param budget {@link RetryBudget} usually shared by all the calls to one host. See {@link
+     * RetryBudget#forHost(String)}
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setBudget(@Nullable RetryBudget budget) {
+
+      this.budget = budget;
+      return this;
+    }
+
+    /**
+     * Set the listener notified of the retries
+     *
+     * @param listener {@link Listener} for the metrics
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setListener(@Nullable Listener listener) {
+
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Set the scheduler waiting for the retries, {@link Schedulers#computation()} by default
+     *
+     * @param scheduler {@link Scheduler} for the delays
+     * @return {@link Builder} to continue building the policy
+     */
+    public Builder setScheduler(@NonNull Scheduler scheduler) {
+
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    Builder setRandom(@NonNull Random random) {
+
+      this.random = random;
+      return this;
+    }
+
+    /**
+     * Builds the policy
+     *
+     * @return {@link RetryPolicy} with the given settings
+     */
+    public RetryPolicy build() {
+
+      Preconditions.checkArgument(baseDelayMillis <= maxDelayMillis,
+          "Base delay can not be greater than max delay");
+      return new RetryPolicy(this);
+    }
+  }
+
+}
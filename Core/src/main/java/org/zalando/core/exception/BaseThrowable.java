@@ -1,6 +1,7 @@
 package org.zalando.core.exception;
 
 import java.net.HttpURLConnection;
+import org.zalando.core.network.CircuitBreakerOpenException;
 import org.zalando.core.utils.ThrowableUtils;
 import retrofit2.HttpException;
 
@@ -22,6 +23,7 @@ public class BaseThrowable extends Throwable {
     int NO_NETWORK = 0;
     int RECOVERABLE = 1;
     int AUTHORIZATION = 2;
+    int CIRCUIT_OPEN = 3;
   }
 
   private final Throwable sourceThrowable;
@@ -46,6 +48,12 @@ public class BaseThrowable extends Throwable {
 
     // Parse the error with a known type
 
+    // request rejected without reaching the network
+    if (sourceThrowable instanceof CircuitBreakerOpenException) {
+      type = Type.CIRCUIT_OPEN;
+      return;
+    }
+
     // no connection
     if (sourceThrowable instanceof java.net.UnknownHostException) {
       type = Type.NO_NETWORK;
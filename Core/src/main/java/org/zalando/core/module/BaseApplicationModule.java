@@ -20,6 +20,7 @@ import android.content.Context;
 import dagger.Module;
 import dagger.Provides;
 import javax.inject.Singleton;
+import org.zalando.core.ui.adapter.ViewHolderPools;
 
 /**
  * Dagger module used to inject application context or generic dependencies.
@@ -63,4 +64,16 @@ public class BaseApplicationModule {
     return application.getApplicationContext();
   }
 
+  /**
+   * Provides the {@link ViewHolderPools} shared by the lists of the app for dependency injections
+   *
+   * @return {@link ViewHolderPools} of the app
+   */
+  @Provides
+  @Singleton
+  public ViewHolderPools provideViewHolderPools() {
+
+    return new ViewHolderPools(application);
+  }
+
 }
@@ -0,0 +1,90 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Network interceptor overriding how long successful GET responses stay fresh in the HTTP {@link
+ * Cache}, per endpoint. Endpoints are matched by the longest path prefix, the responses of other
+ * endpoints keep the Cache-Control headers sent by the server. It must be added as network
+ * interceptor, so the cache stores the overridden headers.
+ */
+public class CacheMaxAgeInterceptor implements Interceptor {
+
+  private static final String METHOD_GET = "GET";
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+  private static final String HEADER_PRAGMA = "Pragma";
+
+  // Copied on write, max age in seconds by path prefix
+  private volatile Map<String, Long> maxAges = Collections.emptyMap();
+
+  /**
+   * Sets the max age of the endpoints with the given path prefix
+   *
+   * @param pathPrefix {@link String} with the prefix of the encoded path, such as "/data/2.5/"
+   * @param duration {@link Long} with the time responses stay fresh
+   * @param unit {@link TimeUnit} of the duration
+   * @return {@link CacheMaxAgeInterceptor} to chain calls
+   */
+  public synchronized CacheMaxAgeInterceptor maxAge(@NonNull String pathPrefix, long duration,
+      @NonNull TimeUnit unit) {
+
+    Preconditions.checkArgument(duration >= 0, "Max age can not be negative");
+    final Map<String, Long> newMaxAges = new LinkedHashMap<>(maxAges);
+    newMaxAges.put(pathPrefix, unit.toSeconds(duration));
+    maxAges = newMaxAges;
+    return this;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+
+    final Request request = chain.request();
+    final Response response = chain.proceed(request);
+    if (!METHOD_GET.equals(request.method()) || !response.isSuccessful()) {
+      return response;
+    }
+
+    final Long maxAge = findMaxAge(request.url().encodedPath());
+    if (maxAge == null) {
+      return response;
+    }
+    return response.newBuilder()
+        .removeHeader(HEADER_PRAGMA)
+        .header(HEADER_CACHE_CONTROL, "public, max-age=" + maxAge)
+        .build();
+  }
+
+  /**
+   * Finds the max age of the longest prefix matching the given path
+   *
+   * @param path {@link String} with the encoded path
+   * @return {@link Long} with the max age in seconds, null if no prefix matches
+   */
+  @Nullable
+  private Long findMaxAge(String path) {
+
+    String matchingPrefix = null;
+    Long maxAge = null;
+    for (Map.Entry<String, Long> entry : maxAges.entrySet()) {
+      final String prefix = entry.getKey();
+      if (path.startsWith(prefix)
+          && (matchingPrefix == null || prefix.length() > matchingPrefix.length())) {
+        matchingPrefix = prefix;
+        maxAge = entry.getValue();
+      }
+    }
+    return maxAge;
+  }
+
+}
@@ -0,0 +1,230 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Interceptor failing fast the requests to hosts that keep failing. Every host has its own
+ * circuit, which records the outcome of its last requests in a sliding window. Requests failing
+ * with an {@link IOException} or answered with a server error count as failures, while canceled
+ * requests and requests failing for lack of network, with an {@link UnknownHostException}, are not
+ * recorded. Once enough of the requests in the window fail the circuit opens and requests throw
+ * {@link CircuitBreakerOpenException} right away. After the open duration the circuit is half
+ * open: a single probe request goes to the network, closing the circuit if it succeeds and opening
+ * it again if it fails, while the other requests keep failing fast.
+ *
+ * Register it with {@link RestApiFactory#createApi(Class, String, List, com.google.gson.Gson,
+ * boolean)}, sharing the instance among all the rest apis calling the same hosts.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+  private static final int DEFAULT_WINDOW_SIZE = 20;
+  private static final int DEFAULT_MINIMUM_REQUESTS = 10;
+  private static final float DEFAULT_FAILURE_RATE = 0.5f;
+  private static final long DEFAULT_OPEN_DURATION_SECONDS = 30;
+
+  private final int windowSize;
+  private final int minimumRequests;
+  private final float failureRate;
+  private final long openDurationMillis;
+  private final Scheduler clock;
+
+  // Circuits by host. Guarded by itself
+  private final Map<String, Circuit> circuits = new HashMap<>();
+
+  /**
+   * Constructor opening a circuit when half of the last 20 requests fail, with at least 10
+   * requests, for 30 seconds
+   */
+  public CircuitBreakerInterceptor() {
+
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_REQUESTS, DEFAULT_FAILURE_RATE,
+        DEFAULT_OPEN_DURATION_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param windowSize {@link Integer} with the amount of last requests recorded per host
+   * @param minimumRequests {@link Integer} with the requests recorded before a circuit can open
+   * @param failureRate {@link Float} with the rate of failed requests in the window, between 0 and
+   * 1, opening the circuit
+   * @param openDuration {@link Long} with the time requests fail fast before probing the host
+   * @param unit {@link TimeUnit} of the open duration
+   */
+  public CircuitBreakerInterceptor(int windowSize, int minimumRequests, float failureRate,
+      long openDuration, @NonNull TimeUnit unit) {
+
+    this(windowSize, minimumRequests, failureRate, openDuration, unit, Schedulers.computation());
+  }
+
+  CircuitBreakerInterceptor(int windowSize, int minimumRequests, float failureRate,
+      long openDuration, TimeUnit unit, Scheduler clock) {
+
+    Preconditions.checkArgument(windowSize > 0, "Window size must be positive");
+    Preconditions.checkArgument(minimumRequests > 0 && minimumRequests <= windowSize,
+        "Minimum requests must be positive and fit in the window");
+    Preconditions.checkArgument(failureRate > 0 && failureRate <= 1,
+        "Failure rate must be between 0 and 1");
+    Preconditions.checkArgument(openDuration > 0, "Open duration must be positive");
+    this.windowSize = windowSize;
+    this.minimumRequests = minimumRequests;
+    this.failureRate = failureRate;
+    this.openDurationMillis = unit.toMillis(openDuration);
+    this.clock = clock;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+
+    final Request request = chain.request();
+    final String host = request.url().host();
+    final Circuit circuit = circuitOf(host);
+    final boolean probe = circuit.acquire(now(), host);
+
+    boolean failed = true;
+    boolean offline = false;
+    try {
+      final Response response = chain.proceed(request);
+      failed = response.code() >= 500;
+      return response;
+    } catch (UnknownHostException e) {
+      // No network, the host is not to blame
+      offline = true;
+      throw e;
+    } finally {
+      if (offline || chain.call().isCanceled()) {
+        circuit.release(probe);
+      } else {
+        // Any other exception counts as failure, not only IOException
+        circuit.record(failed, probe, now());
+      }
+    }
+  }
+
+  private Circuit circuitOf(String host) {
+
+    synchronized (circuits) {
+      Circuit circuit = circuits.get(host);
+      if (circuit == null) {
+        circuit = new Circuit();
+        circuits.put(host, circuit);
+      }
+      return circuit;
+    }
+  }
+
+  private long now() {
+
+    return clock.now(TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Circuit of a host
+   */
+  private final class Circuit {
+
+    // Outcome of the last requests, true for failures, used as ring buffer
+    private final boolean[] window = new boolean[windowSize];
+    private int recorded;
+    private int next;
+    private int failures;
+    // Time the circuit was opened, negative when closed
+    private long openedAt = -1;
+    private boolean probing;
+
+    /**
+     * Lets a request through
+     *
+     * @param now {@link Long} with the current time in millis
+     * @param host {@link String} with the host of the circuit
+     * @return {@link Boolean} indicating if the request is the probe of a half open circuit
+     * @throws CircuitBreakerOpenException if the request must fail fast
+     */
+    synchronized boolean acquire(long now, String host) throws CircuitBreakerOpenException {
+
+      if (openedAt < 0) {
+        return false;
+      }
+      if (probing || now - openedAt < openDurationMillis) {
+        throw new CircuitBreakerOpenException(host);
+      }
+      probing = true;
+      return true;
+    }
+
+    /**
+     * Records the outcome of a request
+     *
+     * @param failed {@link Boolean} indicating if the request failed
+     * @param probe {@link Boolean} indicating if it was the probe of a half open circuit
+     * @param now {@link Long} with the current time in millis
+     */
+    synchronized void record(boolean failed, boolean probe, long now) {
+
+      if (probe) {
+        probing = false;
+        if (failed) {
+          openedAt = now;
+        } else {
+          close();
+        }
+        return;
+      }
+      // Requests let through before the circuit opened do not change it
+      if (openedAt >= 0) {
+        return;
+      }
+
+      if (recorded == windowSize) {
+        if (window[next]) {
+          failures--;
+        }
+      } else {
+        recorded++;
+      }
+      window[next] = failed;
+      if (failed) {
+        failures++;
+      }
+      next = (next + 1) % windowSize;
+
+      if (recorded >= minimumRequests && failures >= failureRate * recorded) {
+        openedAt = now;
+      }
+    }
+
+    /**
+     * Lets the circuit go without recording the outcome of a request, so a half open circuit sends
+     * another probe
+     *
+     * @param probe {@link Boolean} indicating if it was the probe of a half open circuit
+     */
+    synchronized void release(boolean probe) {
+
+      if (probe) {
+        probing = false;
+      }
+    }
+
+    private void close() {
+
+      openedAt = -1;
+      recorded = 0;
+      next = 0;
+      failures = 0;
+    }
+  }
+
+}
@@ -0,0 +1,34 @@
+package org.zalando.core.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link CircuitBreakerInterceptor} when a request is rejected without reaching the
+ * network, because its host has been failing
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+  private final String host;
+
+  /**
+   * Constructor
+   *
+   * @param host {@link String} with the host whose circuit is open
+   */
+  public CircuitBreakerOpenException(String host) {
+
+    super(String.format("Circuit open for %s", host));
+    this.host = host;
+  }
+
+  /**
+   * Returns the host whose circuit is open
+   *
+   * @return {@link String} with the host
+   */
+  public String getHost() {
+
+    return host;
+  }
+
+}
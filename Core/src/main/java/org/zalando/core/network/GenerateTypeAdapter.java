@@ -0,0 +1,28 @@
+package org.zalando.core.network;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity whose Gson {@link com.google.gson.TypeAdapter} is generated at compile time by
+ * the GsonProcessor annotation processor, instead of reflecting over its fields at runtime. The
+ * generated adapters are used by {@link com.google.gson.Gson} instances registering {@link
+ * GeneratedTypeAdapterFactory}.
+ *
+ * Annotated classes need a non-private no arguments constructor, and their serialised fields,
+ * including the inherited ones, can not be private.
+ *
+ * The consumer ProGuard rules of Core keep the names of the annotated classes, of their fields and
+ * of the registry of their adapters. Serialised fields inherited from classes that are not
+ * annotated need a {@link com.google.gson.annotations.SerializedName} or their own rules in
+ * minified apps using a {@link com.google.gson.FieldNamingStrategy}.
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface GenerateTypeAdapter {
+
+}
@@ -0,0 +1,117 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.FieldNamingStrategy;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * {@link TypeAdapterFactory} providing the adapters generated for the classes annotated with
+ * {@link GenerateTypeAdapter}. Other types are left to the next factories of the {@link Gson}.
+ *
+ * The adapters are created by the registry GsonProcessor generates for the app, loaded once per
+ * process on first use. Libraries naming their own registry register it to their {@link Gson} after
+ * this factory.
+ */
+public final class GeneratedTypeAdapterFactory implements TypeAdapterFactory {
+
+  static final String REGISTRY = "org.zalando.core.network.GeneratedTypeAdapters";
+
+  // Constructor of the registry, shared by all the factories. Null until loaded
+  private static volatile Constructor<?> registryConstructor;
+
+  private final FieldNamingStrategy fieldNamingStrategy;
+  // Created on first use, null if the app has no annotated class
+  private volatile TypeAdapterFactory registry;
+  private volatile boolean registryCreated;
+
+  private GeneratedTypeAdapterFactory(FieldNamingStrategy fieldNamingStrategy) {
+
+    this.fieldNamingStrategy = fieldNamingStrategy;
+  }
+
+  /**
+   * Creates a factory naming the JSON fields as the Java fields, the {@link Gson} default
+   *
+   * @return {@link GeneratedTypeAdapterFactory}
+   */
+  public static GeneratedTypeAdapterFactory create() {
+
+    return create(FieldNamingPolicy.IDENTITY);
+  }
+
+  /**
+   * Creates a factory naming the JSON fields with the given strategy. It must be the same one
+   * given to the {@link com.google.gson.GsonBuilder}. The adapters use the names computed at
+   * compile time for {@link FieldNamingPolicy#IDENTITY}, and resolve the others through
+   * reflection when created
+   *
+   * @param fieldNamingStrategy {@link FieldNamingStrategy} for the fields without {@link
+   * com.google.gson.annotations.SerializedName}
+   * @return {@link GeneratedTypeAdapterFactory}
+   */
+  public static GeneratedTypeAdapterFactory create(
+      @NonNull FieldNamingStrategy fieldNamingStrategy) {
+
+    return new GeneratedTypeAdapterFactory(fieldNamingStrategy);
+  }
+
+  @Override
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+
+    final TypeAdapterFactory registry = registry();
+    final TypeAdapter<T> adapter = registry != null ? registry.create(gson, type) : null;
+    final Class<? super T> rawType = type.getRawType();
+    // Platform classes are never annotated, and reading their annotations is costly
+    if (adapter == null && rawType.getClassLoader() != null
+        && rawType.isAnnotationPresent(GenerateTypeAdapter.class)) {
+      throw new IllegalStateException(String.format(
+          "Adapter of %s not generated, is the GsonProcessor annotation processor missing?",
+          rawType.getName()));
+    }
+    return adapter;
+  }
+
+  private TypeAdapterFactory registry() {
+
+    if (!registryCreated) {
+      final Constructor<?> constructor = findRegistryConstructor();
+      if (constructor != null) {
+        try {
+          registry = (TypeAdapterFactory) constructor.newInstance(fieldNamingStrategy);
+        } catch (InstantiationException | IllegalAccessException e) {
+          throw new IllegalStateException("Unable to create the adapter registry", e);
+        } catch (InvocationTargetException e) {
+          throw new IllegalStateException("Unable to create the adapter registry", e.getCause());
+        }
+      }
+      registryCreated = true;
+    }
+    return registry;
+  }
+
+  private static Constructor<?> findRegistryConstructor() {
+
+    Constructor<?> constructor = registryConstructor;
+    if (constructor == null) {
+      try {
+        constructor = Class.forName(REGISTRY, true,
+            GeneratedTypeAdapterFactory.class.getClassLoader())
+            .getConstructor(FieldNamingStrategy.class);
+      } catch (ClassNotFoundException e) {
+        // No annotated class was compiled
+        return null;
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("Unable to find the adapter registry", e);
+      }
+      registryConstructor = constructor;
+    }
+    return constructor;
+  }
+
+}
@@ -0,0 +1,150 @@
+package org.zalando.core.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Lock-free histogram of latencies in microseconds, with log-linear buckets as HDR histograms
+ * have: every power of two is split in 16 buckets, so values are kept with a relative error under
+ * 6.25% using a fixed amount of memory. Latencies up to 16 microseconds are exact, latencies over
+ * 2^36 microseconds, about 19 hours, are counted in the last bucket.
+ *
+ * Recording only does atomic increments, so it can be done from any thread. Reads are not atomic
+ * across buckets, values recorded meanwhile may or may not be included.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 35;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+  private static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a latency
+   *
+   * @param duration {@link Long} with the latency, negative ones are recorded as zero
+   * @param unit {@link TimeUnit} of the latency
+   */
+  public void record(long duration, TimeUnit unit) {
+
+    final long micros = Math.min(Math.max(unit.toMicros(duration), 0), MAX_TRACKABLE_VALUE);
+    counts.incrementAndGet(bucketOf(micros));
+    count.incrementAndGet();
+    long currentMax = max.get();
+    while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * Returns the amount of recorded latencies
+   *
+   * @return {@link Long} with the count
+   */
+  public long getCount() {
+
+    return count.get();
+  }
+
+  /**
+   * Returns the highest recorded latency
+   *
+   * @return {@link Long} with the latency in microseconds, 0 if nothing was recorded
+   */
+  public long getMaxMicros() {
+
+    return max.get();
+  }
+
+  /**
+   * Returns the latency under which the given percentage of the recorded ones are
+   *
+   * @param percentile {@link Double} between 0 and 100, such as 99.9
+   * @return {@link Long} with the highest latency of the bucket holding the percentile, in
+   * microseconds. 0 if nothing was recorded
+   */
+  public long getPercentileMicros(double percentile) {
+
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100,
+        "Percentile must be between 0 and 100");
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Copies the recorded latencies into a new histogram and clears this one, so every latency is
+   * in exactly one of both
+   *
+   * @return {@link LatencyHistogram} with the latencies recorded so far
+   */
+  public LatencyHistogram snapshotAndReset() {
+
+    final LatencyHistogram snapshot = new LatencyHistogram();
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      final long bucketCount = counts.getAndSet(i, 0);
+      snapshot.counts.set(i, bucketCount);
+      total += bucketCount;
+    }
+    count.addAndGet(-total);
+    snapshot.count.set(total);
+    snapshot.max.set(max.getAndSet(0));
+    return snapshot;
+  }
+
+  /**
+   * Provides the bucket of the given value
+   *
+   * @param micros {@link Long} with the value, between 0 and the max trackable one
+   * @return {@link Integer} with the index of the bucket
+   */
+  static int bucketOf(long micros) {
+
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Provides the highest value held by the given bucket
+   *
+   * @param bucket {@link Integer} with the index of the bucket
+   * @return {@link Long} with the value
+   */
+  static long highestValueOf(int bucket) {
+
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS)
+        << (exponent - SUB_BUCKET_BITS);
+    return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+}
@@ -0,0 +1,313 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Records the timings of the requests in a {@link LatencyHistogram} per endpoint and {@link
+ * Phase}, without touching their bodies. The phases of the connection and of the exchange are
+ * measured by an OkHttp {@link EventListener}, the whole call, cache and retries included, by an
+ * interceptor. Enabled for all the rest apis with {@link
+ * RestApiFactory#enableMetrics(NetworkMetrics)}.
+ *
+ * Endpoints are named by an {@link EndpointResolver}. Each one takes a histogram per phase, so
+ * only a maximum amount of them is recorded, the requests of further endpoints are recorded
+ * together as {@link #OTHER_ENDPOINT}. The histograms are handed to a {@link Reporter} with {@link
+ * #report(Reporter)}, usually called periodically.
+ */
+public class NetworkMetrics {
+
+  /**
+   * Name of the endpoints recorded once the maximum amount of endpoints is reached
+   */
+  public static final String OTHER_ENDPOINT = "other";
+
+  private static final int DEFAULT_MAX_ENDPOINTS = 64;
+
+  /**
+   * Phases of a request
+   */
+  public enum Phase {
+    // Whole call, as seen by the application interceptors
+    TOTAL,
+    DNS,
+    // Connection, including the TLS handshake
+    CONNECT,
+    TLS,
+    // From sending the request headers until the response headers start to arrive
+    TTFB,
+    // Reading the response body
+    BODY
+  }
+
+  private final EndpointResolver endpointResolver;
+  private final int maxEndpoints;
+  // Histograms by endpoint, indexed by phase
+  private final ConcurrentMap<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+  private final Interceptor interceptor = new Interceptor() {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+      final Request request = chain.request();
+      final long start = System.nanoTime();
+      try {
+        return chain.proceed(request);
+      } finally {
+        record(endpointResolver.resolve(request), Phase.TOTAL, System.nanoTime() - start);
+      }
+    }
+  };
+
+  private final EventListener.Factory eventListenerFactory = new EventListener.Factory() {
+    @Override
+    public EventListener create(Call call) {
+
+      return new TimingEventListener();
+    }
+  };
+
+  /**
+   * Constructor naming the endpoints with {@link EndpointResolver#DEFAULT}, recording up to 64 of
+   * them
+   */
+  public NetworkMetrics() {
+
+    this(EndpointResolver.DEFAULT, DEFAULT_MAX_ENDPOINTS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param endpointResolver {@link EndpointResolver} naming the endpoints
+   * @param maxEndpoints {@link Integer} with the maximum amount of endpoints recorded apart
+   */
+  public NetworkMetrics(@NonNull EndpointResolver endpointResolver, int maxEndpoints) {
+
+    Preconditions.checkArgument(maxEndpoints > 0, "Max endpoints must be positive");
+    this.endpointResolver = endpointResolver;
+    this.maxEndpoints = maxEndpoints;
+  }
+
+  /**
+   * Provides the interceptor measuring the whole calls. It must be the first application
+   * interceptor
+   *
+   * @return {@link Interceptor} of these metrics
+   */
+  public Interceptor getInterceptor() {
+
+    return interceptor;
+  }
+
+  /**
+   * Provides the factory of the listeners measuring the phases of the calls
+   *
+   * @return {@link EventListener.Factory} of these metrics
+   */
+  public EventListener.Factory getEventListenerFactory() {
+
+    return eventListenerFactory;
+  }
+
+  /**
+   * Hands the latencies recorded since the last report to the given reporter
+   *
+   * @param reporter {@link Reporter} receiving them
+   */
+  public void report(@NonNull Reporter reporter) {
+
+    for (Map.Entry<String, LatencyHistogram[]> entry : histograms.entrySet()) {
+      final LatencyHistogram[] phases = entry.getValue();
+      for (int i = 0; i < phases.length; i++) {
+        final LatencyHistogram snapshot = phases[i].snapshotAndReset();
+        if (snapshot.getCount() > 0) {
+          reporter.report(entry.getKey(), Phase.values()[i], snapshot);
+        }
+      }
+    }
+  }
+
+  private void record(String endpoint, Phase phase, long nanos) {
+
+    LatencyHistogram[] phases = histograms.get(endpoint);
+    if (phases == null) {
+      phases = addEndpoint(endpoint);
+    }
+    phases[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Adds the histograms of the given endpoint, or provides the ones of {@link #OTHER_ENDPOINT} if
+   * the maximum amount of endpoints is reached. Only called for new endpoints, so it is rare
+   *
+   * @param endpoint {@link String} with the name of the endpoint
+   * @return {@link LatencyHistogram} array with the histograms by phase
+   */
+  private synchronized LatencyHistogram[] addEndpoint(String endpoint) {
+
+    LatencyHistogram[] phases = histograms.get(endpoint);
+    if (phases != null) {
+      return phases;
+    }
+    // The other endpoint does not count
+    final int endpointCount = histograms.size() - (histograms.containsKey(OTHER_ENDPOINT) ? 1 : 0);
+    final String recordedEndpoint = endpointCount < maxEndpoints ? endpoint : OTHER_ENDPOINT;
+    phases = histograms.get(recordedEndpoint);
+    if (phases == null) {
+      phases = new LatencyHistogram[Phase.values().length];
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new LatencyHistogram();
+      }
+      histograms.put(recordedEndpoint, phases);
+    }
+    return phases;
+  }
+
+  /**
+   * Listener measuring the phases of one call. OkHttp notifies the events of a call one after the
+   * other, so it needs no synchronisation
+   */
+  private final class TimingEventListener extends EventListener {
+
+    private String endpoint;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long responseBodyStart;
+
+    @Override
+    public void callStart(Call call) {
+
+      endpoint = endpointResolver.resolve(call.request());
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+
+      dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+
+      record(endpoint, Phase.DNS, System.nanoTime() - dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+
+      connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+
+      secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+
+      record(endpoint, Phase.TLS, System.nanoTime() - secureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+        Protocol protocol) {
+
+      record(endpoint, Phase.CONNECT, System.nanoTime() - connectStart);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+
+      requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+
+      record(endpoint, Phase.TTFB, System.nanoTime() - requestStart);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+
+      responseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+
+      record(endpoint, Phase.BODY, System.nanoTime() - responseBodyStart);
+    }
+  }
+
+  /**
+   * Names the endpoint of a request, the latencies of the requests with the same name are
+   * recorded together
+   */
+  public interface EndpointResolver {
+
+    /**
+     * Names the endpoints by method, host and path, with the path segments that look like ids
+     * replaced by "{id}": numeric ones, and the ones of 8 characters or more holding digits, such
+     * as UUIDs and hashes
+     */
+    EndpointResolver DEFAULT = new EndpointResolver() {
+
+      private final Pattern idSegment = Pattern.compile("/(?:\\d+|(?=[^/]*\\d)[^/]{8,})(?=/|$)");
+
+      @Override
+      public String resolve(Request request) {
+
+        return request.method() + " " + request.url().host()
+            + idSegment.matcher(request.url().encodedPath()).replaceAll("/{id}");
+      }
+    };
+
+    /**
+     * Names the endpoint of the given request
+     *
+     * @param request {@link Request} to name
+     * @return {@link String} with the name of the endpoint
+     */
+    String resolve(@NonNull Request request);
+  }
+
+  /**
+   * Receives the recorded latencies, to log them or send them to a monitoring service
+   */
+  public interface Reporter {
+
+    /**
+     * Reports the latencies of one phase of an endpoint
+     *
+     * @param endpoint {@link String} with the name of the endpoint
+     * @param phase {@link Phase} measured
+     * @param histogram {@link LatencyHistogram} with the latencies since the last report
+     */
+    void report(@NonNull String endpoint, @NonNull Phase phase,
+        @NonNull LatencyHistogram histogram);
+  }
+
+}
@@ -0,0 +1,195 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Gathers the single item requests issued within a time window and loads all of them with one
+ * batch request, through the given {@link BatchAdapter}. Callers get a {@link Single} per item, as
+ * if they had requested it alone, so chatty endpoints can be batched without changing them.
+ * Requests for the same key in one window share the item. A batch is sent once the window is over
+ * or once it reaches its maximum size, whatever happens first.
+ *
+ * @param <K> {@link K} type of the keys of the items, with proper equals and hashCode
+ * @param <V> {@link V} type of the items
+ */
+public class RequestBatcher<K, V> {
+
+  private final BatchAdapter<K, V> adapter;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final Scheduler scheduler;
+
+  // Requests of the current window, null if there are none. Guarded by this
+  private Map<K, SingleSubject<V>> pending;
+
+  /**
+   * Constructor, waiting for the windows on {@link Schedulers#computation()}
+   *
+   * @param adapter {@link BatchAdapter} loading the batches
+   * @param window {@link Long} with the time requests are gathered, such as 10ms
+   * @param unit {@link TimeUnit} of the window
+   * @param maxBatchSize {@link Integer} with the maximum amount of keys in a batch
+   */
+  public RequestBatcher(@NonNull BatchAdapter<K, V> adapter, long window, @NonNull TimeUnit unit,
+      int maxBatchSize) {
+
+    this(adapter, window, unit, maxBatchSize, Schedulers.computation());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param adapter {@link BatchAdapter} loading the batches
+   * @param window {@link Long} with the time requests are gathered, such as 10ms
+   * @param unit {@link TimeUnit} of the window
+   * @param maxBatchSize {@link Integer} with the maximum amount of keys in a batch
+   * @param scheduler {@link Scheduler} waiting for the windows
+   */
+  public RequestBatcher(@NonNull BatchAdapter<K, V> adapter, long window, @NonNull TimeUnit unit,
+      int maxBatchSize, @NonNull Scheduler scheduler) {
+
+    Preconditions.checkArgument(window >= 0, "Window can not be negative");
+    Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+    this.adapter = adapter;
+    this.windowMillis = unit.toMillis(window);
+    this.maxBatchSize = maxBatchSize;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Requests the item of the given key. It is added to the current batch on subscription
+   *
+   * @param key {@link K} of the item
+   * @return {@link Single} emitting the item, or {@link NoSuchElementException} if the batch did
+   * not return it
+   */
+  public Single<V> get(@NonNull final K key) {
+
+    return Single.defer(new Callable<SingleSource<V>>() {
+      @Override
+      public SingleSource<V> call() throws Exception {
+
+        return enqueue(key);
+      }
+    });
+  }
+
+  private SingleSubject<V> enqueue(K key) {
+
+    final SingleSubject<V> subject;
+    Map<K, SingleSubject<V>> fullBatch = null;
+    synchronized (this) {
+      if (pending == null) {
+        pending = new LinkedHashMap<>();
+        scheduleFlush(pending);
+      }
+      SingleSubject<V> existing = pending.get(key);
+      if (existing == null) {
+        existing = SingleSubject.create();
+        pending.put(key, existing);
+      }
+      subject = existing;
+      if (pending.size() >= maxBatchSize) {
+        fullBatch = pending;
+        pending = null;
+      }
+    }
+    // Loaded out of the lock, the adapter may answer synchronously
+    if (fullBatch != null) {
+      load(fullBatch);
+    }
+    return subject;
+  }
+
+  private void scheduleFlush(final Map<K, SingleSubject<V>> batch) {
+
+    scheduler.scheduleDirect(new Runnable() {
+      @Override
+      public void run() {
+
+        synchronized (RequestBatcher.this) {
+          // Already sent if it got full
+          if (pending != batch) {
+            return;
+          }
+          pending = null;
+        }
+        load(batch);
+      }
+    }, windowMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Loads the given batch and fans the items out to the requests
+   *
+   * @param batch {@link Map} of {@link SingleSubject} of every request, by key
+   */
+  private void load(final Map<K, SingleSubject<V>> batch) {
+
+    final Single<Map<K, V>> request;
+    try {
+      request = adapter.load(Collections.unmodifiableSet(batch.keySet()));
+    } catch (RuntimeException e) {
+      fail(batch, e);
+      return;
+    }
+    request.subscribe(new BiConsumer<Map<K, V>, Throwable>() {
+      @Override
+      public void accept(Map<K, V> items, Throwable throwable) throws Exception {
+
+        if (throwable != null) {
+          fail(batch, throwable);
+          return;
+        }
+        for (Map.Entry<K, SingleSubject<V>> entry : batch.entrySet()) {
+          final V item = items.get(entry.getKey());
+          if (item != null) {
+            entry.getValue().onSuccess(item);
+          } else {
+            entry.getValue().onError(new NoSuchElementException(
+                String.format("Batch did not return %s", entry.getKey())));
+          }
+        }
+      }
+    });
+  }
+
+  private void fail(Map<K, SingleSubject<V>> batch, Throwable throwable) {
+
+    for (SingleSubject<V> subject : batch.values()) {
+      subject.onError(throwable);
+    }
+  }
+
+  /**
+   * Loads batches of items through the batch endpoint of a rest api
+   *
+   * @param <K> {@link K} type of the keys of the items
+   * @param <V> {@link V} type of the items
+   */
+  public interface BatchAdapter<K, V> {
+
+    /**
+     * Loads the items of the given keys
+     *
+     * @param keys {@link Set} of {@link K} with the keys, in request order
+     * @return {@link Single} emitting the items by key
+     */
+    Single<Map<K, V>> load(@NonNull Set<K> keys);
+  }
+
+}
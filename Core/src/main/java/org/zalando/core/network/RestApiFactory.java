@@ -5,8 +5,14 @@ import android.support.annotation.Nullable;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.reactivex.schedulers.Schedulers;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
@@ -19,10 +25,34 @@ import retrofit2.converter.gson.GsonConverterFactory;
 import timber.log.Timber;
 
 /**
- * Factory class that helps building Rest Api interfaces using RetroFit.
+ * Factory class that helps building Rest Api interfaces using RetroFit. Methods annotated with
+ * {@link StreamJsonArray} emit the elements of their response while it is downloaded. Timings of
+ * the requests can be recorded with {@link #enableMetrics(NetworkMetrics)}.
  */
 public final class RestApiFactory {
 
+  // Shared logging interceptor, the same one for every client requiring logs
+  private static final HttpLoggingInterceptor LOGGING_INTERCEPTOR = new HttpLoggingInterceptor()
+      .setLevel(HttpLoggingInterceptor.Level.BODY);
+
+  // Maximum amount of clients kept for reuse, the least recently used ones go first
+  static final int MAX_CLIENTS = 8;
+
+  // Clients by configuration, all derived from the root one. Guarded by itself
+  private static final Map<ClientKey, OkHttpClient> CLIENTS =
+      new LinkedHashMap<ClientKey, OkHttpClient>(MAX_CLIENTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ClientKey, OkHttpClient> eldest) {
+
+          // Rest apis keep using their client, it is only not reused anymore
+          return size() > MAX_CLIENTS;
+        }
+      };
+  // Guarded by CLIENTS
+  private static OkHttpClient rootClient;
+  private static StaleWhileRevalidateInterceptor staleWhileRevalidateInterceptor;
+  private static NetworkMetrics networkMetrics;
+
   /**
    * Private constructor to force static access to methods
    */
@@ -54,7 +84,7 @@ public final class RestApiFactory {
         interceptors,
         null,
         RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io()),
-        gson != null ? gson : new GsonBuilder().create(),
+        gson != null ? gson : defaultGson(),
         logs).create(restInterface);
   }
 
@@ -78,7 +108,7 @@ public final class RestApiFactory {
         null,
         null,
         RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io()),
-        new GsonBuilder().create(),
+        defaultGson(),
         logs).create(restInterface);
   }
 
@@ -104,7 +134,7 @@ public final class RestApiFactory {
         interceptors,
         networkInterceptors,
         RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io()),
-        gson != null ? gson : new GsonBuilder().create(),
+        gson != null ? gson : defaultGson(),
         logs).create(restInterface);
   }
 
@@ -129,38 +159,206 @@ public final class RestApiFactory {
     Preconditions.checkArgument(ValidationUtils.isValidURL(url), "Base URL is invalid");
     Timber.d("setupRetrofit: %s", url);
 
-    // Add the interceptors if they exist
-    OkHttpClient.Builder okHttpClientBuilder = new OkHttpClient.Builder();
+    // Finally create the retrofit object on the shared client
+    return new Retrofit.Builder().client(getClient(interceptors, networkInterceptors, logs))
+        .baseUrl(url.endsWith("/") ? url : url + "/")
+        .addConverterFactory(GsonConverterFactory.create(gsonConverterFactory))
+        // Must go first, it only handles the methods annotated with @StreamJsonArray
+        .addCallAdapterFactory(StreamingJsonCallAdapterFactory.create(gsonConverterFactory,
+            Schedulers.io()))
+        .addCallAdapterFactory(callAdapterFactory)
+        .build();
+  }
+
+  /**
+   * Creates the {@link Gson} used when none is given, with the adapters generated for the entities
+   * annotated with {@link GenerateTypeAdapter}
+   *
+   * @return {@link Gson} default one
+   */
+  private static Gson defaultGson() {
+
+    return new GsonBuilder()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory.create())
+        .create();
+  }
+
+  /**
+   * Provides the root {@link OkHttpClient}. Every client used by the rest apis is derived from it,
+   * so all of them share its connection pool, dispatcher and TLS sessions
+   *
+   * @return {@link OkHttpClient} root client
+   */
+  public static OkHttpClient getRootClient() {
+
+    synchronized (CLIENTS) {
+      if (rootClient == null) {
+        rootClient = new OkHttpClient();
+      }
+      return rootClient;
+    }
+  }
+
+  /**
+   * Enables a size bounded HTTP disk cache for all the rest apis. Responses are cached following
+   * their Cache-Control headers, which can be overridden per endpoint adding a {@link
+   * CacheMaxAgeInterceptor} as network interceptor. Call it before creating the rest apis, the
+   * ones already created keep working without cache
+   *
+   * @param directory {@link File} with the directory of the cache, only used by this cache
+   * @param maxSizeBytes {@link Long} with the maximum size of the cache in bytes
+   * @param maxStale {@link Long} with the time stale cached responses are served right away while
+   * they are refreshed in background, 0 to always wait for the network. See {@link
+   * StaleWhileRevalidateInterceptor}
+   * @param unit {@link TimeUnit} of the max stale time
+   */
+  public static void enableHttpCache(@NonNull File directory, long maxSizeBytes, long maxStale,
+      @NonNull TimeUnit unit) {
+
+    Preconditions.checkArgument(maxSizeBytes > 0, "Cache size must be positive");
+    Preconditions.checkArgument(maxStale >= 0, "Max stale can not be negative");
+    synchronized (CLIENTS) {
+      rootClient = getRootClient().newBuilder()
+          .cache(new Cache(directory, maxSizeBytes))
+          .build();
+      staleWhileRevalidateInterceptor = maxStale > 0
+          ? new StaleWhileRevalidateInterceptor(maxStale, unit) : null;
+      // Clients derived from the previous root have no cache
+      CLIENTS.clear();
+    }
+  }
+
+  /**
+   * Records the timings of the requests of all the rest apis in the given {@link NetworkMetrics}.
+   * Unlike logs, it does not read the bodies, so it can be enabled in production. Call it before
+   * creating the rest apis, the ones already created are not measured
+   *
+   * @param metrics {@link NetworkMetrics} recording the timings
+   */
+  public static void enableMetrics(@NonNull NetworkMetrics metrics) {
+
+    synchronized (CLIENTS) {
+      rootClient = getRootClient().newBuilder()
+          .eventListenerFactory(metrics.getEventListenerFactory())
+          .build();
+      networkMetrics = metrics;
+      // Clients derived from the previous root are not measured
+      CLIENTS.clear();
+    }
+  }
+
+  /**
+   * Provides the {@link OkHttpClient} for the given configuration. Clients are derived from the
+   * root client with {@link OkHttpClient#newBuilder()}, and the ones of the last configurations
+   * are kept, so the same interceptors get the same client without keeping every interceptor
+   * ever given alive
+   *
+   * @param interceptors {@link List} of {@link Interceptor} to add to the client
+   * @param networkInterceptors {@link List} of {@link Interceptor} as NetworkInterceptor
+   * @param logs {@link Boolean} indicating if logs are required
+   * @return {@link OkHttpClient} with the given configuration
+   */
+  static OkHttpClient getClient(@Nullable List<Interceptor> interceptors,
+      @Nullable List<Interceptor> networkInterceptors,
+      boolean logs) {
 
     // Add a Log interceptor if debug mode
     List<Interceptor> interceptorList = new ArrayList<>();
     if (logs) {
-      HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
-      loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-      interceptorList.add(loggingInterceptor);
+      interceptorList.add(LOGGING_INTERCEPTOR);
     }
     // Add param interceptors
     if (interceptors != null && !interceptors.isEmpty()) {
       interceptorList.addAll(interceptors);
     }
-    // Add all of them to the okHttpBuilder
-    for (int i = 0; i < interceptorList.size(); i++) {
-      okHttpClientBuilder.addInterceptor(interceptorList.get(i));
+    List<Interceptor> networkInterceptorList = networkInterceptors != null
+        ? new ArrayList<>(networkInterceptors) : Collections.<Interceptor>emptyList();
+
+    synchronized (CLIENTS) {
+      // Metrics go first, so the whole call is measured
+      if (networkMetrics != null) {
+        interceptorList.add(0, networkMetrics.getInterceptor());
+      }
+      // Serving from cache goes last, so the request already holds the changes of the others
+      if (staleWhileRevalidateInterceptor != null) {
+        interceptorList.add(staleWhileRevalidateInterceptor);
+      }
+      final ClientKey clientKey = new ClientKey(interceptorList, networkInterceptorList);
+      OkHttpClient client = CLIENTS.get(clientKey);
+      if (client == null) {
+        OkHttpClient.Builder okHttpClientBuilder = getRootClient().newBuilder();
+        // Add all of them to the okHttpBuilder
+        for (int i = 0; i < interceptorList.size(); i++) {
+          okHttpClientBuilder.addInterceptor(interceptorList.get(i));
+        }
+        // Add interceptors as network interceptors
+        for (int i = 0; i < networkInterceptorList.size(); i++) {
+          okHttpClientBuilder.addNetworkInterceptor(networkInterceptorList.get(i));
+        }
+        client = okHttpClientBuilder.build();
+        CLIENTS.put(clientKey, client);
+      }
+      return client;
     }
+  }
 
-    // Add interceptors as network interceptors
-    if (networkInterceptors != null && !networkInterceptors.isEmpty()) {
-      for (int i = 0; i < networkInterceptors.size(); i++) {
-        okHttpClientBuilder.addNetworkInterceptor(networkInterceptors.get(i));
+  /**
+   * Identifies a client configuration by the identity of its interceptors, in order
+   */
+  private static final class ClientKey {
+
+    private final List<Interceptor> interceptors;
+    private final List<Interceptor> networkInterceptors;
+    private final int hashCode;
+
+    ClientKey(List<Interceptor> interceptors, List<Interceptor> networkInterceptors) {
+
+      this.interceptors = interceptors;
+      this.networkInterceptors = networkInterceptors;
+      hashCode = 31 * identityHashCode(interceptors) + identityHashCode(networkInterceptors);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ClientKey)) {
+        return false;
       }
+      final ClientKey other = (ClientKey) o;
+      return sameInstances(interceptors, other.interceptors)
+          && sameInstances(networkInterceptors, other.networkInterceptors);
     }
 
-    // Finally create the client
-    return new Retrofit.Builder().client(okHttpClientBuilder.build())
-        .baseUrl(url.endsWith("/") ? url : url + "/")
-        .addConverterFactory(GsonConverterFactory.create(gsonConverterFactory))
-        .addCallAdapterFactory(callAdapterFactory)
-        .build();
+    @Override
+    public int hashCode() {
+
+      return hashCode;
+    }
+
+    private static int identityHashCode(List<Interceptor> interceptors) {
+
+      int hashCode = 1;
+      for (int i = 0; i < interceptors.size(); i++) {
+        hashCode = 31 * hashCode + System.identityHashCode(interceptors.get(i));
+      }
+      return hashCode;
+    }
+
+    private static boolean sameInstances(List<Interceptor> first, List<Interceptor> second) {
+
+      if (first.size() != second.size()) {
+        return false;
+      }
+      for (int i = 0; i < first.size(); i++) {
+        if (first.get(i) != second.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 
 }
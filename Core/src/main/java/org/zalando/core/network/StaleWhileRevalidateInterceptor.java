@@ -0,0 +1,171 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.zalando.core.utils.Preconditions;
+import timber.log.Timber;
+
+/**
+ * Interceptor serving GET requests from the HTTP {@link Cache} first. Fresh cached responses are
+ * returned without touching the network, as the cache does. Stale ones are returned right away as
+ * well, as long as they are not stale for longer than the max stale time, and refreshed in
+ * background with a clone of the call, so the refresh goes through the same client, interceptors
+ * and network interceptors included, and the next request gets the new response. Requests without
+ * usable cached response go to the network as usual.
+ *
+ * Enabled with {@link RestApiFactory#enableHttpCache(java.io.File, long, long, TimeUnit)}. It must
+ * be the last application interceptor, so the cache is looked up with the changes of the others.
+ */
+public class StaleWhileRevalidateInterceptor implements Interceptor {
+
+  private static final String METHOD_GET = "GET";
+  private static final String HEADER_WARNING = "Warning";
+  // Warning added by the cache to stale responses
+  private static final String WARNING_STALE = "110";
+  private static final long DRAIN_BYTE_COUNT = 8 * 1024;
+
+  // Calls refreshing each url in background. Guarded by itself
+  private final Map<HttpUrl, Call> refreshCalls = new HashMap<>();
+  private final CacheControl staleCacheControl;
+
+  /**
+   * Constructor
+   *
+   * @param maxStale {@link Long} with the time a cached response can be stale and still be served
+   * @param unit {@link TimeUnit} of the max stale time
+   */
+  public StaleWhileRevalidateInterceptor(long maxStale, @NonNull TimeUnit unit) {
+
+    Preconditions.checkArgument(maxStale > 0, "Max stale must be positive");
+    staleCacheControl = new CacheControl.Builder()
+        .onlyIfCached()
+        .maxStale((int) Math.min(unit.toSeconds(maxStale), Integer.MAX_VALUE), TimeUnit.SECONDS)
+        .build();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+
+    final Request request = chain.request();
+    if (isRefresh(chain.call())) {
+      return chain.proceed(request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build());
+    }
+    final CacheControl cacheControl = request.cacheControl();
+    if (!METHOD_GET.equals(request.method()) || cacheControl.noCache() || cacheControl.noStore()
+        || cacheControl.onlyIfCached()) {
+      return chain.proceed(request);
+    }
+
+    final Response cachedResponse = chain.proceed(request.newBuilder()
+        .cacheControl(staleCacheControl)
+        .build());
+    // The cache answers with a gateway timeout when it has no response fresh or stale enough
+    if (cachedResponse.code() == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) {
+      cachedResponse.close();
+      return chain.proceed(request);
+    }
+
+    if (isStale(cachedResponse)) {
+      refresh(chain.call(), request.url());
+    }
+    return cachedResponse;
+  }
+
+  /**
+   * Checks if the given cached response is stale
+   *
+   * @param response {@link Response} served by the cache
+   * @return {@link Boolean} indicating if it is stale
+   */
+  private static boolean isStale(Response response) {
+
+    final List<String> warnings = response.headers(HEADER_WARNING);
+    for (int i = 0; i < warnings.size(); i++) {
+      if (warnings.get(i).startsWith(WARNING_STALE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if the given call is a background refresh, which must go to the network
+   *
+   * @param call {@link Call} being intercepted
+   * @return {@link Boolean} indicating if it is a refresh
+   */
+  private boolean isRefresh(Call call) {
+
+    synchronized (refreshCalls) {
+      return refreshCalls.containsValue(call);
+    }
+  }
+
+  /**
+   * Requests a clone of the given call to the network in background, so the response gets stored
+   * in the cache. Only one refresh per url runs at a time
+   *
+   * @param call {@link Call} served from the cache
+   * @param url {@link HttpUrl} of the cached response
+   */
+  private void refresh(Call call, final HttpUrl url) {
+
+    final Call refreshCall;
+    synchronized (refreshCalls) {
+      if (refreshCalls.containsKey(url)) {
+        return;
+      }
+      refreshCall = call.clone();
+      refreshCalls.put(url, refreshCall);
+    }
+
+    Timber.d("refresh: %s", url);
+    refreshCall.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+
+        refreshed(url);
+        Timber.w(e, "Refreshing %s failed", url);
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) throws IOException {
+
+        try {
+          // The cache stores the body as it is read
+          final BufferedSource source = response.body().source();
+          final Buffer buffer = new Buffer();
+          while (source.read(buffer, DRAIN_BYTE_COUNT) != -1) {
+            buffer.clear();
+          }
+        } finally {
+          response.close();
+          refreshed(url);
+        }
+      }
+    });
+  }
+
+  private void refreshed(HttpUrl url) {
+
+    synchronized (refreshCalls) {
+      refreshCalls.remove(url);
+    }
+  }
+
+}
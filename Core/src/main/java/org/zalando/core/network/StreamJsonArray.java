@@ -0,0 +1,33 @@
+package org.zalando.core.network;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a rest api method whose response holds a JSON array to be parsed while it is downloaded,
+ * emitting one element at a time. The method must also be annotated with {@link
+ * retrofit2.http.Streaming} and return an {@link io.reactivex.Observable} or {@link
+ * io.reactivex.Flowable} of the element type. See {@link StreamingJsonCallAdapterFactory}
+ *
+ * <pre>
+ * &#64;Streaming
+ * &#64;StreamJsonArray("list")
+ * &#64;GET("forecast")
+ * Observable&lt;ForecastData&gt; fetchForecasts(@Query("q") String address);
+ * </pre>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamJsonArray {
+
+  /**
+   * Names of the object fields leading from the root of the response to the array. Empty when
+   * the response itself is the array
+   */
+  String[] value() default {};
+
+}
@@ -0,0 +1,270 @@
+package org.zalando.core.network;
+
+import android.support.annotation.NonNull;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import okhttp3.ResponseBody;
+import org.reactivestreams.Publisher;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.HttpException;
+import retrofit2.http.Streaming;
+
+/**
+ * {@link CallAdapter.Factory} for the rest api methods annotated with {@link StreamJsonArray}. The
+ * response is parsed with a {@link JsonReader} while it is downloaded and every element of the
+ * array is emitted as soon as it is read, so only one element is held in memory at a time.
+ * {@link Flowable} return types only read the elements requested downstream. Disposing cancels
+ * the call, which also stops a read blocked waiting for the network.
+ *
+ * Methods without the annotation are left to the next factory, so it must be added before the
+ * RxJava one.
+ */
+public final class StreamingJsonCallAdapterFactory extends CallAdapter.Factory {
+
+  private final Gson gson;
+  private final Scheduler scheduler;
+
+  private StreamingJsonCallAdapterFactory(Gson gson, Scheduler scheduler) {
+
+    this.gson = gson;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Creates the factory
+   *
+   * @param gson {@link Gson} used to read the elements
+   * @param scheduler {@link Scheduler} where the calls are executed and parsed
+   * @return {@link StreamingJsonCallAdapterFactory}
+   */
+  public static StreamingJsonCallAdapterFactory create(@NonNull Gson gson,
+      @NonNull Scheduler scheduler) {
+
+    return new StreamingJsonCallAdapterFactory(gson, scheduler);
+  }
+
+  @Override
+  public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+
+    StreamJsonArray streamJsonArray = null;
+    boolean streaming = false;
+    for (Annotation annotation : annotations) {
+      if (annotation instanceof StreamJsonArray) {
+        streamJsonArray = (StreamJsonArray) annotation;
+      } else if (annotation instanceof Streaming) {
+        streaming = true;
+      }
+    }
+    if (streamJsonArray == null) {
+      return null;
+    }
+
+    final Class<?> rawType = getRawType(returnType);
+    if (rawType != Observable.class && rawType != Flowable.class) {
+      throw new IllegalArgumentException(String.format(
+          "@StreamJsonArray methods must return Observable or Flowable, found %s", returnType));
+    }
+    if (!(returnType instanceof ParameterizedType)) {
+      throw new IllegalArgumentException(String.format(
+          "@StreamJsonArray methods must return %s<Element>", rawType.getSimpleName()));
+    }
+    if (!streaming) {
+      throw new IllegalArgumentException(
+          "@StreamJsonArray methods must be annotated with @Streaming");
+    }
+
+    final Type elementType = getParameterUpperBound(0, (ParameterizedType) returnType);
+    return new StreamingJsonCallAdapter<>(gson.getAdapter(TypeToken.get(elementType)),
+        streamJsonArray.value(), rawType == Flowable.class, scheduler);
+  }
+
+  /**
+   * {@link CallAdapter} emitting the elements of the JSON array of the response
+   *
+   * @param <T> type of the elements
+   */
+  private static final class StreamingJsonCallAdapter<T> implements CallAdapter<ResponseBody,
+      Object> {
+
+    private static final Callable<ResponseReader> NEW_READER = new Callable<ResponseReader>() {
+      @Override
+      public ResponseReader call() throws Exception {
+
+        return new ResponseReader();
+      }
+    };
+    private static final Consumer<ResponseReader> CLOSE_READER = new Consumer<ResponseReader>() {
+      @Override
+      public void accept(ResponseReader state) throws Exception {
+
+        // Closing the reader closes the body, stopping the download if not finished
+        if (state.reader != null) {
+          state.reader.close();
+        }
+      }
+    };
+
+    private final TypeAdapter<T> typeAdapter;
+    private final String[] path;
+    private final boolean flowable;
+    private final Scheduler scheduler;
+
+    StreamingJsonCallAdapter(TypeAdapter<T> typeAdapter, String[] path, boolean flowable,
+        Scheduler scheduler) {
+
+      this.typeAdapter = typeAdapter;
+      this.path = path;
+      this.flowable = flowable;
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public Type responseType() {
+
+      return ResponseBody.class;
+    }
+
+    @Override
+    public Object adapt(final Call<ResponseBody> call) {
+
+      if (flowable) {
+        return Flowable.defer(new Callable<Publisher<T>>() {
+          @Override
+          public Publisher<T> call() throws Exception {
+
+            final Call<ResponseBody> subscriptionCall = call.clone();
+            return Flowable.generate(NEW_READER, readElement(subscriptionCall), CLOSE_READER)
+                .doOnCancel(cancel(subscriptionCall));
+          }
+        }).subscribeOn(scheduler);
+      }
+      return Observable.defer(new Callable<ObservableSource<T>>() {
+        @Override
+        public ObservableSource<T> call() throws Exception {
+
+          final Call<ResponseBody> subscriptionCall = call.clone();
+          return Observable.generate(NEW_READER, readElement(subscriptionCall), CLOSE_READER)
+              .doOnDispose(cancel(subscriptionCall));
+        }
+      }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Provides the generator emitting the next element of the response of the given call. The
+     * call is executed with the first element, once disposing already cancels it
+     *
+     * @param call {@link Call} of the subscription
+     * @return {@link BiConsumer} reading an element per invocation
+     */
+    private BiConsumer<ResponseReader, Emitter<T>> readElement(final Call<ResponseBody> call) {
+
+      return new BiConsumer<ResponseReader, Emitter<T>>() {
+        @Override
+        public void accept(ResponseReader state, Emitter<T> emitter) throws Exception {
+
+          try {
+            if (state.reader == null) {
+              state.reader = openArray(call);
+            }
+            if (state.reader.hasNext()) {
+              emitter.onNext(typeAdapter.read(state.reader));
+            } else {
+              state.reader.endArray();
+              emitter.onComplete();
+            }
+          } catch (IOException | RuntimeException e) {
+            if (!call.isCanceled()) {
+              throw e;
+            }
+            // Cancelled when disposed, there is nobody left to get the error
+            emitter.onComplete();
+          }
+        }
+      };
+    }
+
+    /**
+     * Provides the action cancelling the given call when disposed. Unlike the state disposer of
+     * the generator, it runs right away, even while a read is blocked waiting for the network
+     *
+     * @param call {@link Call} of the subscription
+     * @return {@link Action} cancelling the call
+     */
+    private static Action cancel(final Call<ResponseBody> call) {
+
+      return new Action() {
+        @Override
+        public void run() throws Exception {
+
+          call.cancel();
+        }
+      };
+    }
+
+    /**
+     * Executes the call and moves a reader of its body to the beginning of the array
+     *
+     * @param call {@link Call} to execute
+     * @return {@link JsonReader} ready to read the first element
+     * @throws IOException if the request or reading fails
+     */
+    private JsonReader openArray(Call<ResponseBody> call) throws IOException {
+
+      final Response<ResponseBody> response = call.execute();
+      if (!response.isSuccessful()) {
+        throw new HttpException(response);
+      }
+
+      final JsonReader reader = new JsonReader(response.body().charStream());
+      try {
+        for (String name : path) {
+          reader.beginObject();
+          while (true) {
+            if (!reader.hasNext()) {
+              throw new JsonParseException(String.format("Array %s not found in the response",
+                  Arrays.toString(path)));
+            }
+            if (name.equals(reader.nextName())) {
+              break;
+            }
+            reader.skipValue();
+          }
+        }
+        reader.beginArray();
+        return reader;
+      } catch (IOException | RuntimeException e) {
+        reader.close();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Reader of the response of a subscription, opened with the first element
+   */
+  private static final class ResponseReader {
+
+    JsonReader reader;
+  }
+
+}
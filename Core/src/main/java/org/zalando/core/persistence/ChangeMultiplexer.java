@@ -0,0 +1,120 @@
+package org.zalando.core.persistence;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches the changes of a table to the observers of the changed key. The table registers a
+ * single listener in the storage and forwards every change here, where it is routed to the
+ * subject of the key with a hash lookup, so a change costs the same no matter how many keys are
+ * observed. Subjects are reference counted and dropped when their last observer goes away.
+ */
+final class ChangeMultiplexer {
+
+  // Guarded by this
+  private final Map<String, KeySubject> subjects = new HashMap<>();
+
+  /**
+   * Provides an {@link Observable} that emits the given key every time its value changes
+   *
+   * @param key {@link String} with the validated key to observe
+   * @return {@link Observable} emitting the key on every change
+   */
+  Observable<String> observe(@NonNull final String key) {
+
+    return Observable.create(new ObservableOnSubscribe<String>() {
+      @Override
+      public void subscribe(final ObservableEmitter<String> emitter) throws Exception {
+
+        final Disposable disposable = acquire(key).subscribe(new Consumer<String>() {
+          @Override
+          public void accept(@NonNull String changedKey) throws Exception {
+            emitter.onNext(changedKey);
+          }
+        });
+        emitter.setCancellable(new Cancellable() {
+          @Override
+          public void cancel() throws Exception {
+            disposable.dispose();
+            release(key);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Notifies the observers of the given key about a change
+   *
+   * @param key {@link String} with the changed key. Null notifies all the observed keys, as the
+   * storage does when it is cleared
+   */
+  void dispatch(@Nullable String key) {
+
+    if (key == null) {
+      final List<KeySubject> allSubjects;
+      synchronized (this) {
+        allSubjects = new ArrayList<>(subjects.values());
+      }
+      for (KeySubject keySubject : allSubjects) {
+        keySubject.subject.onNext(keySubject.key);
+      }
+      return;
+    }
+
+    final KeySubject keySubject;
+    synchronized (this) {
+      keySubject = subjects.get(key);
+    }
+    if (keySubject != null) {
+      keySubject.subject.onNext(key);
+    }
+  }
+
+  private synchronized Subject<String> acquire(String key) {
+
+    KeySubject keySubject = subjects.get(key);
+    if (keySubject == null) {
+      keySubject = new KeySubject(key);
+      subjects.put(key, keySubject);
+    }
+    keySubject.observers++;
+    return keySubject.subject;
+  }
+
+  private synchronized void release(String key) {
+
+    final KeySubject keySubject = subjects.get(key);
+    if (keySubject != null && --keySubject.observers == 0) {
+      subjects.remove(key);
+    }
+  }
+
+  /**
+   * Subject of a key, together with the amount of observers using it
+   */
+  private static final class KeySubject {
+
+    private final String key;
+    private final Subject<String> subject = PublishSubject.<String>create().toSerialized();
+    private int observers;
+
+    KeySubject(String key) {
+
+      this.key = key;
+    }
+  }
+
+}
@@ -0,0 +1,435 @@
+package org.zalando.core.persistence;
+
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import org.zalando.core.utils.SecurityUtils;
+import timber.log.Timber;
+
+/**
+ * {@link SharedPreferences} that stores its values encrypted in another {@link SharedPreferences}.
+ * Every value is stored as an encrypted string holding a type tag, the key of the value and the
+ * value, string sets store every item encrypted. As the key is authenticated with the value, a
+ * value copied to another key is not read. Values that can not be decrypted, such as the strings,
+ * numbers and booleans stored in plain text before, are treated as absent. Editors keep the plain
+ * values and encrypt all of them in one go when they are committed.
+ */
+final class EncryptedSharedPreferences implements SharedPreferences {
+
+  private static final char TYPE_BOOLEAN = 'b';
+  private static final char TYPE_INT = 'i';
+  private static final char TYPE_LONG = 'l';
+  private static final char TYPE_FLOAT = 'f';
+  private static final char TYPE_STRING = 's';
+  private static final char TYPE_SET_ITEM = 'e';
+  private static final char KEY_LENGTH_END = ':';
+  private static final Object LISTENER_PRESENT = new Object();
+
+  private final SharedPreferences storage;
+  private final SecurityUtils.Cryptor cryptor;
+
+  // Guarded by itself
+  private final WeakHashMap<OnSharedPreferenceChangeListener, Object> listeners =
+      new WeakHashMap<>();
+
+  // Strongly referenced, the storage only keeps weak references to its listeners
+  private final OnSharedPreferenceChangeListener storageListener =
+      new OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+
+          final List<OnSharedPreferenceChangeListener> listenersToNotify;
+          synchronized (listeners) {
+            listenersToNotify = new ArrayList<>(listeners.keySet());
+          }
+          for (OnSharedPreferenceChangeListener listener : listenersToNotify) {
+            listener.onSharedPreferenceChanged(EncryptedSharedPreferences.this, key);
+          }
+        }
+      };
+
+  /**
+   * Constructor
+   *
+   * @param storage {@link SharedPreferences} where the encrypted values are stored
+   * @param cryptor {@link SecurityUtils.Cryptor} used to encrypt and decrypt the values
+   */
+  EncryptedSharedPreferences(SharedPreferences storage, SecurityUtils.Cryptor cryptor) {
+
+    this.storage = storage;
+    this.cryptor = cryptor;
+    storage.registerOnSharedPreferenceChangeListener(storageListener);
+  }
+
+  @Override
+  public Map<String, ?> getAll() {
+
+    final Map<String, Object> values = new HashMap<>();
+    for (Map.Entry<String, ?> entry : storage.getAll().entrySet()) {
+      final Object value = entry.getValue();
+      Object decryptedValue = null;
+      if (value instanceof String) {
+        final String plainValue = decrypt(entry.getKey(), (String) value);
+        decryptedValue = plainValue != null ? parse(plainValue) : null;
+      } else if (value instanceof Set) {
+        //noinspection unchecked
+        decryptedValue = decryptSet(entry.getKey(), (Set<String>) value);
+      }
+      if (decryptedValue != null) {
+        values.put(entry.getKey(), decryptedValue);
+      }
+    }
+    return values;
+  }
+
+  @Nullable
+  @Override
+  public String getString(String key, @Nullable String defValue) {
+
+    final Object value = read(key, TYPE_STRING);
+    return value != null ? (String) value : defValue;
+  }
+
+  @Nullable
+  @Override
+  public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+
+    final Object encryptedValue = readStored(key);
+    if (encryptedValue instanceof String && decrypt(key, (String) encryptedValue) != null) {
+      throw new ClassCastException(String.format("Value of %s is not a string set", key));
+    }
+    //noinspection unchecked
+    final Set<String> values = encryptedValue instanceof Set
+        ? decryptSet(key, (Set<String>) encryptedValue) : null;
+    return values != null ? values : defValues;
+  }
+
+  @Override
+  public int getInt(String key, int defValue) {
+
+    final Object value = read(key, TYPE_INT);
+    return value != null ? (Integer) value : defValue;
+  }
+
+  @Override
+  public long getLong(String key, long defValue) {
+
+    final Object value = read(key, TYPE_LONG);
+    return value != null ? (Long) value : defValue;
+  }
+
+  @Override
+  public float getFloat(String key, float defValue) {
+
+    final Object value = read(key, TYPE_FLOAT);
+    return value != null ? (Float) value : defValue;
+  }
+
+  @Override
+  public boolean getBoolean(String key, boolean defValue) {
+
+    final Object value = read(key, TYPE_BOOLEAN);
+    return value != null ? (Boolean) value : defValue;
+  }
+
+  @Override
+  public boolean contains(String key) {
+
+    // Values that can not be decrypted are absent
+    final Object encryptedValue = readStored(key);
+    if (encryptedValue instanceof String) {
+      return decrypt(key, (String) encryptedValue) != null;
+    }
+    //noinspection unchecked
+    return encryptedValue instanceof Set
+        && decryptSet(key, (Set<String>) encryptedValue) != null;
+  }
+
+  @Override
+  public Editor edit() {
+
+    return new EncryptedEditor();
+  }
+
+  @Override
+  public void registerOnSharedPreferenceChangeListener(
+      OnSharedPreferenceChangeListener listener) {
+
+    synchronized (listeners) {
+      listeners.put(listener, LISTENER_PRESENT);
+    }
+  }
+
+  @Override
+  public void unregisterOnSharedPreferenceChangeListener(
+      OnSharedPreferenceChangeListener listener) {
+
+    synchronized (listeners) {
+      listeners.remove(listener);
+    }
+  }
+
+  /**
+   * Reads and decrypts the value of the given key
+   *
+   * @param key {@link String} with the key to read
+   * @param type {@link Character} with the expected type tag
+   * @return {@link Object} with the decrypted value or null if there is no value it can decrypt
+   * @throws ClassCastException if the stored value has another type, as {@link SharedPreferences}
+   * does
+   */
+  @Nullable
+  private Object read(String key, char type) {
+
+    final Object encryptedValue = readStored(key);
+    //noinspection unchecked
+    if (encryptedValue instanceof Set && decryptSet(key, (Set<String>) encryptedValue) != null) {
+      throw new ClassCastException(String.format("Value of %s is a string set", key));
+    }
+    final String plainValue = encryptedValue instanceof String
+        ? decrypt(key, (String) encryptedValue) : null;
+    if (plainValue == null) {
+      return null;
+    }
+    if (plainValue.charAt(0) != type) {
+      throw new ClassCastException(String.format("Value of %s is not of type %s", key, type));
+    }
+    return parse(plainValue);
+  }
+
+  /**
+   * Reads the value of the given key as stored, without the typed getters of the storage, which
+   * throw for the plain numbers and booleans stored before the table was encrypted
+   *
+   * @param key {@link String} with the key to read
+   * @return {@link Object} stored, an encrypted {@link String} or {@link Set} of them, a plain
+   * value or null if there is none
+   */
+  @Nullable
+  private Object readStored(String key) {
+
+    return storage.getAll().get(key);
+  }
+
+  /**
+   * Decrypts the items of a string set
+   *
+   * @param key {@link String} with the key of the set
+   * @param encryptedValues {@link Set} of {@link String} with the encrypted items
+   * @return {@link Set} of {@link String} with the items, null if any of them can not be decrypted
+   */
+  @Nullable
+  private Set<String> decryptSet(String key, Set<String> encryptedValues) {
+
+    final Set<String> values = new HashSet<>(encryptedValues.size());
+    for (String encryptedValue : encryptedValues) {
+      final String plainValue = decrypt(key, encryptedValue);
+      if (plainValue == null || plainValue.charAt(0) != TYPE_SET_ITEM) {
+        return null;
+      }
+      values.add(plainValue.substring(1));
+    }
+    return values;
+  }
+
+  /**
+   * Decrypts a value of the given key, checking it was encrypted for the key
+   *
+   * @param key {@link String} with the key of the value
+   * @param encryptedValue {@link String} with the encrypted value
+   * @return {@link String} with the type tag followed by the value, null if it can not be
+   * decrypted or belongs to another key
+   */
+  @Nullable
+  private String decrypt(String key, String encryptedValue) {
+
+    final String plainValue;
+    try {
+      plainValue = cryptor.decrypt(encryptedValue);
+    } catch (GeneralSecurityException | UnsupportedEncodingException | RuntimeException e) {
+      Timber.w("decrypt: unable to decrypt the value of %s", key);
+      return null;
+    }
+
+    // Made of the type tag, the length of the key, the key and the value
+    final int keyLengthEnd = plainValue.indexOf(KEY_LENGTH_END, 1);
+    try {
+      final int keyStart = keyLengthEnd + 1;
+      final int keyEnd = keyStart + Integer.parseInt(plainValue.substring(1, keyLengthEnd));
+      if (keyLengthEnd > 0 && plainValue.regionMatches(keyStart, key, 0, key.length())
+          && keyEnd == keyStart + key.length()) {
+        return plainValue.charAt(0) + plainValue.substring(keyEnd);
+      }
+    } catch (RuntimeException e) {
+      // Not in the expected format
+    }
+    Timber.w("decrypt: the value of %s does not belong to it", key);
+    return null;
+  }
+
+  /**
+   * Encrypts a value of the given key, together with the key
+   *
+   * @param key {@link String} with the key of the value
+   * @param plainValue {@link String} with the type tag followed by the value
+   * @return {@link String} with the encrypted value
+   */
+  private String encrypt(String key, String plainValue) {
+
+    final String boundValue = plainValue.charAt(0) + Integer.toString(key.length())
+        + KEY_LENGTH_END + key + plainValue.substring(1);
+    try {
+      return cryptor.encrypt(boundValue);
+    } catch (GeneralSecurityException | UnsupportedEncodingException e) {
+      throw new IllegalStateException(String.format("Unable to encrypt the value of %s", key), e);
+    }
+  }
+
+  /**
+   * Parses a decrypted value, made of its type tag followed by the value
+   *
+   * @param plainValue {@link String} with the decrypted value
+   * @return {@link Object} with the value in its type
+   */
+  private static Object parse(String plainValue) {
+
+    final String value = plainValue.substring(1);
+    switch (plainValue.charAt(0)) {
+      case TYPE_BOOLEAN:
+        return Boolean.parseBoolean(value);
+      case TYPE_INT:
+        return Integer.parseInt(value);
+      case TYPE_LONG:
+        return Long.parseLong(value);
+      case TYPE_FLOAT:
+        return Float.parseFloat(value);
+      case TYPE_STRING:
+        return value;
+      default:
+        throw new IllegalStateException(
+            String.format("Unknown type %s of decrypted value", plainValue.charAt(0)));
+    }
+  }
+
+  /**
+   * {@link Editor} that keeps the plain values and encrypts them all when committed
+   */
+  private final class EncryptedEditor implements Editor {
+
+    // Marks removed keys, as null values are not allowed in the table
+    private final Object removed = new Object();
+    private final Map<String, Object> modifications = new HashMap<>();
+    private boolean clear;
+
+    @Override
+    public synchronized Editor putString(String key, @Nullable String value) {
+
+      modifications.put(key, value != null ? TYPE_STRING + value : removed);
+      return this;
+    }
+
+    @Override
+    public synchronized Editor putStringSet(String key, @Nullable Set<String> values) {
+
+      modifications.put(key, values != null ? new HashSet<>(values) : removed);
+      return this;
+    }
+
+    @Override
+    public synchronized Editor putInt(String key, int value) {
+
+      modifications.put(key, TYPE_INT + Integer.toString(value));
+      return this;
+    }
+
+    @Override
+    public synchronized Editor putLong(String key, long value) {
+
+      modifications.put(key, TYPE_LONG + Long.toString(value));
+      return this;
+    }
+
+    @Override
+    public synchronized Editor putFloat(String key, float value) {
+
+      modifications.put(key, TYPE_FLOAT + Float.toString(value));
+      return this;
+    }
+
+    @Override
+    public synchronized Editor putBoolean(String key, boolean value) {
+
+      modifications.put(key, TYPE_BOOLEAN + Boolean.toString(value));
+      return this;
+    }
+
+    @Override
+    public synchronized Editor remove(String key) {
+
+      modifications.put(key, removed);
+      return this;
+    }
+
+    @Override
+    public synchronized Editor clear() {
+
+      clear = true;
+      return this;
+    }
+
+    @Override
+    public boolean commit() {
+
+      return encryptModifications().commit();
+    }
+
+    @Override
+    public void apply() {
+
+      encryptModifications().apply();
+    }
+
+    /**
+     * Encrypts all the modifications and moves them to an {@link Editor} of the storage
+     *
+     * @return {@link Editor} of the storage with the encrypted modifications
+     */
+    private synchronized Editor encryptModifications() {
+
+      final Editor editor = storage.edit();
+      if (clear) {
+        editor.clear();
+        clear = false;
+      }
+
+      for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+        final String key = entry.getKey();
+        final Object value = entry.getValue();
+        if (value == removed) {
+          editor.remove(key);
+        } else if (value instanceof Set) {
+          //noinspection unchecked
+          final Set<String> values = (Set<String>) value;
+          final Set<String> encryptedValues = new HashSet<>(values.size());
+          for (String item : values) {
+            encryptedValues.add(encrypt(key, TYPE_SET_ITEM + item));
+          }
+          editor.putStringSet(key, encryptedValues);
+        } else {
+          editor.putString(key, encrypt(key, (String) value));
+        }
+      }
+      modifications.clear();
+      return editor;
+    }
+  }
+
+}
@@ -0,0 +1,71 @@
+package org.zalando.core.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+import org.zalando.core.utils.SecurityUtils;
+
+/**
+ * {@link StorageEngine} that encrypts the values of every table with AES before handing them to
+ * another engine. Keys are stored in plain text so lookups stay hash based.
+ *
+ * The key is parsed and the crypto engines are created once per engine, instead of once per
+ * value as {@link SecurityUtils#encrypt(String)} and {@link SecurityUtils#decrypt(String, String)}
+ * do. Values are decrypted on their first read and then kept decrypted by the {@link
+ * PersistentHashTable} read cache.
+ */
+public class EncryptedStorageEngine implements StorageEngine {
+
+  private final StorageEngine storageEngine;
+  private final SecurityUtils.Cryptor cryptor;
+
+  // Guarded by itself
+  private final Map<SharedPreferences, EncryptedSharedPreferences> openTables = new HashMap<>();
+
+  /**
+   * Constructor that encrypts the tables stored in the Android {@link SharedPreferences}
+   *
+   * @param key {@link String} with the encryption key, as provided by {@link
+   * SecurityUtils#generateKey(String)}
+   * @throws GeneralSecurityException if the key is invalid or AES is not implemented on this system
+   */
+  public EncryptedStorageEngine(@NonNull String key) throws GeneralSecurityException {
+
+    this(new SharedPreferencesStorageEngine(), key);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param storageEngine {@link StorageEngine} storing the encrypted tables
+   * @param key {@link String} with the encryption key, as provided by {@link
+   * SecurityUtils#generateKey(String)}
+   * @throws GeneralSecurityException if the key is invalid or AES is not implemented on this system
+   */
+  public EncryptedStorageEngine(@NonNull StorageEngine storageEngine, @NonNull String key)
+      throws GeneralSecurityException {
+
+    this.storageEngine = storageEngine;
+    this.cryptor = SecurityUtils.createCryptor(key);
+  }
+
+  @NonNull
+  @Override
+  public SharedPreferences open(@NonNull Context context, @Nullable String tableId) {
+
+    final SharedPreferences storage = storageEngine.open(context, tableId);
+    synchronized (openTables) {
+      EncryptedSharedPreferences table = openTables.get(storage);
+      if (table == null) {
+        table = new EncryptedSharedPreferences(storage, cryptor);
+        openTables.put(storage, table);
+      }
+      return table;
+    }
+  }
+
+}
@@ -0,0 +1,713 @@
+package org.zalando.core.persistence;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import timber.log.Timber;
+
+/**
+ * {@link SharedPreferences} implementation backed by an append-only log that is memory mapped
+ * into the process. Every committed change is appended as a typed record, so a write costs the
+ * size of the record and not the size of the table. The table is replayed from the log when it is
+ * opened, and the log is rewritten with the live records only when most of it is garbage.
+ *
+ * Record layout: [int length][byte type][int keyLength][key UTF-8][value]. The length is written
+ * after the rest of the record, so a record is only visible once it is completely written.
+ */
+final class LogSharedPreferences implements SharedPreferences {
+
+  private static final int MAGIC = 0x474C4F47;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int LENGTH_SIZE = 4;
+  private static final int INITIAL_CAPACITY = 16 * 1024;
+  private static final String COMPACTION_EXTENSION = ".compact";
+
+  private static final byte TYPE_BOOLEAN = 1;
+  private static final byte TYPE_INT = 2;
+  private static final byte TYPE_LONG = 3;
+  private static final byte TYPE_FLOAT = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_STRING_SET = 6;
+  private static final byte TYPE_REMOVE = 7;
+  private static final byte TYPE_CLEAR = 8;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Object LISTENER_PRESENT = new Object();
+
+  private final File file;
+  private final Object lock = new Object();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final WeakHashMap<OnSharedPreferenceChangeListener, Object> listeners =
+      new WeakHashMap<>();
+
+  // Guarded by lock
+  private final Map<String, Object> values = new HashMap<>();
+  private final Map<String, Integer> recordSizes = new HashMap<>();
+  private boolean loaded;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int writePosition;
+  private int liveBytes;
+
+  /**
+   * Constructor. The log is replayed on a background thread, reads block until it is loaded
+   *
+   * @param file {@link File} with the log of the table
+   */
+  LogSharedPreferences(@NonNull File file) {
+
+    this.file = file;
+    new Thread("LogSharedPreferences-load") {
+      @Override
+      public void run() {
+        synchronized (lock) {
+          loadFromDisk();
+          loaded = true;
+          lock.notifyAll();
+        }
+      }
+    }.start();
+  }
+
+  @Override
+  public Map<String, ?> getAll() {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      return new HashMap<>(values);
+    }
+  }
+
+  @Nullable
+  @Override
+  public String getString(String key, @Nullable String defValue) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final String value = (String) values.get(key);
+      return value != null ? value : defValue;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  @Override
+  public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final Set<String> value = (Set<String>) values.get(key);
+      return value != null ? value : defValues;
+    }
+  }
+
+  @Override
+  public int getInt(String key, int defValue) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final Integer value = (Integer) values.get(key);
+      return value != null ? value : defValue;
+    }
+  }
+
+  @Override
+  public long getLong(String key, long defValue) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final Long value = (Long) values.get(key);
+      return value != null ? value : defValue;
+    }
+  }
+
+  @Override
+  public float getFloat(String key, float defValue) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final Float value = (Float) values.get(key);
+      return value != null ? value : defValue;
+    }
+  }
+
+  @Override
+  public boolean getBoolean(String key, boolean defValue) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      final Boolean value = (Boolean) values.get(key);
+      return value != null ? value : defValue;
+    }
+  }
+
+  @Override
+  public boolean contains(String key) {
+
+    synchronized (lock) {
+      awaitLoadedLocked();
+      return values.containsKey(key);
+    }
+  }
+
+  @Override
+  public Editor edit() {
+
+    return new LogEditor();
+  }
+
+  @Override
+  public void registerOnSharedPreferenceChangeListener(
+      OnSharedPreferenceChangeListener listener) {
+
+    synchronized (lock) {
+      listeners.put(listener, LISTENER_PRESENT);
+    }
+  }
+
+  @Override
+  public void unregisterOnSharedPreferenceChangeListener(
+      OnSharedPreferenceChangeListener listener) {
+
+    synchronized (lock) {
+      listeners.remove(listener);
+    }
+  }
+
+  /**
+   * Blocks until the log has been replayed. Must be called holding the lock
+   */
+  private void awaitLoadedLocked() {
+
+    while (!loaded) {
+      try {
+        lock.wait();
+      } catch (InterruptedException ignored) {
+        // Keep waiting, the table can not be used until it is loaded
+      }
+    }
+  }
+
+  /**
+   * Maps the log file and replays its records. If the file can not be opened the table keeps
+   * working in memory only. Must be called holding the lock
+   */
+  private void loadFromDisk() {
+
+    try {
+      final File directory = file.getParentFile();
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("Unable to create " + directory);
+      }
+      openLog(INITIAL_CAPACITY);
+
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(LENGTH_SIZE) != VERSION) {
+        // New or unreadable log, start from scratch
+        clearTail(0);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(LENGTH_SIZE, VERSION);
+        writePosition = HEADER_SIZE;
+        return;
+      }
+      replay();
+    } catch (IOException e) {
+      Timber.e(e, "loadFromDisk: unable to open %s", file);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Opens the log file and maps at least the given capacity, extending the file if needed
+   *
+   * @param minCapacity {@link Integer} with the minimum amount of bytes to map
+   * @throws IOException if the file can not be mapped
+   */
+  private void openLog(int minCapacity) throws IOException {
+
+    channel = new RandomAccessFile(file, "rw").getChannel();
+    final int capacity = (int) Math.max(channel.size(), minCapacity);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /**
+   * Reads all the complete records of the log into memory and places the write position after
+   * the last one
+   */
+  private void replay() {
+
+    final ByteBuffer reader = buffer.duplicate();
+    int position = HEADER_SIZE;
+    while (position + LENGTH_SIZE <= reader.capacity()) {
+      final int length = reader.getInt(position);
+      if (length == 0) {
+        break;
+      }
+      final int recordEnd = position + LENGTH_SIZE + length;
+      if (length < 0 || recordEnd > reader.capacity()) {
+        Timber.e("replay: truncated record at %d in %s", position, file);
+        clearTail(position);
+        break;
+      }
+      reader.limit(recordEnd);
+      reader.position(position + LENGTH_SIZE);
+      try {
+        applyRecord(reader, LENGTH_SIZE + length);
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        Timber.e(e, "replay: corrupted record at %d in %s", position, file);
+        clearTail(position);
+        break;
+      }
+      reader.limit(reader.capacity());
+      position = recordEnd;
+    }
+    writePosition = position;
+  }
+
+  /**
+   * Zeroes the log from the given position, so leftovers of a damaged log are never replayed
+   * after new records are appended
+   *
+   * @param position {@link Integer} with the position to clear from
+   */
+  private void clearTail(int position) {
+
+    for (int i = position; i < buffer.capacity(); i++) {
+      buffer.put(i, (byte) 0);
+    }
+  }
+
+  /**
+   * Applies the record available in the given reader to the in memory table
+   *
+   * @param reader {@link ByteBuffer} positioned at the beginning of the record body
+   * @param recordSize {@link Integer} with the size of the record on disk
+   */
+  private void applyRecord(ByteBuffer reader, int recordSize) {
+
+    final byte type = reader.get();
+    final String key = readString(reader);
+    switch (type) {
+      case TYPE_BOOLEAN:
+        putLocked(key, reader.get() != 0, recordSize);
+        break;
+      case TYPE_INT:
+        putLocked(key, reader.getInt(), recordSize);
+        break;
+      case TYPE_LONG:
+        putLocked(key, reader.getLong(), recordSize);
+        break;
+      case TYPE_FLOAT:
+        putLocked(key, reader.getFloat(), recordSize);
+        break;
+      case TYPE_STRING:
+        putLocked(key, readString(reader), recordSize);
+        break;
+      case TYPE_STRING_SET:
+        final int count = reader.getInt();
+        final Set<String> set = new HashSet<>(count);
+        for (int i = 0; i < count; i++) {
+          set.add(readString(reader));
+        }
+        putLocked(key, set, recordSize);
+        break;
+      case TYPE_REMOVE:
+        removeLocked(key);
+        break;
+      case TYPE_CLEAR:
+        clearLocked();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown record type " + type);
+    }
+  }
+
+  private void putLocked(String key, Object value, int recordSize) {
+
+    values.put(key, value);
+    final Integer previousSize = recordSizes.put(key, recordSize);
+    liveBytes += recordSize - (previousSize != null ? previousSize : 0);
+  }
+
+  private void removeLocked(String key) {
+
+    values.remove(key);
+    final Integer previousSize = recordSizes.remove(key);
+    liveBytes -= previousSize != null ? previousSize : 0;
+  }
+
+  private void clearLocked() {
+
+    values.clear();
+    recordSizes.clear();
+    liveBytes = 0;
+  }
+
+  /**
+   * Appends the given record body to the log. Must be called holding the lock
+   *
+   * @param record byte array with the record body
+   */
+  private void appendLocked(byte[] record) {
+
+    if (buffer == null) {
+      return;
+    }
+    try {
+      ensureCapacityLocked(LENGTH_SIZE + record.length);
+      writePosition = writeRecord(buffer, writePosition, record);
+    } catch (IOException e) {
+      Timber.e(e, "appendLocked: unable to write to %s", file);
+    }
+  }
+
+  /**
+   * Makes room for the given amount of bytes at the end of the log, compacting it when at least
+   * half of it is garbage or growing it otherwise
+   *
+   * @param size {@link Integer} with the amount of bytes to append
+   * @throws IOException if the log can not be compacted or remapped
+   */
+  private void ensureCapacityLocked(int size) throws IOException {
+
+    if (writePosition + size <= buffer.capacity()) {
+      return;
+    }
+    if (liveBytes * 2 < writePosition - HEADER_SIZE) {
+      compactLocked(size);
+      if (writePosition + size <= buffer.capacity()) {
+        return;
+      }
+    }
+    final int capacity = Math.max(buffer.capacity() * 2, writePosition + size);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /**
+   * Rewrites the log with the live records only. The new log is written next to the current one
+   * and renamed over it, so a crash in the middle leaves the previous log untouched
+   *
+   * @param extraSize {@link Integer} with the amount of bytes that will be appended right after
+   * @throws IOException if the compacted log can not be written
+   */
+  private void compactLocked(int extraSize) throws IOException {
+
+    Timber.d("compact: %s %d live bytes of %d", file, liveBytes, writePosition);
+
+    final File compacted = new File(file.getPath() + COMPACTION_EXTENSION);
+    final FileChannel compactedChannel = new RandomAccessFile(compacted, "rw").getChannel();
+    try {
+      final int capacity = Math.max(INITIAL_CAPACITY, (HEADER_SIZE + liveBytes + extraSize) * 2);
+      final MappedByteBuffer target = compactedChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+          capacity);
+      target.putInt(0, MAGIC);
+      target.putInt(LENGTH_SIZE, VERSION);
+      int position = HEADER_SIZE;
+      for (Map.Entry<String, Object> entry : values.entrySet()) {
+        position = writeRecord(target, position, encodeRecord(entry.getKey(), entry.getValue()));
+      }
+      target.force();
+    } finally {
+      compactedChannel.close();
+    }
+
+    channel.close();
+    if (!compacted.renameTo(file)) {
+      throw new IOException("Unable to replace " + file);
+    }
+    openLog(INITIAL_CAPACITY);
+    writePosition = HEADER_SIZE + liveBytes;
+  }
+
+  /**
+   * Writes the given record body at the given position, publishing its length last
+   *
+   * @param target {@link ByteBuffer} to write to
+   * @param position {@link Integer} with the position to write at
+   * @param record byte array with the record body
+   * @return {@link Integer} with the position right after the written record
+   */
+  private static int writeRecord(ByteBuffer target, int position, byte[] record) {
+
+    target.position(position + LENGTH_SIZE);
+    target.put(record);
+    target.putInt(position, record.length);
+    return position + LENGTH_SIZE + record.length;
+  }
+
+  /**
+   * Encodes the record body to store the given value with the given key
+   *
+   * @param key {@link String} with the key
+   * @param value {@link Object} with the value. Null encodes a removal
+   * @return byte array with the record body
+   */
+  @SuppressWarnings("unchecked")
+  private static byte[] encodeRecord(@NonNull String key, @Nullable Object value) {
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final int keySize = LENGTH_SIZE + keyBytes.length;
+
+    if (value == null) {
+      return ByteBuffer.allocate(1 + keySize).put(TYPE_REMOVE).putInt(keyBytes.length)
+          .put(keyBytes).array();
+    }
+    if (value instanceof Boolean) {
+      return ByteBuffer.allocate(1 + keySize + 1).put(TYPE_BOOLEAN).putInt(keyBytes.length)
+          .put(keyBytes).put((byte) ((Boolean) value ? 1 : 0)).array();
+    }
+    if (value instanceof Integer) {
+      return ByteBuffer.allocate(1 + keySize + 4).put(TYPE_INT).putInt(keyBytes.length)
+          .put(keyBytes).putInt((Integer) value).array();
+    }
+    if (value instanceof Long) {
+      return ByteBuffer.allocate(1 + keySize + 8).put(TYPE_LONG).putInt(keyBytes.length)
+          .put(keyBytes).putLong((Long) value).array();
+    }
+    if (value instanceof Float) {
+      return ByteBuffer.allocate(1 + keySize + 4).put(TYPE_FLOAT).putInt(keyBytes.length)
+          .put(keyBytes).putFloat((Float) value).array();
+    }
+    if (value instanceof String) {
+      final byte[] valueBytes = ((String) value).getBytes(UTF_8);
+      return ByteBuffer.allocate(1 + keySize + LENGTH_SIZE + valueBytes.length).put(TYPE_STRING)
+          .putInt(keyBytes.length).put(keyBytes).putInt(valueBytes.length).put(valueBytes)
+          .array();
+    }
+    if (value instanceof Set) {
+      final Set<String> set = (Set<String>) value;
+      final List<byte[]> elements = new ArrayList<>(set.size());
+      int size = 1 + keySize + LENGTH_SIZE;
+      for (String element : set) {
+        final byte[] elementBytes = element.getBytes(UTF_8);
+        elements.add(elementBytes);
+        size += LENGTH_SIZE + elementBytes.length;
+      }
+      final ByteBuffer record = ByteBuffer.allocate(size).put(TYPE_STRING_SET)
+          .putInt(keyBytes.length).put(keyBytes).putInt(elements.size());
+      for (byte[] elementBytes : elements) {
+        record.putInt(elementBytes.length).put(elementBytes);
+      }
+      return record.array();
+    }
+
+    throw new IllegalArgumentException(String.format("Saving %s type is not supported",
+        value.getClass()));
+  }
+
+  private static byte[] encodeClearRecord() {
+
+    return ByteBuffer.allocate(1 + LENGTH_SIZE).put(TYPE_CLEAR).putInt(0).array();
+  }
+
+  private static String readString(ByteBuffer reader) {
+
+    final int length = reader.getInt();
+    if (length < 0 || length > reader.remaining()) {
+      throw new IllegalArgumentException("Invalid string length " + length);
+    }
+    final byte[] bytes = new byte[length];
+    reader.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Notifies the registered listeners about the changed keys on the main thread, as the
+   * framework {@link SharedPreferences} does
+   *
+   * @param changedKeys {@link List} of changed keys
+   */
+  private void notifyListeners(final List<String> changedKeys) {
+
+    final List<OnSharedPreferenceChangeListener> listenersToNotify;
+    synchronized (lock) {
+      if (changedKeys.isEmpty() || listeners.isEmpty()) {
+        return;
+      }
+      listenersToNotify = new ArrayList<>(listeners.keySet());
+    }
+
+    final Runnable notification = new Runnable() {
+      @Override
+      public void run() {
+        for (int i = changedKeys.size() - 1; i >= 0; i--) {
+          for (OnSharedPreferenceChangeListener listener : listenersToNotify) {
+            listener.onSharedPreferenceChanged(LogSharedPreferences.this, changedKeys.get(i));
+          }
+        }
+      }
+    };
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      notification.run();
+    } else {
+      mainHandler.post(notification);
+    }
+  }
+
+  /**
+   * {@link Editor} that collects the changes and appends them to the log when committed
+   */
+  private final class LogEditor implements Editor {
+
+    // Marks removed keys, as null values are not allowed in the table
+    private final Object removed = new Object();
+    private final Map<String, Object> modifications = new HashMap<>();
+    private boolean clear;
+
+    @Override
+    public Editor putString(String key, @Nullable String value) {
+
+      synchronized (this) {
+        modifications.put(key, value != null ? value : removed);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor putStringSet(String key, @Nullable Set<String> values) {
+
+      synchronized (this) {
+        modifications.put(key, values != null ? new HashSet<>(values) : removed);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor putInt(String key, int value) {
+
+      synchronized (this) {
+        modifications.put(key, value);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor putLong(String key, long value) {
+
+      synchronized (this) {
+        modifications.put(key, value);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor putFloat(String key, float value) {
+
+      synchronized (this) {
+        modifications.put(key, value);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor putBoolean(String key, boolean value) {
+
+      synchronized (this) {
+        modifications.put(key, value);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor remove(String key) {
+
+      synchronized (this) {
+        modifications.put(key, removed);
+        return this;
+      }
+    }
+
+    @Override
+    public Editor clear() {
+
+      synchronized (this) {
+        clear = true;
+        return this;
+      }
+    }
+
+    @Override
+    public boolean commit() {
+
+      return write(true);
+    }
+
+    @Override
+    public void apply() {
+
+      write(false);
+    }
+
+    /**
+     * Applies the modifications to the table and appends them to the log. Writes always land in
+     * the mapped memory, the page cache takes care of flushing them to disk
+     *
+     * @param force {@link Boolean} indicating if the log must be synced to disk before returning
+     * @return {@link Boolean} indicating if the changes were written
+     */
+    private boolean write(boolean force) {
+
+      final List<String> changedKeys = new ArrayList<>();
+      final boolean written;
+      synchronized (lock) {
+        awaitLoadedLocked();
+        synchronized (this) {
+          if (clear) {
+            if (!values.isEmpty()) {
+              clearLocked();
+              appendLocked(encodeClearRecord());
+            }
+            clear = false;
+          }
+
+          for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+            final String key = entry.getKey();
+            final Object value = entry.getValue();
+            if (value == removed) {
+              if (!values.containsKey(key)) {
+                continue;
+              }
+              removeLocked(key);
+              appendLocked(encodeRecord(key, null));
+            } else {
+              if (value.equals(values.get(key))) {
+                continue;
+              }
+              final byte[] record = encodeRecord(key, value);
+              putLocked(key, value, LENGTH_SIZE + record.length);
+              appendLocked(record);
+            }
+            changedKeys.add(key);
+          }
+          modifications.clear();
+        }
+
+        written = buffer != null;
+        if (force && written) {
+          buffer.force();
+        }
+      }
+
+      notifyListeners(changedKeys);
+      return written;
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package org.zalando.core.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link StorageEngine} that keeps every table in an append-only, memory mapped log file. Each
+ * write appends a typed record instead of rewriting the whole table, and the log is compacted
+ * once most of it is made of overwritten records.
+ *
+ * Tables are stored under the "persistent_tables" folder of the app files dir, one log per table
+ * id.
+ */
+public class LogStorageEngine implements StorageEngine {
+
+  private static final String TABLES_DIRECTORY = "persistent_tables";
+  private static final String LOG_EXTENSION = ".log";
+  private static final String DEFAULT_TABLE_SUFFIX = "_preferences";
+
+  // Same file must always be accessed through the same instance
+  private static final Map<String, LogSharedPreferences> OPEN_TABLES = new HashMap<>();
+
+  @NonNull
+  @Override
+  public SharedPreferences open(@NonNull Context context, @Nullable String tableId) {
+
+    final String tableName = tableId != null ? tableId
+        : context.getPackageName() + DEFAULT_TABLE_SUFFIX;
+    final File logFile = new File(new File(context.getFilesDir(), TABLES_DIRECTORY),
+        tableName + LOG_EXTENSION);
+
+    synchronized (OPEN_TABLES) {
+      final String path = logFile.getAbsolutePath();
+      LogSharedPreferences table = OPEN_TABLES.get(path);
+      if (table == null) {
+        table = new LogSharedPreferences(logFile);
+        OPEN_TABLES.put(path, table);
+      }
+      return table;
+    }
+  }
+
+}
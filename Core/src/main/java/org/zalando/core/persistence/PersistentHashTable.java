@@ -3,33 +3,59 @@ package org.zalando.core.persistence;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
-import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
-import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import org.zalando.core.utils.Preconditions;
 import timber.log.Timber;
 
 /**
  * Thread safe class that stores key/value primitive data in the persistent storage
+ *
+ * The primitive getters, such as {@link #getInt(String, int)}, read the cached values without
+ * boxing them. The primitive setters do box their value, which is cached boxed, and {@link
+ * SharedPreferences.Editor} keeps the values to write boxed anyway.
  */
 public class PersistentHashTable {
 
+  // Marks keys known to not exist in the storage
+  private static final Object ABSENT = new Object();
+
   private final Context context;
-  private SharedPreferences sharedPreferences;
+  private final StorageEngine storageEngine;
+  private volatile OpenTable table;
+  private volatile long writeDebounceMillis;
   private String persistentHashTableId;
 
   @Inject
   public PersistentHashTable(Context applicationContext) {
 
+    this(applicationContext, new SharedPreferencesStorageEngine());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param applicationContext {@link Context} of the app
+   * @param storageEngine {@link StorageEngine} that stores the tables, for example {@link
+   * LogStorageEngine} for tables with frequent writes
+   */
+  public PersistentHashTable(Context applicationContext, @NonNull StorageEngine storageEngine) {
+
     context = applicationContext.getApplicationContext();
-    sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    this.storageEngine = storageEngine;
+    table = new OpenTable(storageEngine.open(context, null));
   }
 
   /**
@@ -46,35 +72,89 @@ public class PersistentHashTable {
 
     Preconditions.checkArgument(defaultValue.getClass().equals(clazz));
 
-    // Check each supported type
-    if (defaultValue instanceof Boolean) {
-      return clazz.cast(sharedPreferences.getBoolean(validateAndCleanKey(key),
-          (Boolean) defaultValue));
+    // Dates are stored as their time in millis
+    final Object storedValue = getStoredValue(validateAndCleanKey(key),
+        clazz == Date.class ? Long.class : clazz);
+    if (storedValue == ABSENT) {
+      return defaultValue;
     }
-    if (defaultValue instanceof String) {
-      return clazz.cast(sharedPreferences.getString(validateAndCleanKey(key),
-          (String) defaultValue));
+    if (clazz == Date.class) {
+      return clazz.cast(new Date((Long) storedValue));
+    }
+    return clazz.cast(storedValue);
+  }
+
+  /**
+   * Provides the value stored with the given key as the storage keeps it. Values are served from
+   * the read cache of the open table when possible, and cached after reading them from the storage
+   * otherwise, so hot keys are read without locking
+   *
+   * @param cleanKey {@link String} with the validated key
+   * @param storedClass {@link Class} of the value in the storage
+   * @return {@link Object} with the stored value, or {@link #ABSENT} if the key does not exist
+   */
+  private Object getStoredValue(String cleanKey, Class<?> storedClass) {
+
+    final OpenTable openTable = table;
+    final Object cachedValue = openTable.cache.get(cleanKey);
+    if (cachedValue == ABSENT || (cachedValue != null && cachedValue.getClass() == storedClass)) {
+      return cachedValue;
+    }
+
+    // Written values may still be waiting for the debounce window to finish
+    final Object pendingValue = openTable.pendingValues.get(cleanKey);
+    if (pendingValue != null) {
+      return pendingValue;
+    }
+
+    // Not cached yet, read it from the storage
+    final int generation = openTable.generation.get();
+    final Object storedValue = readFromStorage(openTable.sharedPreferences, cleanKey,
+        storedClass);
+    final Object valueToCache = storedValue != null ? storedValue : ABSENT;
+    if (openTable.cache.putIfAbsent(cleanKey, valueToCache) == null
+        && generation != openTable.generation.get()) {
+      // The storage changed while reading, so the read value may be outdated already
+      openTable.cache.remove(cleanKey, valueToCache);
+    }
+    return valueToCache;
+  }
+
+  /**
+   * Reads the value of the given key from the {@link SharedPreferences}
+   *
+   * @param sharedPreferences {@link SharedPreferences} to read from
+   * @param cleanKey {@link String} with the validated key
+   * @param storedClass {@link Class} of the value in the storage
+   * @return {@link Object} with the stored value, null if the key does not exist
+   */
+  private static Object readFromStorage(SharedPreferences sharedPreferences, String cleanKey,
+      Class<?> storedClass) {
+
+    if (!sharedPreferences.contains(cleanKey)) {
+      return null;
+    }
+
+    // Check each supported type
+    if (storedClass == Boolean.class) {
+      return sharedPreferences.getBoolean(cleanKey, false);
     }
-    if (defaultValue instanceof Float) {
-      return clazz.cast(sharedPreferences.getFloat(validateAndCleanKey(key),
-          (Float) defaultValue));
+    if (storedClass == String.class) {
+      return sharedPreferences.getString(cleanKey, null);
     }
-    if (defaultValue instanceof Long) {
-      return clazz.cast(sharedPreferences.getLong(validateAndCleanKey(key),
-          (Long) defaultValue));
+    if (storedClass == Float.class) {
+      return sharedPreferences.getFloat(cleanKey, 0f);
     }
-    if (defaultValue instanceof Date) {
-      return clazz.cast(new Date(sharedPreferences.getLong(validateAndCleanKey(key),
-          ((Date) defaultValue).getTime())));
+    if (storedClass == Long.class) {
+      return sharedPreferences.getLong(cleanKey, 0L);
     }
-    if (defaultValue instanceof Integer) {
-      return clazz.cast(sharedPreferences.getInt(validateAndCleanKey(key),
-          (Integer) defaultValue));
+    if (storedClass == Integer.class) {
+      return sharedPreferences.getInt(cleanKey, 0);
     }
 
     // If reached this point we are trying to get a not supported type. Throw exception
     throw new IllegalArgumentException(String.format("Retrieving %s type is not supported",
-        clazz));
+        storedClass));
   }
 
   /**
@@ -84,9 +164,9 @@ public class PersistentHashTable {
    * @param defaultValue {@link Boolean} default value if the key doesn't exist
    * @return {@link Boolean} of the given key
    */
-  public synchronized Boolean get(@NonNull String key, boolean defaultValue) {
+  public Boolean get(@NonNull String key, boolean defaultValue) {
 
-    return get(key, defaultValue, Boolean.class);
+    return getBoolean(key, defaultValue);
   }
 
   /**
@@ -149,6 +229,71 @@ public class PersistentHashTable {
     return get(key, defaultValue, Date.class);
   }
 
+  /**
+   * Returns the boolean value of the given {@link String} key without boxing it
+   *
+   * @param key {@link String} with the key
+   * @param defaultValue boolean default value if the key doesn't exist
+   * @return boolean of the given key
+   */
+  public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+
+    final Object storedValue = getStoredValue(validateAndCleanKey(key), Boolean.class);
+    return storedValue != ABSENT ? (Boolean) storedValue : defaultValue;
+  }
+
+  /**
+   * Returns the int value of the given {@link String} key without boxing it
+   *
+   * @param key {@link String} with the key
+   * @param defaultValue int default value if the key doesn't exist
+   * @return int of the given key
+   */
+  public int getInt(@NonNull String key, int defaultValue) {
+
+    final Object storedValue = getStoredValue(validateAndCleanKey(key), Integer.class);
+    return storedValue != ABSENT ? (Integer) storedValue : defaultValue;
+  }
+
+  /**
+   * Returns the long value of the given {@link String} key without boxing it
+   *
+   * @param key {@link String} with the key
+   * @param defaultValue long default value if the key doesn't exist
+   * @return long of the given key
+   */
+  public long getLong(@NonNull String key, long defaultValue) {
+
+    final Object storedValue = getStoredValue(validateAndCleanKey(key), Long.class);
+    return storedValue != ABSENT ? (Long) storedValue : defaultValue;
+  }
+
+  /**
+   * Returns the float value of the given {@link String} key without boxing it
+   *
+   * @param key {@link String} with the key
+   * @param defaultValue float default value if the key doesn't exist
+   * @return float of the given key
+   */
+  public float getFloat(@NonNull String key, float defaultValue) {
+
+    final Object storedValue = getStoredValue(validateAndCleanKey(key), Float.class);
+    return storedValue != ABSENT ? (Float) storedValue : defaultValue;
+  }
+
+  /**
+   * Returns the date of the given {@link String} key as milliseconds since epoch, without
+   * allocating a {@link Date}. Reads dates saved with {@link #put(String, Object)} too
+   *
+   * @param key {@link String} with the key
+   * @param defaultValue long with the default epoch millis if the key doesn't exist
+   * @return long with the epoch millis of the given key
+   */
+  public long getDateMillis(@NonNull String key, long defaultValue) {
+
+    return getLong(key, defaultValue);
+  }
+
   /**
    * Checks if the persistent hash table is empty
    *
@@ -156,7 +301,9 @@ public class PersistentHashTable {
    */
   public boolean isEmpty() {
 
-    return sharedPreferences.getAll().isEmpty();
+    final OpenTable openTable = table;
+    openTable.flush();
+    return openTable.sharedPreferences.getAll().isEmpty();
   }
 
   /**
@@ -175,25 +322,14 @@ public class PersistentHashTable {
       @Override
       public void subscribe(final ObservableEmitter<T> emitter) throws Exception {
 
-        final SharedPreferences.OnSharedPreferenceChangeListener
-            preferenceChangeListener = new OnSharedPreferenceChangeListener() {
-          @Override
-          public void onSharedPreferenceChanged(SharedPreferences sharedPreferencesInstance,
-              String changedKey) {
-            if (key.equals(changedKey)) {
-              emitter.onNext(get(key, defaultValue, clazz));
-            }
-          }
-        };
-
-        sharedPreferences.registerOnSharedPreferenceChangeListener(
-            preferenceChangeListener);
-        emitter.setCancellable(new Cancellable() {
-          @Override
-          public void cancel() throws Exception {
-            sharedPreferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
-          }
-        });
+        // Start listening before reading, so no change is missed
+        emitter.setDisposable(table.changes.observe(validateAndCleanKey(key))
+            .subscribe(new Consumer<String>() {
+              @Override
+              public void accept(@NonNull String changedKey) throws Exception {
+                emitter.onNext(get(key, defaultValue, clazz));
+              }
+            }));
 
         emitter.onNext(get(key, defaultValue, clazz));
       }
@@ -282,36 +418,7 @@ public class PersistentHashTable {
    */
   public <T> void put(String key, T value) {
 
-    // Check each supported type
-    if (value instanceof Boolean) {
-      sharedPreferences.edit().putBoolean(validateAndCleanKey(key), (Boolean) value).apply();
-      return;
-    }
-    if (value instanceof String) {
-      sharedPreferences.edit().putString(validateAndCleanKey(key), (String) value).apply();
-      return;
-    }
-    if (value instanceof Float) {
-      sharedPreferences.edit().putFloat(validateAndCleanKey(key), (Float) value).apply();
-      return;
-    }
-    if (value instanceof Long) {
-      sharedPreferences.edit().putLong(validateAndCleanKey(key), (Long) value).apply();
-      return;
-    }
-    if (value instanceof Date) {
-      sharedPreferences.edit().putLong(validateAndCleanKey(key), ((Date) value).getTime())
-          .apply();
-      return;
-    }
-    if (value instanceof Integer) {
-      sharedPreferences.edit().putInt(validateAndCleanKey(key), (Integer) value).apply();
-      return;
-    }
-
-    // If reached this point we are trying to get a not supported type. Throw exception
-    throw new IllegalArgumentException(String.format("Saving %s type is not supported",
-        value.getClass()));
+    table.write(validateAndCleanKey(key), toStoredValue(value), writeDebounceMillis);
   }
 
   /**
@@ -322,46 +429,159 @@ public class PersistentHashTable {
    */
   public void put(@NonNull Map<String, Object> values) {
 
-    final SharedPreferences.Editor editor = sharedPreferences.edit();
+    final Transaction transaction = transaction();
 
     for (String key : values.keySet()) {
 
       // Get the content value from the map
-      final Object contentValue = values.get(key);
-
-      // Add each supported item
-      if (contentValue instanceof Boolean) {
-        editor.putBoolean(validateAndCleanKey(key), (Boolean) contentValue);
-        continue;
-      }
+      Object contentValue = values.get(key);
       if (contentValue instanceof String) {
-        editor.putString(validateAndCleanKey(key), ((String) contentValue).trim());
-        continue;
-      }
-      if (contentValue instanceof Float) {
-        editor.putFloat(validateAndCleanKey(key), (Float) contentValue);
-        continue;
-      }
-      if (contentValue instanceof Long) {
-        editor.putLong(validateAndCleanKey(key), (Long) contentValue);
-        continue;
-      }
-      if (contentValue instanceof Date) {
-        editor.putLong(validateAndCleanKey(key), ((Date) contentValue).getTime());
-        continue;
-      }
-      if (contentValue instanceof Integer) {
-        editor.putInt(validateAndCleanKey(key), (Integer) contentValue);
-        continue;
+        contentValue = ((String) contentValue).trim();
       }
+      transaction.put(key, contentValue);
+    }
+
+    transaction.commit();
+  }
+
+  /**
+   * Puts a boolean value in the persistent hash table using the given {@link String} key
+   *
+   * @param key {@link String} with the key to save
+   * @param value boolean with the value to save
+   */
+  public void putBoolean(@NonNull String key, boolean value) {
+
+    table.write(validateAndCleanKey(key), value, writeDebounceMillis);
+  }
+
+  /**
+   * Puts an int value in the persistent hash table using the given {@link String} key
+   *
+   * @param key {@link String} with the key to save
+   * @param value int with the value to save
+   */
+  public void putInt(@NonNull String key, int value) {
+
+    table.write(validateAndCleanKey(key), value, writeDebounceMillis);
+  }
+
+  /**
+   * Puts a long value in the persistent hash table using the given {@link String} key
+   *
+   * @param key {@link String} with the key to save
+   * @param value long with the value to save
+   */
+  public void putLong(@NonNull String key, long value) {
+
+    table.write(validateAndCleanKey(key), value, writeDebounceMillis);
+  }
+
+  /**
+   * Puts a float value in the persistent hash table using the given {@link String} key
+   *
+   * @param key {@link String} with the key to save
+   * @param value float with the value to save
+   */
+  public void putFloat(@NonNull String key, float value) {
+
+    table.write(validateAndCleanKey(key), value, writeDebounceMillis);
+  }
+
+  /**
+   * Puts a date given as milliseconds since epoch in the persistent hash table using the given
+   * {@link String} key. It can be read as a {@link Date} too
+   *
+   * @param key {@link String} with the key to save
+   * @param epochMillis long with the epoch millis of the date to save
+   */
+  public void putDateMillis(@NonNull String key, long epochMillis) {
+
+    putLong(key, epochMillis);
+  }
+
+  /**
+   * Starts a {@link Transaction} to write several values to the table at once. Values are
+   * committed together in a single write to disk
+   *
+   * @return {@link Transaction} to add the values to
+   */
+  public Transaction transaction() {
 
-      // If reached this point we are trying to add a not supported type.
-      // Throw exception
-      throw new IllegalArgumentException(String.format("Saving %s type is not supported",
-          contentValue.getClass()));
+    return new Transaction();
+  }
+
+  /**
+   * Delays the writes to disk by the given time window, so all the writes and transactions done
+   * within the window are stored in a single disk write. Written values are readable right away.
+   * Use zero to write every change right away, which is the default
+   *
+   * @param window long with the time to wait before writing to disk
+   * @param timeUnit {@link TimeUnit} of the window
+   */
+  public void setWriteDebounce(long window, @NonNull TimeUnit timeUnit) {
+
+    Preconditions.checkArgument(window >= 0, "Debounce window can not be negative");
+    writeDebounceMillis = timeUnit.toMillis(window);
+    if (writeDebounceMillis == 0) {
+      flush();
     }
+  }
 
-    editor.apply();
+  /**
+   * Writes to disk right away the changes waiting for the debounce window to finish
+   */
+  public void flush() {
+
+    table.flush();
+  }
+
+  /**
+   * Converts the given value to the type the storage keeps it as
+   *
+   * @param value {@link Object} with the value to save
+   * @return {@link Object} with the value as the storage keeps it
+   */
+  private static Object toStoredValue(Object value) {
+
+    // Check each supported type
+    if (value instanceof Boolean || value instanceof String || value instanceof Float
+        || value instanceof Long || value instanceof Integer) {
+      return value;
+    }
+    if (value instanceof Date) {
+      return ((Date) value).getTime();
+    }
+
+    // If reached this point we are trying to save a not supported type. Throw exception
+    throw new IllegalArgumentException(String.format("Saving %s type is not supported",
+        value.getClass()));
+  }
+
+  /**
+   * Adds the given stored value to the {@link SharedPreferences.Editor} with the given key
+   *
+   * @param editor {@link SharedPreferences.Editor} to add the value to
+   * @param cleanKey {@link String} with the validated key
+   * @param storedValue {@link Object} with the value as the storage keeps it, or {@link #ABSENT}
+   * to remove the key
+   */
+  private static void putInEditor(SharedPreferences.Editor editor, String cleanKey,
+      Object storedValue) {
+
+    if (storedValue == ABSENT) {
+      editor.remove(cleanKey);
+    } else if (storedValue instanceof Boolean) {
+      editor.putBoolean(cleanKey, (Boolean) storedValue);
+    } else if (storedValue instanceof String) {
+      editor.putString(cleanKey, (String) storedValue);
+    } else if (storedValue instanceof Float) {
+      editor.putFloat(cleanKey, (Float) storedValue);
+    } else if (storedValue instanceof Long) {
+      editor.putLong(cleanKey, (Long) storedValue);
+    } else if (storedValue instanceof Integer) {
+      editor.putInt(cleanKey, (Integer) storedValue);
+    }
   }
 
   /**
@@ -372,7 +592,7 @@ public class PersistentHashTable {
     Timber.w("reset: %s", (TextUtils.isEmpty(persistentHashTableId) ? "Default"
         : persistentHashTableId));
 
-    sharedPreferences.edit().clear().apply();
+    table.clear();
   }
 
   /**
@@ -390,8 +610,8 @@ public class PersistentHashTable {
     Timber.w("switchStorage: %s", persistentHashTableId);
 
     this.persistentHashTableId = persistentHashTableId;
-    sharedPreferences = context.getSharedPreferences(this.persistentHashTableId, Context
-        .MODE_PRIVATE);
+    table.close();
+    table = new OpenTable(storageEngine.open(context, this.persistentHashTableId));
   }
 
   /**
@@ -406,9 +626,292 @@ public class PersistentHashTable {
     // Remove empty spaces and break lines from beginning and end of lines
     // SharedPreferences has a bug -> http://bit.ly/1ooQ7wE
     String keyToUse = key.trim();
-    Preconditions.checkArgument(!TextUtils.isEmpty(keyToUse), String.format("%s key is not "
-        + "supported", key));
+    // Only build the error message when failing, keys are validated on every read
+    if (keyToUse.isEmpty()) {
+      throw new IllegalArgumentException(String.format("%s key is not supported", key));
+    }
     return keyToUse;
   }
 
+  /**
+   * Set of changes written to the table at once. Changes are only visible after calling {@link
+   * #commit()}, and are stored in a single write to disk
+   */
+  public final class Transaction {
+
+    private final Map<String, Object> storedValues = new HashMap<>();
+
+    /**
+     * Constructor. Use {@link PersistentHashTable#transaction()}
+     */
+    private Transaction() {
+    }
+
+    /**
+     * Adds a boolean value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value boolean with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putBoolean(@NonNull String key, boolean value) {
+
+      storedValues.put(validateAndCleanKey(key), value);
+      return this;
+    }
+
+    /**
+     * Adds an int value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value int with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putInt(@NonNull String key, int value) {
+
+      storedValues.put(validateAndCleanKey(key), value);
+      return this;
+    }
+
+    /**
+     * Adds a long value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value long with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putLong(@NonNull String key, long value) {
+
+      storedValues.put(validateAndCleanKey(key), value);
+      return this;
+    }
+
+    /**
+     * Adds a float value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value float with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putFloat(@NonNull String key, float value) {
+
+      storedValues.put(validateAndCleanKey(key), value);
+      return this;
+    }
+
+    /**
+     * Adds a {@link String} value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value {@link String} with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putString(@NonNull String key, @NonNull String value) {
+
+      storedValues.put(validateAndCleanKey(key), value);
+      return this;
+    }
+
+    /**
+     * Adds a {@link Date} value to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value {@link Date} with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putDate(@NonNull String key, @NonNull Date value) {
+
+      storedValues.put(validateAndCleanKey(key), value.getTime());
+      return this;
+    }
+
+    /**
+     * Adds a date given as milliseconds since epoch to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param epochMillis long with the epoch millis of the date to save
+     * @return this {@link Transaction}
+     */
+    public Transaction putDateMillis(@NonNull String key, long epochMillis) {
+
+      storedValues.put(validateAndCleanKey(key), epochMillis);
+      return this;
+    }
+
+    /**
+     * Adds a value of any of the supported types to the transaction
+     *
+     * @param key {@link String} with the key to save
+     * @param value {@link Object} with the value to save
+     * @return this {@link Transaction}
+     */
+    public Transaction put(@NonNull String key, @NonNull Object value) {
+
+      storedValues.put(validateAndCleanKey(key), toStoredValue(value));
+      return this;
+    }
+
+    /**
+     * Removes the value of the given key from the table
+     *
+     * @param key {@link String} with the key to remove
+     * @return this {@link Transaction}
+     */
+    public Transaction remove(@NonNull String key) {
+
+      storedValues.put(validateAndCleanKey(key), ABSENT);
+      return this;
+    }
+
+    /**
+     * Writes all the changes of the transaction to the table at once
+     */
+    public void commit() {
+
+      if (!storedValues.isEmpty()) {
+        table.write(storedValues, writeDebounceMillis);
+      }
+    }
+  }
+
+  /**
+   * Storage the table is switched to, together with the read cache of its decoded values. The
+   * cache is written through by the table, and invalidated when the storage notifies a change.
+   * This is the only listener registered in the storage, changes are forwarded to the observers
+   * of each key through a {@link ChangeMultiplexer}.
+   *
+   * When writes are debounced, changes are collected in a pending editor that is applied once the
+   * debounce window finishes. Pending values are readable in the meantime.
+   */
+  private static final class OpenTable implements OnSharedPreferenceChangeListener {
+
+    private final SharedPreferences sharedPreferences;
+    private final ChangeMultiplexer changes = new ChangeMultiplexer();
+    private final ConcurrentHashMap<String, Object> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> pendingValues = new ConcurrentHashMap<>();
+    // Increased on every invalidation, so reads racing with it do not cache outdated values
+    private final AtomicInteger generation = new AtomicInteger();
+    // Guarded by this
+    private SharedPreferences.Editor pendingEditor;
+
+    OpenTable(SharedPreferences sharedPreferences) {
+
+      this.sharedPreferences = sharedPreferences;
+      sharedPreferences.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+
+      generation.incrementAndGet();
+      if (key == null) {
+        cache.clear();
+      } else {
+        cache.remove(key);
+      }
+      // Observers read the new value, so they are notified once the cache is invalidated
+      changes.dispatch(key);
+    }
+
+    /**
+     * Writes a single value to the storage
+     *
+     * @param cleanKey {@link String} with the validated key
+     * @param storedValue {@link Object} with the value as the storage keeps it
+     * @param debounceMillis long with the debounce window for the disk write
+     */
+    synchronized void write(String cleanKey, Object storedValue, long debounceMillis) {
+
+      final SharedPreferences.Editor editor = editorLocked();
+      putInEditor(editor, cleanKey, storedValue);
+      if (debounceMillis > 0) {
+        pendingValues.put(cleanKey, storedValue);
+      }
+      cache.put(cleanKey, storedValue);
+      applyLocked(editor, debounceMillis);
+    }
+
+    /**
+     * Writes all the given values to the storage with a single editor
+     *
+     * @param storedValues {@link Map} with the values as the storage keeps them
+     * @param debounceMillis long with the debounce window for the disk write
+     */
+    synchronized void write(Map<String, Object> storedValues, long debounceMillis) {
+
+      final SharedPreferences.Editor editor = editorLocked();
+      for (Map.Entry<String, Object> entry : storedValues.entrySet()) {
+        putInEditor(editor, entry.getKey(), entry.getValue());
+      }
+      if (debounceMillis > 0) {
+        pendingValues.putAll(storedValues);
+      }
+      cache.putAll(storedValues);
+      applyLocked(editor, debounceMillis);
+    }
+
+    /**
+     * Writes the pending changes to the storage right away
+     */
+    synchronized void flush() {
+
+      if (pendingEditor != null) {
+        pendingEditor.apply();
+        pendingEditor = null;
+        pendingValues.clear();
+      }
+    }
+
+    /**
+     * Drops the pending changes and clears the storage
+     */
+    synchronized void clear() {
+
+      generation.incrementAndGet();
+      pendingEditor = null;
+      pendingValues.clear();
+      sharedPreferences.edit().clear().apply();
+      cache.clear();
+    }
+
+    /**
+     * Writes the pending changes, stops listening to the storage and drops the cached values
+     */
+    synchronized void close() {
+
+      flush();
+      sharedPreferences.unregisterOnSharedPreferenceChangeListener(this);
+      generation.incrementAndGet();
+      cache.clear();
+    }
+
+    private SharedPreferences.Editor editorLocked() {
+
+      return pendingEditor != null ? pendingEditor : sharedPreferences.edit();
+    }
+
+    /**
+     * Applies the given editor right away, or waits for the debounce window to finish if it is
+     * the first pending change
+     */
+    private void applyLocked(SharedPreferences.Editor editor, long debounceMillis) {
+
+      if (debounceMillis <= 0) {
+        editor.apply();
+        pendingEditor = null;
+        pendingValues.clear();
+        return;
+      }
+      if (pendingEditor == null) {
+        pendingEditor = editor;
+        Schedulers.io().scheduleDirect(new Runnable() {
+          @Override
+          public void run() {
+            flush();
+          }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,25 @@
+package org.zalando.core.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Default {@link StorageEngine} that stores every table in the Android {@link SharedPreferences}
+ * XML files
+ */
+public class SharedPreferencesStorageEngine implements StorageEngine {
+
+  @NonNull
+  @Override
+  public SharedPreferences open(@NonNull Context context, @Nullable String tableId) {
+
+    if (tableId == null) {
+      return PreferenceManager.getDefaultSharedPreferences(context);
+    }
+    return context.getSharedPreferences(tableId, Context.MODE_PRIVATE);
+  }
+
+}
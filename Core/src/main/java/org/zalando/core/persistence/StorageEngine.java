@@ -0,0 +1,26 @@
+package org.zalando.core.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Defines the storage backing a {@link PersistentHashTable}. Engines expose their tables through
+ * the {@link SharedPreferences} contract, so the table logic does not depend on how the data is
+ * written to disk
+ */
+public interface StorageEngine {
+
+  /**
+   * Opens the table with the given id, creating it if it does not exist. Opening the same table
+   * twice must return the same instance, so change listeners and pending writes are shared
+   *
+   * @param context {@link Context} of the application
+   * @param tableId {@link String} with the id of the table. Null to open the default table
+   * @return {@link SharedPreferences} giving access to the table
+   */
+  @NonNull
+  SharedPreferences open(@NonNull Context context, @Nullable String tableId);
+
+}
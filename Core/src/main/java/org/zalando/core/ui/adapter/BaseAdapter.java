@@ -1,13 +1,23 @@
 package org.zalando.core.ui.adapter;
 
+import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.view.View;
 import android.view.ViewGroup;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import org.zalando.core.ui.adapter.viewholder.BaseViewHolder;
 import org.zalando.core.ui.callback.DiffUtilCallback;
+import org.zalando.core.ui.callback.IdDiffCalculator;
+import timber.log.Timber;
 
 /**
  * Abstract activity that holds common methods usable by all the {@link RecyclerView.Adapter} on the
@@ -20,6 +30,9 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
    */
   protected List<T> items;
 
+  // Swap being computed in background, only accessed from the main thread
+  private Disposable pendingSwap;
+
   /**
    * Constructor
    *
@@ -34,6 +47,7 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
    */
   public void clear() {
 
+    cancelPendingSwap();
     items.clear();
     notifyDataSetChanged();
   }
@@ -51,12 +65,33 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
     holder.bindData(items.get(position));
   }
 
+  /**
+   * Binds the item in the given position, partially when the change payloads of the {@link
+   * DiffUtilCallback.DiffUtilComparator} used to swap the items are given, see {@link
+   * BaseViewHolder#bindPartial(Object, List)}
+   *
+   * @param holder {@link BaseViewHolder} to bind
+   * @param position {@link Integer} with the position of the item
+   * @param payloads {@link List} of the change payloads, empty for a full bind
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public void onBindViewHolder(BaseViewHolder holder, int position, List<Object> payloads) {
+
+    if (payloads.isEmpty()) {
+      onBindViewHolder(holder, position);
+    } else {
+      holder.bindPartial(items.get(position), payloads);
+    }
+  }
+
   /**
    * Removes the item in the given position and updates the UI animating the removal.
    *
    * @param index item's index
    */
   public void removeItem(int index) {
+    cancelPendingSwap();
     items.remove(index);
     notifyItemRemoved(index);
   }
@@ -68,6 +103,7 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
    * @param location Position to add the item in
    */
   public void addItem(T item, int location) {
+    cancelPendingSwap();
     items.add(location, item);
     notifyItemInserted(location);
   }
@@ -78,6 +114,7 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
    * @param itemsToAdd Items to add
    */
   public void addItems(List<T> itemsToAdd) {
+    cancelPendingSwap();
     int count = itemsToAdd.size();
     int originalSize = items.size();
     items.addAll(itemsToAdd);
@@ -91,6 +128,7 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
    * @param items List of items to be added to the adapter.
    */
   public void setItems(@Nullable final List<T> items) {
+    cancelPendingSwap();
     this.items.clear();
     if (items != null) {
       this.items.addAll(items);
@@ -100,7 +138,8 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
 
   /**
    * Swaps current items on the list with the new items provided animating them properly using
-   * notifyDatasetInserted, changed, etc. as expected according to the comparison
+   * notifyDatasetInserted, changed, etc. as expected according to the comparison. Comparators
+   * extending {@link org.zalando.core.ui.callback.IdDiffUtilComparator} are diffed in linear time
    *
    * @param newItems {@link List} with the new items
    * @param comparator {@link DiffUtilCallback.DiffUtilComparator} to compare items using DiffUtils
@@ -108,14 +147,92 @@ public abstract class BaseAdapter<T, U extends BaseViewHolder<T>> extends Recycl
   public void swapItems(final List<T> newItems,
       DiffUtilCallback.DiffUtilComparator<T> comparator) {
 
-    final DiffUtilCallback<T> diffCallback =
-        new DiffUtilCallback<T>(items, newItems, comparator);
-    final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(diffCallback);
+    cancelPendingSwap();
+    final IdDiffCalculator.Result diffResult =
+        IdDiffCalculator.calculateDiff(items, newItems, comparator);
     this.items = newItems;
     diffResult.dispatchUpdatesTo(this);
   }
 
+  /**
+   * Swaps current items on the list with the new items provided as {@link #swapItems(List,
+   * DiffUtilCallback.DiffUtilComparator)} does, but computing the differences on {@link
+   * Schedulers#computation()}. The items are replaced and the changes notified at once on the main
+   * thread, so the adapter always holds either the old or the new items. Must be called from the
+   * main thread. A pending swap is discarded when a newer one is requested, when the items are
+   * modified and when the adapter is detached. If the comparator fails, the items are kept and the
+   * error is logged
+   *
+   * @param newItems {@link List} with the new items, copied so later changes do not affect it
+   * @param comparator {@link DiffUtilCallback.DiffUtilComparator} to compare items using DiffUtils
+   */
+  public void swapItemsAsync(@NonNull List<T> newItems,
+      @NonNull final DiffUtilCallback.DiffUtilComparator<T> comparator) {
+
+    cancelPendingSwap();
+    // Snapshots, the diff is computed while the main thread may keep using the lists
+    final List<T> oldSnapshot = new ArrayList<>(items);
+    final List<T> newSnapshot = new ArrayList<>(newItems);
+    pendingSwap = Single.fromCallable(new Callable<IdDiffCalculator.Result>() {
+      @Override
+      public IdDiffCalculator.Result call() throws Exception {
+
+        return IdDiffCalculator.calculateDiff(oldSnapshot, newSnapshot, comparator);
+      }
+    })
+        .subscribeOn(Schedulers.computation())
+        .observeOn(AndroidSchedulers.mainThread())
+        .subscribe(new Consumer<IdDiffCalculator.Result>() {
+          @Override
+          public void accept(IdDiffCalculator.Result diffResult) throws Exception {
+
+            pendingSwap = null;
+            items = newSnapshot;
+            diffResult.dispatchUpdatesTo(BaseAdapter.this);
+          }
+        }, new Consumer<Throwable>() {
+          @Override
+          public void accept(Throwable throwable) throws Exception {
+
+            pendingSwap = null;
+            Timber.e(throwable, "swapItemsAsync: unable to compute the differences");
+          }
+        });
+  }
+
+  @Override
+  public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+
+    super.onDetachedFromRecyclerView(recyclerView);
+    cancelPendingSwap();
+  }
+
+  /**
+   * Discards the swap being computed, if any. Its result would not match the current items
+   */
+  private void cancelPendingSwap() {
+
+    if (pendingSwap != null) {
+      pendingSwap.dispose();
+      pendingSwap = null;
+    }
+  }
+
   @Override
   public abstract U onCreateViewHolder(ViewGroup parent, int viewType);
 
+  /**
+   * Inflates the given layout for a view holder being created, taking the view pre-inflated by the
+   * {@link ViewHolderPool} of the list if there is one. To be used from {@link
+   * #onCreateViewHolder(ViewGroup, int)}
+   *
+   * @param parent {@link ViewGroup} received when creating the view holder
+   * @param layoutId {@link Integer} with the layout to inflate
+   * @return {@link View} inflated
+   */
+  protected View inflate(@NonNull ViewGroup parent, @LayoutRes int layoutId) {
+
+    return ViewHolderPool.inflate(parent, layoutId);
+  }
+
 }
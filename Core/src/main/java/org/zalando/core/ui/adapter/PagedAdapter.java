@@ -0,0 +1,338 @@
+package org.zalando.core.ui.adapter;
+
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.view.View;
+import android.view.ViewGroup;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.BiConsumer;
+import java.util.ArrayList;
+import java.util.List;
+import org.zalando.core.ui.adapter.viewholder.BaseViewHolder;
+import org.zalando.core.utils.Preconditions;
+import timber.log.Timber;
+
+/**
+ * {@link RecyclerView.Adapter} loading its items page by page through a {@link PageLoader}, for
+ * feeds too long to keep in memory, and binding them to {@link BaseViewHolder}s. Only a bounded
+ * window of pages is kept, the page farthest from the attached positions is evicted when a new one
+ * arrives. Pages within the prefetch distance of the attached positions are never evicted, so the
+ * window grows while more of them are visible. Binding a position loads the pages within the
+ * prefetch distance around it, and positions whose page is not loaded are bound as placeholders,
+ * see {@link BaseViewHolder#bindPlaceholder()}. The feed ends with the first page holding less
+ * items than the page size, until then a page of placeholders follows the last loaded one. Pages
+ * failing to load are reported to {@link #onPageFailed(int, Throwable)} and only loaded again on
+ * {@link #retry()}.
+ *
+ * Items only come from the loader, {@link #clear()} drops them and loads the feed again. Must be
+ * used from the main thread.
+ *
+ * @param <T> {@link T} type of the items
+ * @param <U> {@link U} type of the view holders
+ */
+public abstract class PagedAdapter<T, U extends BaseViewHolder<T>>
+    extends RecyclerView.Adapter<U> {
+
+  private final PageLoader<T> pageLoader;
+  private final int pageSize;
+  private final int maxPagesInMemory;
+  private final int prefetchDistance;
+
+  // Loaded pages and pages being loaded, by page index
+  private final SparseArray<List<T>> pages = new SparseArray<>();
+  private final SparseArray<Disposable> loadingPages = new SparseArray<>();
+  // Pages whose load failed, until retried
+  private final SparseBooleanArray failedPages = new SparseBooleanArray();
+  private final List<U> attachedHolders = new ArrayList<>();
+  // Pages known to exist, the last one is made of placeholders until it is loaded
+  private int pageCount = 1;
+  // Size of the last page once the end of the feed is known, -1 before
+  private int lastPageSize = -1;
+  private int lastBoundPosition;
+
+  /**
+   * Constructor
+   *
+   * @param pageLoader {@link PageLoader} providing the pages
+   * @param pageSize {@link Integer} with the amount of items of every page but the last one
+   * @param maxPagesInMemory {@link Integer} with the maximum amount of pages kept in memory
+   * @param prefetchDistance {@link Integer} with the amount of positions around the bound one
+   * whose pages are loaded
+   */
+  protected PagedAdapter(@NonNull PageLoader<T> pageLoader, int pageSize, int maxPagesInMemory,
+      int prefetchDistance) {
+
+    Preconditions.checkArgument(pageSize > 0, "Page size must be positive");
+    Preconditions.checkArgument(prefetchDistance >= 0, "Prefetch distance can not be negative");
+    // The window must hold all the pages around the bound position
+    Preconditions.checkArgument(
+        maxPagesInMemory >= 2 * ((prefetchDistance + pageSize - 1) / pageSize) + 1,
+        "Max pages in memory must hold the pages within the prefetch distance");
+    this.pageLoader = pageLoader;
+    this.pageSize = pageSize;
+    this.maxPagesInMemory = maxPagesInMemory;
+    this.prefetchDistance = prefetchDistance;
+  }
+
+  @Override
+  public int getItemCount() {
+
+    return lastPageSize < 0 ? pageCount * pageSize : (pageCount - 1) * pageSize + lastPageSize;
+  }
+
+  /**
+   * Provides the item in the given position, if its page is loaded
+   *
+   * @param position {@link Integer} with the position
+   * @return {@link T} in the position, null if its page is not loaded
+   */
+  @Nullable
+  public T getItem(int position) {
+
+    final List<T> page = pages.get(position / pageSize);
+    return page != null ? page.get(position % pageSize) : null;
+  }
+
+  @Override
+  public void onBindViewHolder(U holder, int position) {
+
+    lastBoundPosition = position;
+    prefetch(position);
+    final T item = getItem(position);
+    if (item != null) {
+      holder.bindData(item);
+    } else {
+      holder.bindPlaceholder();
+    }
+  }
+
+  @Override
+  public void onViewAttachedToWindow(U holder) {
+
+    super.onViewAttachedToWindow(holder);
+    attachedHolders.add(holder);
+  }
+
+  @Override
+  public void onViewDetachedFromWindow(U holder) {
+
+    super.onViewDetachedFromWindow(holder);
+    attachedHolders.remove(holder);
+  }
+
+  /**
+   * Loads again the pages that failed to load
+   */
+  public void retry() {
+
+    final int[] retriedPages = new int[failedPages.size()];
+    for (int i = 0; i < retriedPages.length; i++) {
+      retriedPages[i] = failedPages.keyAt(i);
+    }
+    failedPages.clear();
+    for (int page : retriedPages) {
+      if (page < pageCount && pages.get(page) == null && loadingPages.get(page) == null) {
+        load(page);
+      }
+    }
+  }
+
+  /**
+   * Drops all the pages and loads the feed again
+   */
+  public void clear() {
+
+    cancelLoads();
+    failedPages.clear();
+    pages.clear();
+    pageCount = 1;
+    lastPageSize = -1;
+    notifyDataSetChanged();
+  }
+
+  @Override
+  public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+
+    super.onDetachedFromRecyclerView(recyclerView);
+    // Pages being loaded are requested again on the next bind
+    cancelLoads();
+  }
+
+  /**
+   * Inflates the given layout for a view holder being created, taking the view pre-inflated by the
+   * {@link ViewHolderPool} of the list if there is one. To be used from {@link
+   * #onCreateViewHolder(ViewGroup, int)}
+   *
+   * @param parent {@link ViewGroup} received when creating the view holder
+   * @param layoutId {@link Integer} with the layout to inflate
+   * @return {@link View} inflated
+   */
+  protected View inflate(@NonNull ViewGroup parent, @LayoutRes int layoutId) {
+
+    return ViewHolderPool.inflate(parent, layoutId);
+  }
+
+  /**
+   * Called when a page fails to load. Its positions stay as placeholders until {@link #retry()} is
+   * called, so subclasses can show the error and a way to retry
+   *
+   * @param page {@link Integer} with the index of the page
+   * @param throwable {@link Throwable} with the error
+   */
+  protected void onPageFailed(int page, @NonNull Throwable throwable) {
+
+    Timber.w(throwable, "load: page %d failed", page);
+  }
+
+  /**
+   * Loads the pages within the prefetch distance of the given position
+   *
+   * @param position {@link Integer} with the bound position
+   */
+  private void prefetch(int position) {
+
+    final int firstPage = Math.max(0, position - prefetchDistance) / pageSize;
+    final int lastPage = Math.min(getItemCount() - 1, position + prefetchDistance) / pageSize;
+    for (int page = firstPage; page <= lastPage; page++) {
+      if (pages.get(page) == null && loadingPages.get(page) == null && !failedPages.get(page)) {
+        load(page);
+      }
+    }
+  }
+
+  private void load(final int page) {
+
+    // Delivered in a later loop of the main thread, never while binding
+    final Disposable disposable = pageLoader.loadPage(page)
+        .observeOn(AndroidSchedulers.mainThread())
+        .subscribe(new BiConsumer<List<T>, Throwable>() {
+          @Override
+          public void accept(List<T> items, Throwable throwable) throws Exception {
+
+            loadingPages.remove(page);
+            if (throwable != null) {
+              failedPages.put(page, true);
+              onPageFailed(page, throwable);
+              return;
+            }
+            onPageLoaded(page, items);
+          }
+        });
+    // Only kept if not already delivered
+    if (!disposable.isDisposed()) {
+      loadingPages.put(page, disposable);
+    }
+  }
+
+  private void onPageLoaded(int page, List<T> items) {
+
+    if (lastPageSize >= 0 && page >= pageCount) {
+      // Beyond the end of the feed
+      return;
+    }
+    final int pageStart = page * pageSize;
+
+    if (items.size() < pageSize) {
+      // Last page, drops the positions after it
+      final int oldCount = getItemCount();
+      for (int i = pageCount - 1; i > page; i--) {
+        pages.remove(i);
+      }
+      pageCount = page + 1;
+      lastPageSize = items.size();
+      store(page, items);
+      final int newCount = getItemCount();
+      if (newCount < oldCount) {
+        notifyItemRangeRemoved(newCount, oldCount - newCount);
+      }
+      notifyItemRangeChanged(pageStart, items.size());
+      return;
+    }
+
+    store(page, new ArrayList<>(items.subList(0, pageSize)));
+    notifyItemRangeChanged(pageStart, pageSize);
+    if (lastPageSize < 0 && page == pageCount - 1) {
+      // A page of placeholders follows until the end is known
+      pageCount++;
+      notifyItemRangeInserted((pageCount - 1) * pageSize, pageSize);
+    }
+  }
+
+  /**
+   * Keeps the given page, evicting the farthest ones from the attached positions if the window is
+   * full. Pages within the prefetch distance of the attached positions and the last bound one are
+   * kept, as evicting them would load them again right away
+   *
+   * @param page {@link Integer} with the index of the page
+   * @param items {@link List} of {@link T} of the page
+   */
+  private void store(int page, List<T> items) {
+
+    pages.put(page, items);
+    int firstPosition = lastBoundPosition;
+    int lastPosition = lastBoundPosition;
+    for (int i = 0; i < attachedHolders.size(); i++) {
+      final int position = attachedHolders.get(i).getLayoutPosition();
+      if (position != RecyclerView.NO_POSITION) {
+        firstPosition = Math.min(firstPosition, position);
+        lastPosition = Math.max(lastPosition, position);
+      }
+    }
+    final int firstKeptPage = Math.max(0, firstPosition - prefetchDistance) / pageSize;
+    final int lastKeptPage = (lastPosition + prefetchDistance) / pageSize;
+
+    while (pages.size() > maxPagesInMemory) {
+      int farthestPage = -1;
+      int farthestDistance = 0;
+      for (int i = 0; i < pages.size(); i++) {
+        final int currentPage = pages.keyAt(i);
+        final int distance = currentPage < firstKeptPage
+            ? firstKeptPage - currentPage : currentPage - lastKeptPage;
+        if (distance > farthestDistance) {
+          farthestPage = currentPage;
+          farthestDistance = distance;
+        }
+      }
+      if (farthestPage < 0) {
+        // Every page is kept, the window shrinks back once they are not attached
+        return;
+      }
+      final int farthestPageSize = pages.get(farthestPage).size();
+      pages.remove(farthestPage);
+      // Rebound as placeholders if still cached by the RecyclerView
+      notifyItemRangeChanged(farthestPage * pageSize, farthestPageSize);
+    }
+  }
+
+  private void cancelLoads() {
+
+    for (int i = 0; i < loadingPages.size(); i++) {
+      loadingPages.valueAt(i).dispose();
+    }
+    loadingPages.clear();
+  }
+
+  /**
+   * Loads the pages of a {@link PagedAdapter}
+   *
+   * @param <T> {@link T} type of the items
+   */
+  public interface PageLoader<T> {
+
+    /**
+     * Loads the given page
+     *
+     * @param page {@link Integer} with the index of the page, starting at 0
+     * @return {@link Single} emitting the items of the page. Less items than the page size mark
+     * the end of the feed
+     */
+    Single<List<T>> loadPage(int page);
+  }
+
+}
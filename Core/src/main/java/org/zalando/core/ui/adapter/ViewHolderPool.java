@@ -0,0 +1,201 @@
+package org.zalando.core.ui.adapter;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * {@link RecyclerView.RecycledViewPool} of the lists using one adapter class, so only view holders
+ * of the same view types are shared, which can also pre-inflate view holders in background while
+ * a screen loads, so the first scroll does not inflate them on the main thread. Obtained from
+ * {@link ViewHolderPools}. Adapters must inflate their views with {@link
+ * BaseAdapter#inflate(ViewGroup, int)} or {@link PagedAdapter#inflate(ViewGroup, int)} to receive
+ * the pre-inflated ones.
+ *
+ * Recycled view holders keep the context they were inflated with, so the ones of a destroyed or
+ * finishing activity are dropped, and screens with their own theme should not share the pool.
+ * Must be used from the main thread.
+ */
+public class ViewHolderPool extends RecyclerView.RecycledViewPool {
+
+  // Default of RecyclerView.RecycledViewPool
+  private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+  private final Class<? extends RecyclerView.Adapter> adapterClass;
+  private final SparseIntArray maxRecycledViews = new SparseIntArray();
+  // View types that were put in the pool, to purge them
+  private final SparseIntArray viewTypes = new SparseIntArray();
+  // Destroyed activities, weak so they can be collected
+  private final Map<Activity, Boolean> destroyedActivities = new WeakHashMap<>();
+
+  // View being handed to the adapter creating a pre-inflated view holder
+  private View pendingView;
+  private int pendingLayoutId;
+
+  /**
+   * Constructor
+   *
+   * @param adapterClass {@link Class} of the adapters using the pool
+   */
+  ViewHolderPool(@NonNull Class<? extends RecyclerView.Adapter> adapterClass) {
+
+    this.adapterClass = adapterClass;
+  }
+
+  @Override
+  public void setMaxRecycledViews(int viewType, int max) {
+
+    super.setMaxRecycledViews(viewType, max);
+    maxRecycledViews.put(viewType, max);
+  }
+
+  @Override
+  public void putRecycledView(RecyclerView.ViewHolder scrap) {
+
+    final Activity activity = activityOf(scrap.itemView.getContext());
+    if (activity != null
+        && (activity.isFinishing() || destroyedActivities.containsKey(activity))) {
+      // Would keep the activity alive
+      return;
+    }
+    viewTypes.put(scrap.getItemViewType(), 0);
+    super.putRecycledView(scrap);
+  }
+
+  /**
+   * Inflates the given amount of view holders of the given view type in background, and keeps
+   * them in the pool. The max amount of recycled views of the view type is raised if needed
+   *
+   * @param recyclerView {@link RecyclerView} using the pool, whose adapter creates the view
+   * holders
+   * @param viewType {@link Integer} with the view type of the view holders
+   * @param layoutId {@link Integer} with the layout the adapter inflates for the view type
+   * @param count {@link Integer} with the amount of view holders
+   */
+  public void preInflate(@NonNull final RecyclerView recyclerView, final int viewType,
+      @LayoutRes int layoutId, int count) {
+
+    final RecyclerView.Adapter adapter = recyclerView.getAdapter();
+    Preconditions.checkArgument(adapter != null && adapter.getClass() == adapterClass,
+        String.format("RecyclerView must have a %s", adapterClass.getName()));
+    Preconditions.checkArgument(recyclerView.getRecycledViewPool() == this,
+        "RecyclerView must use this pool, see ViewHolderPools#attach");
+    Preconditions.checkArgument(count > 0, "Count must be positive");
+    if (maxRecycledViews.get(viewType, DEFAULT_MAX_RECYCLED_VIEWS) < count) {
+      setMaxRecycledViews(viewType, count);
+    }
+
+    final AsyncLayoutInflater inflater = new AsyncLayoutInflater(recyclerView.getContext());
+    final AsyncLayoutInflater.OnInflateFinishedListener listener =
+        new AsyncLayoutInflater.OnInflateFinishedListener() {
+          @Override
+          public void onInflateFinished(View view, int resid, ViewGroup parent) {
+
+            // Dropped if the list changed while inflating
+            if (recyclerView.getAdapter() != adapter
+                || recyclerView.getRecycledViewPool() != ViewHolderPool.this) {
+              return;
+            }
+            pendingView = view;
+            pendingLayoutId = resid;
+            try {
+              putRecycledView(adapter.createViewHolder(recyclerView, viewType));
+            } finally {
+              pendingView = null;
+            }
+          }
+        };
+    for (int i = 0; i < count; i++) {
+      inflater.inflate(layoutId, recyclerView, listener);
+    }
+  }
+
+  /**
+   * Inflates the given layout for a view holder being created, taking the view pre-inflated by the
+   * pool of the list if there is one
+   *
+   * @param parent {@link ViewGroup} received when creating the view holder
+   * @param layoutId {@link Integer} with the layout to inflate
+   * @return {@link View} inflated
+   */
+  static View inflate(@NonNull ViewGroup parent, @LayoutRes int layoutId) {
+
+    if (parent instanceof RecyclerView) {
+      final RecyclerView.RecycledViewPool pool = ((RecyclerView) parent).getRecycledViewPool();
+      if (pool instanceof ViewHolderPool) {
+        final View view = ((ViewHolderPool) pool).takePreInflatedView(layoutId);
+        if (view != null) {
+          return view;
+        }
+      }
+    }
+    return LayoutInflater.from(parent.getContext()).inflate(layoutId, parent, false);
+  }
+
+  /**
+   * Provides the pre-inflated view of the given layout, if it is being handed to the adapter
+   *
+   * @param layoutId {@link Integer} with the layout
+   * @return {@link View} pre-inflated, null if there is none
+   */
+  @Nullable
+  View takePreInflatedView(@LayoutRes int layoutId) {
+
+    if (pendingView == null || pendingLayoutId != layoutId) {
+      return null;
+    }
+    final View view = pendingView;
+    pendingView = null;
+    return view;
+  }
+
+  /**
+   * Drops the view holders of the given activity, and the ones recycled later
+   *
+   * @param activity {@link Activity} destroyed
+   */
+  void onActivityDestroyed(@NonNull Activity activity) {
+
+    destroyedActivities.put(activity, Boolean.TRUE);
+    for (int i = 0; i < viewTypes.size(); i++) {
+      final int viewType = viewTypes.keyAt(i);
+      final List<RecyclerView.ViewHolder> kept = new ArrayList<>();
+      RecyclerView.ViewHolder holder;
+      while ((holder = getRecycledView(viewType)) != null) {
+        if (activityOf(holder.itemView.getContext()) != activity) {
+          kept.add(holder);
+        }
+      }
+      for (RecyclerView.ViewHolder keptHolder : kept) {
+        super.putRecycledView(keptHolder);
+      }
+    }
+  }
+
+  @Nullable
+  private static Activity activityOf(Context context) {
+
+    while (context instanceof ContextWrapper) {
+      if (context instanceof Activity) {
+        return (Activity) context;
+      }
+      context = ((ContextWrapper) context).getBaseContext();
+    }
+    return null;
+  }
+
+}
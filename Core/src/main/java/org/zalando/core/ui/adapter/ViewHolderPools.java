@@ -0,0 +1,98 @@
+package org.zalando.core.ui.adapter;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import java.util.HashMap;
+import java.util.Map;
+import org.zalando.core.utils.Preconditions;
+
+/**
+ * Provides a {@link ViewHolderPool} per adapter class, so the lists using the same adapter class
+ * share their recycled view holders, while adapters with their own view types never get holders
+ * of another one. Must be used from the main thread.
+ */
+public class ViewHolderPools {
+
+  private final Map<Class<? extends RecyclerView.Adapter>, ViewHolderPool> pools =
+      new HashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param application {@link Application} whose destroyed activities are purged from the pools
+   */
+  public ViewHolderPools(@NonNull Application application) {
+
+    application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+      @Override
+      public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+      }
+
+      @Override
+      public void onActivityStarted(Activity activity) {
+      }
+
+      @Override
+      public void onActivityResumed(Activity activity) {
+      }
+
+      @Override
+      public void onActivityPaused(Activity activity) {
+      }
+
+      @Override
+      public void onActivityStopped(Activity activity) {
+      }
+
+      @Override
+      public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+      }
+
+      @Override
+      public void onActivityDestroyed(Activity activity) {
+
+        // Avoids leaking the views of the destroyed activity
+        for (ViewHolderPool pool : pools.values()) {
+          pool.onActivityDestroyed(activity);
+        }
+      }
+    });
+  }
+
+  /**
+   * Provides the pool of the given adapter class
+   *
+   * @param adapterClass {@link Class} of the adapters
+   * @return {@link ViewHolderPool} shared by the adapters of the class
+   */
+  public ViewHolderPool getPool(@NonNull Class<? extends RecyclerView.Adapter> adapterClass) {
+
+    ViewHolderPool pool = pools.get(adapterClass);
+    if (pool == null) {
+      pool = new ViewHolderPool(adapterClass);
+      pools.put(adapterClass, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Sets the pool of the adapter class of the given {@link RecyclerView} to it
+   *
+   * @param recyclerView {@link RecyclerView} with its adapter already set
+   * @return {@link ViewHolderPool} set to the {@link RecyclerView}
+   */
+  public ViewHolderPool attach(@NonNull RecyclerView recyclerView) {
+
+    final RecyclerView.Adapter adapter = recyclerView.getAdapter();
+    Preconditions.checkArgument(adapter != null, "RecyclerView must have an adapter");
+    final ViewHolderPool pool = getPool(adapter.getClass());
+    if (recyclerView.getRecycledViewPool() != pool) {
+      recyclerView.setRecycledViewPool(pool);
+    }
+    return pool;
+  }
+
+}
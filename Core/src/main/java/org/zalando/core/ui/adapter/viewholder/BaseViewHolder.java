@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import butterknife.ButterKnife;
+import java.util.List;
 
 /**
  * Base class to hold common {@link RecyclerView.ViewHolder}
@@ -35,6 +36,31 @@ public abstract class BaseViewHolder<T> extends RecyclerView.ViewHolder {
     model = modelToBind;
   }
 
+  /**
+   * Binds a new version of the bound {@link T} model, given the change payloads of the {@link
+   * org.zalando.core.ui.callback.DiffUtilCallback.DiffUtilComparator} that compared both versions.
+   * Binds the whole model by default. Override it to update only the views of the changed fields,
+   * calling {@link #setModel(Object)} instead of this method, and {@link
+   * org.zalando.core.ui.callback.ChangeSet#merge(List)} to read the fields when the comparator
+   * provides {@link org.zalando.core.ui.callback.ChangeSet} payloads
+   *
+   * @param modelToBind {@link T} model that will be bound with the {@link RecyclerView.ViewHolder}
+   * @param payloads {@link List} of the change payloads, never empty
+   */
+  public void bindPartial(@NonNull T modelToBind, @NonNull List<Object> payloads) {
+    bindData(modelToBind);
+  }
+
+  /**
+   * Binds a placeholder for an item that is not loaded yet, such as the items of the pages a
+   * {@link org.zalando.core.ui.adapter.PagedAdapter} is loading. Clears the model, override it to
+   * clear the views or show a loading state
+   */
+  @CallSuper
+  public void bindPlaceholder() {
+    model = null;
+  }
+
   /**
    * Provides the model that was bound to the view holder
    *
@@ -0,0 +1,158 @@
+package org.zalando.core.ui.callback;
+
+import android.support.annotation.NonNull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Change payload naming the fields that changed in an item, so view holders only update the views
+ * showing them. The compared fields are declared with {@link Fields}. See {@link
+ * ChangeSetDiffUtilComparator} and {@link
+ * org.zalando.core.ui.adapter.viewholder.BaseViewHolder#bindPartial(Object, List)}.
+ */
+public final class ChangeSet {
+
+  private final Set<String> fields;
+
+  /**
+   * Constructor
+   *
+   * @param fields {@link Set} of {@link String} with the names of the changed fields
+   */
+  public ChangeSet(@NonNull Set<String> fields) {
+
+    this.fields = Collections.unmodifiableSet(new HashSet<>(fields));
+  }
+
+  /**
+   * Merges the change sets in the given payloads, as RecyclerView may deliver many of them at once
+   *
+   * @param payloads {@link List} of payloads received when binding
+   * @return {@link ChangeSet} with the fields of all of them, null if any payload is not a {@link
+   * ChangeSet} and a full bind is needed
+   */
+  public static ChangeSet merge(@NonNull List<Object> payloads) {
+
+    if (payloads.size() == 1 && payloads.get(0) instanceof ChangeSet) {
+      return (ChangeSet) payloads.get(0);
+    }
+    final Set<String> mergedFields = new HashSet<>();
+    for (Object payload : payloads) {
+      if (!(payload instanceof ChangeSet)) {
+        return null;
+      }
+      mergedFields.addAll(((ChangeSet) payload).fields);
+    }
+    return new ChangeSet(mergedFields);
+  }
+
+  /**
+   * Checks if the given field changed
+   *
+   * @param field {@link String} with the name of the field
+   * @return {@link Boolean} indicating if it changed
+   */
+  public boolean contains(@NonNull String field) {
+
+    return fields.contains(field);
+  }
+
+  /**
+   * Returns the names of the changed fields
+   *
+   * @return {@link Set} of {@link String} with the names
+   */
+  public Set<String> getFields() {
+
+    return fields;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+
+    return o instanceof ChangeSet && fields.equals(((ChangeSet) o).fields);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return fields.hashCode();
+  }
+
+  @Override
+  public String toString() {
+
+    return "ChangeSet" + fields;
+  }
+
+  /**
+   * Reads a field of an item. Fields are read through code rather than reflection, so their names
+   * survive obfuscation
+   *
+   * @param <T> {@link T} type of the items
+   */
+  public interface Field<T> {
+
+    /**
+     * Reads the field of the given item
+     *
+     * @param item {@link T} to read
+     * @return {@link Object} with the value of the field
+     */
+    Object get(T item);
+  }
+
+  /**
+   * Named fields of a type, compared to build the change sets of its items
+   *
+   * @param <T> {@link T} type of the items
+   */
+  public static final class Fields<T> {
+
+    private final Map<String, Field<T>> fields = new LinkedHashMap<>();
+
+    /**
+     * Adds a field to compare
+     *
+     * @param name {@link String} with the name of the field, as checked by the view holders
+     * @param field {@link Field} reading it
+     * @return {@link Fields} to chain calls
+     */
+    public Fields<T> add(@NonNull String name, @NonNull Field<T> field) {
+
+      if (fields.containsKey(name)) {
+        throw new IllegalArgumentException(String.format("Field %s already added", name));
+      }
+      fields.put(name, field);
+      return this;
+    }
+
+    /**
+     * Builds the change set of two versions of an item, comparing the fields with equals, and
+     * arrays by their content
+     *
+     * @param oldItem {@link T} with the old version
+     * @param newItem {@link T} with the new version
+     * @return {@link ChangeSet} with the fields that changed
+     */
+    public ChangeSet between(@NonNull T oldItem, @NonNull T newItem) {
+
+      final Set<String> changedFields = new HashSet<>();
+      for (Map.Entry<String, Field<T>> entry : fields.entrySet()) {
+        final Field<T> field = entry.getValue();
+        // Compares arrays, nested ones included, by content and the rest with equals
+        if (!Arrays.deepEquals(new Object[]{field.get(oldItem)},
+            new Object[]{field.get(newItem)})) {
+          changedFields.add(entry.getKey());
+        }
+      }
+      return new ChangeSet(changedFields);
+    }
+  }
+
+}
@@ -0,0 +1,37 @@
+package org.zalando.core.ui.callback;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * {@link DiffUtilCallback.DiffUtilComparator} providing a {@link ChangeSet} with the changed fields
+ * as change payload, so only the views showing them are updated. Comparators with ids can return
+ * {@link ChangeSet.Fields#between(Object, Object)} from their own getChangePayload.
+ *
+ * @param <T> {@link T} type to compare
+ */
+public abstract class ChangeSetDiffUtilComparator<T>
+    implements DiffUtilCallback.DiffUtilComparator<T> {
+
+  private final ChangeSet.Fields<T> fields;
+
+  /**
+   * Constructor
+   *
+   * @param fields {@link ChangeSet.Fields} compared to build the payloads
+   */
+  protected ChangeSetDiffUtilComparator(@NonNull ChangeSet.Fields<T> fields) {
+
+    this.fields = fields;
+  }
+
+  @Nullable
+  @Override
+  public Object getChangePayload(T oldItem, T newItem) {
+
+    final ChangeSet changeSet = fields.between(oldItem, newItem);
+    // Items only differing in fields not compared are fully bound again
+    return changeSet.getFields().isEmpty() ? null : changeSet;
+  }
+
+}
@@ -48,12 +48,32 @@ public class DiffUtilCallback<T> extends DiffUtil.Callback {
   private final List<T> oldList;
   private final List<T> newList;
   private final DiffUtilComparator<T> comparator;
+  // Content hashes of the items, only with an IdDiffUtilComparator
+  private final int[] oldHashes;
+  private final int[] newHashes;
 
   public DiffUtilCallback(List<T> oldList, List<T> newList, DiffUtilComparator<T> comparator) {
 
     this.oldList = oldList;
     this.newList = newList;
     this.comparator = comparator;
+    if (comparator instanceof IdDiffUtilComparator) {
+      final IdDiffUtilComparator<T> idComparator = (IdDiffUtilComparator<T>) comparator;
+      oldHashes = contentHashes(oldList, idComparator);
+      newHashes = contentHashes(newList, idComparator);
+    } else {
+      oldHashes = null;
+      newHashes = null;
+    }
+  }
+
+  private static <T> int[] contentHashes(List<T> list, IdDiffUtilComparator<T> comparator) {
+
+    final int[] hashes = new int[list.size()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = comparator.getContentHash(list.get(i));
+    }
+    return hashes;
   }
 
   @Override
@@ -75,6 +95,9 @@ public class DiffUtilCallback<T> extends DiffUtil.Callback {
   @Override
   public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
 
+    if (oldHashes != null && oldHashes[oldItemPosition] != newHashes[newItemPosition]) {
+      return false;
+    }
     return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
   }
 
@@ -0,0 +1,269 @@
+package org.zalando.core.ui.callback;
+
+import android.support.annotation.NonNull;
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the differences between two lists. With an {@link IdDiffUtilComparator} the items are
+ * matched by id through a hash map, and their contents compared by hash before calling equals. The
+ * longest run of matched items keeping their relative order, the longest increasing subsequence of
+ * their old positions, stays in place and the other matched items are removed and inserted again,
+ * in O(N log N) time. Lists with duplicated ids, and lists with moved items when the comparator
+ * asks to detect moves, fall back to {@link DiffUtil}, as do other comparators.
+ */
+public final class IdDiffCalculator {
+
+  private static final int NO_POSITION = -1;
+
+  /**
+   * Private constructor to force static access to methods
+   */
+  private IdDiffCalculator() {
+  }
+
+  /**
+   * Computes the differences between the given lists
+   *
+   * @param oldList {@link List} of {@link T} with the current items
+   * @param newList {@link List} of {@link T} with the new items
+   * @param comparator {@link DiffUtilCallback.DiffUtilComparator} to compare the items
+   * @param <T> {@link T} type of the items
+   * @return {@link Result} with the updates turning the old list into the new one
+   */
+  public static <T> Result calculateDiff(@NonNull List<T> oldList, @NonNull List<T> newList,
+      @NonNull DiffUtilCallback.DiffUtilComparator<T> comparator) {
+
+    if (!(comparator instanceof IdDiffUtilComparator)) {
+      return new MyersResult(DiffUtil.calculateDiff(
+          new DiffUtilCallback<>(oldList, newList, comparator)));
+    }
+    final IdDiffUtilComparator<T> idComparator = (IdDiffUtilComparator<T>) comparator;
+
+    final int oldSize = oldList.size();
+    final int newSize = newList.size();
+    final Map<Long, Integer> oldPositions = new HashMap<>(oldSize * 2);
+    final int[] oldToNew = new int[oldSize];
+    for (int i = 0; i < oldSize; i++) {
+      if (oldPositions.put(idComparator.getId(oldList.get(i)), i) != null) {
+        return myers(oldList, newList, idComparator);
+      }
+      oldToNew[i] = NO_POSITION;
+    }
+
+    // Old position of every new item
+    final int[] newToOld = new int[newSize];
+    final boolean[] matched = new boolean[oldSize];
+    int matchedCount = 0;
+    for (int j = 0; j < newSize; j++) {
+      newToOld[j] = NO_POSITION;
+      final Integer oldPosition = oldPositions.get(idComparator.getId(newList.get(j)));
+      if (oldPosition == null) {
+        continue;
+      }
+      if (matched[oldPosition]) {
+        // Duplicated id in the new list
+        return myers(oldList, newList, idComparator);
+      }
+      matched[oldPosition] = true;
+      newToOld[j] = oldPosition;
+      matchedCount++;
+    }
+
+    if (keepLongestIncreasing(newToOld) < matchedCount && idComparator.detectMoves()) {
+      // Moved items to be detected
+      return myers(oldList, newList, idComparator);
+    }
+
+    final boolean[] changed = new boolean[newSize];
+    final Object[] payloads = new Object[newSize];
+    for (int j = 0; j < newSize; j++) {
+      final int oldPosition = newToOld[j];
+      if (oldPosition == NO_POSITION) {
+        continue;
+      }
+      oldToNew[oldPosition] = j;
+
+      final T oldItem = oldList.get(oldPosition);
+      final T newItem = newList.get(j);
+      if (idComparator.getContentHash(oldItem) != idComparator.getContentHash(newItem)
+          || !oldItem.equals(newItem)) {
+        changed[j] = true;
+        payloads[j] = idComparator.getChangePayload(oldItem, newItem);
+      }
+    }
+    return new LinearResult(oldToNew, newToOld, changed, payloads);
+  }
+
+  /**
+   * Keeps the longest increasing subsequence of the given positions, through patience sorting,
+   * and clears the positions out of it
+   *
+   * @param positions {@link Integer} array with the positions, or {@link #NO_POSITION}
+   * @return {@link Integer} with the amount of positions kept
+   */
+  private static int keepLongestIncreasing(int[] positions) {
+
+    // Index of the smallest position ending an increasing subsequence, by length minus one
+    final int[] tails = new int[positions.length];
+    // Index of the previous position in the subsequence ending at every index
+    final int[] previous = new int[positions.length];
+    int length = 0;
+    for (int j = 0; j < positions.length; j++) {
+      if (positions[j] == NO_POSITION) {
+        continue;
+      }
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        final int middle = (low + high) >>> 1;
+        if (positions[tails[middle]] < positions[j]) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      previous[j] = low > 0 ? tails[low - 1] : NO_POSITION;
+      tails[low] = j;
+      if (low == length) {
+        length++;
+      }
+    }
+
+    final boolean[] kept = new boolean[positions.length];
+    for (int j = length > 0 ? tails[length - 1] : NO_POSITION; j != NO_POSITION; j = previous[j]) {
+      kept[j] = true;
+    }
+    for (int j = 0; j < positions.length; j++) {
+      if (!kept[j]) {
+        positions[j] = NO_POSITION;
+      }
+    }
+    return length;
+  }
+
+  private static <T> Result myers(List<T> oldList, List<T> newList,
+      IdDiffUtilComparator<T> comparator) {
+
+    return new MyersResult(DiffUtil.calculateDiff(
+        new DiffUtilCallback<>(oldList, newList, comparator), comparator.detectMoves()));
+  }
+
+  /**
+   * Updates turning the old list into the new one
+   */
+  public abstract static class Result {
+
+    /**
+     * Notifies the updates to the given callback
+     *
+     * @param callback {@link ListUpdateCallback} receiving the updates
+     */
+    public abstract void dispatchUpdatesTo(@NonNull ListUpdateCallback callback);
+
+    /**
+     * Notifies the updates to the given adapter
+     *
+     * @param adapter {@link RecyclerView.Adapter} receiving the updates
+     */
+    public void dispatchUpdatesTo(@NonNull final RecyclerView.Adapter adapter) {
+
+      dispatchUpdatesTo(new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+
+          adapter.notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+
+          adapter.notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+
+          adapter.notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+
+          adapter.notifyItemRangeChanged(position, count, payload);
+        }
+      });
+    }
+  }
+
+  /**
+   * Result computed by {@link DiffUtil}
+   */
+  private static final class MyersResult extends Result {
+
+    private final DiffUtil.DiffResult diffResult;
+
+    MyersResult(DiffUtil.DiffResult diffResult) {
+
+      this.diffResult = diffResult;
+    }
+
+    @Override
+    public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+
+      diffResult.dispatchUpdatesTo(callback);
+    }
+  }
+
+  /**
+   * Result of matching the items by id, without moves
+   */
+  private static final class LinearResult extends Result {
+
+    private final int[] oldToNew;
+    private final int[] newToOld;
+    private final boolean[] changed;
+    private final Object[] payloads;
+
+    LinearResult(int[] oldToNew, int[] newToOld, boolean[] changed, Object[] payloads) {
+
+      this.oldToNew = oldToNew;
+      this.newToOld = newToOld;
+      this.changed = changed;
+      this.payloads = payloads;
+    }
+
+    @Override
+    public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+
+      final BatchingListUpdateCallback batchingCallback =
+          new BatchingListUpdateCallback(callback);
+      // Goes backwards, so the positions before the current ones are still the old positions
+      int i = oldToNew.length - 1;
+      int j = newToOld.length - 1;
+      while (i >= 0 || j >= 0) {
+        if (j >= 0 && newToOld[j] == NO_POSITION) {
+          batchingCallback.onInserted(i + 1, 1);
+          j--;
+        } else if (i >= 0 && oldToNew[i] == NO_POSITION) {
+          batchingCallback.onRemoved(i, 1);
+          i--;
+        } else {
+          // Matched items are kept in order, so both positions belong to the same item
+          if (changed[j]) {
+            batchingCallback.onChanged(i, 1, payloads[j]);
+          }
+          i--;
+          j--;
+        }
+      }
+      batchingCallback.dispatchLastEvent();
+    }
+  }
+
+}
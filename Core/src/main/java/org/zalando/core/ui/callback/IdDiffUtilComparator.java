@@ -0,0 +1,60 @@
+package org.zalando.core.ui.callback;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * {@link DiffUtilCallback.DiffUtilComparator} for items with stable and unique ids. Diffs using it
+ * are computed by {@link IdDiffCalculator} in linear time, matching the items by id and comparing
+ * their contents by hash before calling equals.
+ *
+ * @param <T> {@link T} type to compare
+ */
+public abstract class IdDiffUtilComparator<T> implements DiffUtilCallback.DiffUtilComparator<T> {
+
+  /**
+   * Provides the stable id of the given item
+   *
+   * @param item {@link T} to identify
+   * @return {@link Long} with the id, unique in the list
+   */
+  public abstract long getId(@NonNull T item);
+
+  /**
+   * Provides a hash of the contents of the given item, consistent with its equals. Items with
+   * different hashes are changed without calling equals. Returns hashCode by default
+   *
+   * @param item {@link T} to hash
+   * @return {@link Integer} with the hash
+   */
+  public int getContentHash(@NonNull T item) {
+
+    return item.hashCode();
+  }
+
+  /**
+   * Indicates if moved items must be detected as moves. When they are, lists with moved items are
+   * diffed with Myers' algorithm, otherwise moved items are notified as removed and inserted and
+   * the diff stays linear. False by default
+   *
+   * @return {@link Boolean} indicating if moves must be detected
+   */
+  public boolean detectMoves() {
+
+    return false;
+  }
+
+  @Override
+  public boolean areItemsTheSame(T oldItem, T newItem) {
+
+    return getId(oldItem) == getId(newItem);
+  }
+
+  @Nullable
+  @Override
+  public Object getChangePayload(T oldItem, T newItem) {
+
+    return null;
+  }
+
+}
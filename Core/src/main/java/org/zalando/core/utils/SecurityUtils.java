@@ -4,18 +4,27 @@ import android.os.Build;
 import android.os.Process;
 import android.util.Base64;
 import android.util.Pair;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.schedulers.Schedulers;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.SecureRandom;
@@ -23,6 +32,10 @@ import java.security.SecureRandomSpi;
 import java.security.Security;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -39,6 +52,22 @@ import timber.log.Timber;
  */
 public class SecurityUtils {
 
+  private static final int DERIVED_KEYS_CACHE_SIZE = 8;
+
+  // Keys derived from passwords, by hash of password and salt so passwords are not kept around.
+  // Guarded by itself
+  private static final Map<String, AesCbcWithIntegrity.SecretKeys> DERIVED_KEYS =
+      new LinkedHashMap<String, AesCbcWithIntegrity.SecretKeys>(DERIVED_KEYS_CACHE_SIZE, 0.75f,
+          true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<String, AesCbcWithIntegrity.SecretKeys> eldest) {
+          return size() > DERIVED_KEYS_CACHE_SIZE;
+        }
+      };
+  // Derivations running in background, by the same key as DERIVED_KEYS. Guarded by DERIVED_KEYS
+  private static final Map<String, Single<String>> PENDING_DERIVATIONS = new HashMap<>();
+
   /**
    * Decrypts the given text using the given Key
    *
@@ -85,8 +114,110 @@ public class SecurityUtils {
    */
   public static String generateKey(String password) throws GeneralSecurityException {
 
-    return AesCbcWithIntegrity.generateKeyFromPassword(password, Base64.decode(SecurityUtils
-        .class.getName(), Base64.DEFAULT)).toString();
+    return deriveKey(password, keySalt()).toString();
+  }
+
+  /**
+   * Generates an encryption key using as reference the given password on the computation
+   * scheduler. Concurrent subscriptions for the same password share a single derivation, and the
+   * result is cached as for {@link #generateKey(String)}
+   *
+   * @param password {@link String} with the password to use as reference
+   * @return {@link Single} emitting the generated key
+   */
+  public static Single<String> generateKeyAsync(final String password) {
+
+    return Single.defer(new Callable<SingleSource<String>>() {
+      @Override
+      public SingleSource<String> call() throws Exception {
+
+        final byte[] salt = keySalt();
+        final String cacheKey = derivedKeyCacheKey(password, salt);
+        synchronized (DERIVED_KEYS) {
+          final AesCbcWithIntegrity.SecretKeys secretKeys = DERIVED_KEYS.get(cacheKey);
+          if (secretKeys != null) {
+            return Single.just(secretKeys.toString());
+          }
+
+          Single<String> derivation = PENDING_DERIVATIONS.get(cacheKey);
+          if (derivation == null) {
+            derivation = Single.fromCallable(new Callable<String>() {
+              @Override
+              public String call() throws Exception {
+
+                try {
+                  return deriveKey(password, salt).toString();
+                } finally {
+                  synchronized (DERIVED_KEYS) {
+                    PENDING_DERIVATIONS.remove(cacheKey);
+                  }
+                }
+              }
+            }).subscribeOn(Schedulers.computation()).cache();
+            PENDING_DERIVATIONS.put(cacheKey, derivation);
+          }
+          return derivation;
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes all the keys derived from passwords kept in memory by {@link #generateKey(String)}
+   * and {@link #generateKeyAsync(String)}. Derivations already running are not cancelled and will
+   * cache their result when they finish
+   */
+  public static void wipeDerivedKeys() {
+
+    synchronized (DERIVED_KEYS) {
+      DERIVED_KEYS.clear();
+    }
+  }
+
+  /**
+   * Provides the key derived from the given password and salt, deriving it only if it is not
+   * cached
+   *
+   * @param password {@link String} with the password
+   * @param salt byte array with the salt
+   * @return {@link AesCbcWithIntegrity.SecretKeys} derived
+   * @throws GeneralSecurityException if AES is not implemented on this system
+   */
+  private static AesCbcWithIntegrity.SecretKeys deriveKey(String password, byte[] salt)
+      throws GeneralSecurityException {
+
+    final String cacheKey = derivedKeyCacheKey(password, salt);
+    synchronized (DERIVED_KEYS) {
+      final AesCbcWithIntegrity.SecretKeys secretKeys = DERIVED_KEYS.get(cacheKey);
+      if (secretKeys != null) {
+        return secretKeys;
+      }
+    }
+
+    final AesCbcWithIntegrity.SecretKeys secretKeys = AesCbcWithIntegrity
+        .generateKeyFromPassword(password, salt);
+    synchronized (DERIVED_KEYS) {
+      DERIVED_KEYS.put(cacheKey, secretKeys);
+    }
+    return secretKeys;
+  }
+
+  private static String derivedKeyCacheKey(String password, byte[] salt)
+      throws GeneralSecurityException {
+
+    final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    try {
+      digest.update(password.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new GeneralSecurityException(e);
+    }
+    return Base64.encodeToString(digest.digest(), Base64.NO_WRAP) + ":"
+        + Base64.encodeToString(salt, Base64.NO_WRAP);
+  }
+
+  private static byte[] keySalt() {
+
+    return Base64.decode(SecurityUtils.class.getName(), Base64.DEFAULT);
   }
 
   /**
@@ -131,6 +262,177 @@ public class SecurityUtils {
     return Base64.encodeToString(textToTransform.getBytes(), flags);
   }
 
+  /**
+   * Encrypts the given stream in chunks, without holding the whole payload in memory. The target
+   * gets the iv, the encrypted bytes and the mac, the same values {@link #encrypt(String)} encodes
+   * in Base64. Streams are not closed
+   *
+   * @param source {@link InputStream} with the bytes to encrypt
+   * @param target {@link OutputStream} receiving the encrypted bytes
+   * @param key {@link String} with the key to use for encryption
+   * @throws GeneralSecurityException if AES is not implemented on this system
+   * @throws IOException if reading or writing the streams fails
+   */
+  public static void encrypt(InputStream source, OutputStream target, String key) throws
+      GeneralSecurityException, IOException {
+
+    AesCbcWithIntegrity.encrypt(source, target, AesCbcWithIntegrity.keys(key));
+  }
+
+  /**
+   * Decrypts the given stream in chunks. The mac is checked at the end of the stream, so when it
+   * throws {@link GeneralSecurityException} the target may hold part of the data and must be
+   * discarded. Streams are not closed
+   *
+   * @param source {@link InputStream} with the bytes to decrypt
+   * @param target {@link OutputStream} receiving the decrypted bytes
+   * @param key {@link String} with the key to use for decryption
+   * @throws GeneralSecurityException if the mac does not match or AES is not implemented
+   * @throws IOException if reading or writing the streams fails
+   */
+  public static void decrypt(InputStream source, OutputStream target, String key) throws
+      GeneralSecurityException, IOException {
+
+    AesCbcWithIntegrity.decrypt(source, target, AesCbcWithIntegrity.keys(key));
+  }
+
+  /**
+   * Encrypts the given {@link FileChannel} from its position in chunks, with the same format as
+   * {@link #encrypt(InputStream, OutputStream, String)}
+   *
+   * @param source {@link FileChannel} with the bytes to encrypt
+   * @param target {@link FileChannel} receiving the encrypted bytes
+   * @param key {@link String} with the key to use for encryption
+   * @throws GeneralSecurityException if AES is not implemented on this system
+   * @throws IOException if reading or writing the channels fails
+   */
+  public static void encrypt(FileChannel source, FileChannel target, String key) throws
+      GeneralSecurityException, IOException {
+
+    AesCbcWithIntegrity.encrypt(source, target, AesCbcWithIntegrity.keys(key));
+  }
+
+  /**
+   * Decrypts the whole given {@link FileChannel} in chunks. The mac is checked before decrypting,
+   * so nothing is written when the data was tampered with
+   *
+   * @param source {@link FileChannel} with the bytes to decrypt
+   * @param target {@link FileChannel} receiving the decrypted bytes
+   * @param key {@link String} with the key to use for decryption
+   * @throws GeneralSecurityException if the mac does not match or AES is not implemented
+   * @throws IOException if reading or writing the channels fails
+   */
+  public static void decrypt(FileChannel source, FileChannel target, String key) throws
+      GeneralSecurityException, IOException {
+
+    AesCbcWithIntegrity.decrypt(source, target, AesCbcWithIntegrity.keys(key));
+  }
+
+  /**
+   * Creates a {@link Cryptor} for the given key, to encrypt and decrypt many values with it
+   * without parsing the key and setting up the crypto engines every time
+   *
+   * @param key {@link String} with the key, as provided by {@link #encrypt(String)} or {@link
+   * #generateKey(String)}
+   * @return {@link Cryptor} for the given key
+   * @throws GeneralSecurityException if the key is invalid or AES is not implemented on this system
+   */
+  public static Cryptor createCryptor(String key) throws GeneralSecurityException {
+
+    return new Cryptor(AesCbcWithIntegrity.keys(key));
+  }
+
+  /**
+   * Encrypts and decrypts values with a single key. The key is parsed once, and every thread
+   * reuses its own {@link Cipher} and initialised {@link Mac} for every value. Thread safe
+   */
+  public static final class Cryptor {
+
+    private final AesCbcWithIntegrity.SecretKeys secretKeys;
+
+    private Cryptor(AesCbcWithIntegrity.SecretKeys secretKeys) {
+
+      this.secretKeys = secretKeys;
+    }
+
+    /**
+     * Encrypts the given text. Output is compatible with {@link SecurityUtils#decrypt(String,
+     * String)}
+     *
+     * @param textToEncrypt {@link String} to encrypt
+     * @return {@link String} encrypted
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     * @throws UnsupportedEncodingException if UTF-8 is not supported in this system
+     */
+    public String encrypt(String textToEncrypt) throws GeneralSecurityException,
+        UnsupportedEncodingException {
+
+      return AesCbcWithIntegrity.encrypt(textToEncrypt, secretKeys).toString();
+    }
+
+    /**
+     * Decrypts the given text. Accepts the output of {@link SecurityUtils#encrypt(String)}
+     *
+     * @param textToDecrypt {@link String} to decrypt
+     * @return {@link String} decrypted
+     * @throws GeneralSecurityException if the MAC does not match or AES is not implemented
+     * @throws UnsupportedEncodingException if UTF-8 is not supported in this system
+     */
+    public String decrypt(String textToDecrypt) throws GeneralSecurityException,
+        UnsupportedEncodingException {
+
+      return AesCbcWithIntegrity.decryptString(new AesCbcWithIntegrity.CipherTextIvMac(
+          textToDecrypt), secretKeys);
+    }
+
+    /**
+     * Encrypts the given text into the binary format: version, iv, mac and ciphertext one after
+     * the other. It is more compact than the Base64 {@link String} and is read without decoding
+     *
+     * @param textToEncrypt {@link String} to encrypt
+     * @return byte array with the encrypted text in binary format
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     * @throws UnsupportedEncodingException if UTF-8 is not supported in this system
+     */
+    public byte[] encryptToBytes(String textToEncrypt) throws GeneralSecurityException,
+        UnsupportedEncodingException {
+
+      return AesCbcWithIntegrity.encryptToBytes(textToEncrypt.getBytes("UTF-8"), secretKeys);
+    }
+
+    /**
+     * Decrypts a text in binary format, as provided by {@link #encryptToBytes(String)} or {@link
+     * SecurityUtils#toBinaryFormat(String)}. The iv, mac and ciphertext are read in place from the
+     * buffer, from its position to its limit. The position is moved to the limit
+     *
+     * @param encryptedBytes {@link ByteBuffer} with the encrypted text in binary format
+     * @return {@link String} decrypted
+     * @throws GeneralSecurityException if the MAC does not match, the format is not supported or
+     * AES is not implemented
+     * @throws UnsupportedEncodingException if UTF-8 is not supported in this system
+     */
+    public String decrypt(ByteBuffer encryptedBytes) throws GeneralSecurityException,
+        UnsupportedEncodingException {
+
+      final ByteBuffer decrypted = AesCbcWithIntegrity.decrypt(encryptedBytes, secretKeys);
+      return new String(decrypted.array(), decrypted.arrayOffset(), decrypted.remaining(),
+          "UTF-8");
+    }
+  }
+
+  /**
+   * Converts an encrypted text from the Base64 {@link String} format, as provided by {@link
+   * #encrypt(String)}, into the binary format read by {@link Cryptor#decrypt(ByteBuffer)}. It does
+   * not decrypt anything, so it can be used to migrate stored values without the key
+   *
+   * @param encryptedText {@link String} with the encrypted text in Base64 format
+   * @return byte array with the encrypted text in binary format
+   */
+  public static byte[] toBinaryFormat(String encryptedText) {
+
+    return new AesCbcWithIntegrity.CipherTextIvMac(encryptedText).toBytes();
+  }
+
   /**
    * Utility class used for encryption and decryption. Source: http://bit.ly/1EJijAI
    */
@@ -158,6 +460,23 @@ public class SecurityUtils {
     private static final String HMAC_ALGORITHM = "HmacSHA256";
     private static final int HMAC_KEY_LENGTH_BITS = 256;
 
+    // Looking up the provider dominates the cost of small payloads, so every thread keeps its own
+    // engines. They are not thread safe, and get initialised before every use
+    private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<>();
+    private static final ThreadLocal<Mac> MACS = new ThreadLocal<>();
+    private static final ThreadLocal<KeyGenerator> KEY_GENERATORS = new ThreadLocal<>();
+    private static final ThreadLocal<SecureRandom> RANDOMS = new ThreadLocal<>();
+
+    // Chunk size of the streaming encryption, a multiple of the AES block size
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    // Binary format: version | iv | mac | ciphertext. The iv and mac go first because they're
+    // fixed length for a version
+    private static final byte BINARY_FORMAT_VERSION = 1;
+    private static final int MAC_LENGTH_BYTES = 32;
+    private static final int BINARY_HEADER_LENGTH = 1 + IV_LENGTH_BYTES + MAC_LENGTH_BYTES;
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
     /**
      * Converts the given AES/HMAC keys into a base64 encoded string suitable for storage.
      * Sister function of keys.
@@ -211,10 +530,14 @@ public class SecurityUtils {
      */
     public static SecretKeys generateKey() throws GeneralSecurityException {
       fixPrng();
-      KeyGenerator keyGen = KeyGenerator.getInstance(CIPHER);
-      // No need to provide a SecureRandom or set a seed since that will
-      // happen automatically.
-      keyGen.init(AES_KEY_LENGTH_BITS);
+      KeyGenerator keyGen = KEY_GENERATORS.get();
+      if (keyGen == null) {
+        keyGen = KeyGenerator.getInstance(CIPHER);
+        // No need to provide a SecureRandom or set a seed since that will
+        // happen automatically.
+        keyGen.init(AES_KEY_LENGTH_BITS);
+        KEY_GENERATORS.set(keyGen);
+      }
       SecretKey confidentialityKey = keyGen.generateKey();
 
       //Now make the HMAC key
@@ -300,7 +623,11 @@ public class SecurityUtils {
 
     private static byte[] randomBytes(int length) throws GeneralSecurityException {
       fixPrng();
-      SecureRandom random = SecureRandom.getInstance(RANDOM_ALGORITHM);
+      SecureRandom random = RANDOMS.get();
+      if (random == null) {
+        random = SecureRandom.getInstance(RANDOM_ALGORITHM);
+        RANDOMS.set(random);
+      }
       byte[] b = new byte[length];
       random.nextBytes(b);
       return b;
@@ -354,8 +681,23 @@ public class SecurityUtils {
      */
     public static CipherTextIvMac encrypt(byte[] plaintext, SecretKeys secretKeys)
         throws GeneralSecurityException {
+      return encrypt(plaintext, secretKeys, threadCipher(), secretKeys.threadMac());
+    }
+
+    /**
+     * Generates a random IV and encrypts this plain text with the given key, reusing the given
+     * crypto engines. Then attaches a hashed MAC, which is contained in the CipherTextIvMac class.
+     *
+     * @param plaintext The text that will be encrypted
+     * @param secretKeys The combined AES & HMAC keys with which to encrypt
+     * @param aesCipherForEncryption Cipher of CIPHER_TRANSFORMATION, it gets initialised here
+     * @param integrityMac Mac of HMAC_ALGORITHM already initialised with the integrity key
+     * @return a tuple of the IV, ciphertext, mac
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     */
+    static CipherTextIvMac encrypt(byte[] plaintext, SecretKeys secretKeys,
+        Cipher aesCipherForEncryption, Mac integrityMac) throws GeneralSecurityException {
       byte[] iv = generateIv();
-      Cipher aesCipherForEncryption = Cipher.getInstance(CIPHER_TRANSFORMATION);
       aesCipherForEncryption.init(Cipher.ENCRYPT_MODE, secretKeys.getConfidentialityKey(),
           new IvParameterSpec(iv));
 
@@ -365,10 +707,9 @@ public class SecurityUtils {
          */
       iv = aesCipherForEncryption.getIV();
       byte[] byteCipherText = aesCipherForEncryption.doFinal(plaintext);
-      byte[] ivCipherConcat = CipherTextIvMac.ivCipherConcat(iv, byteCipherText);
-
-      byte[] integrityMac = generateMac(ivCipherConcat, secretKeys.getIntegrityKey());
-      return new CipherTextIvMac(byteCipherText, iv, integrityMac);
+      // Same mac as over ivCipherConcat, without copying the cipher text
+      integrityMac.update(iv);
+      return new CipherTextIvMac(byteCipherText, iv, integrityMac.doFinal(byteCipherText));
     }
 
     /**
@@ -432,11 +773,25 @@ public class SecurityUtils {
      */
     public static byte[] decrypt(CipherTextIvMac civ, SecretKeys secretKeys)
         throws GeneralSecurityException {
+      return decrypt(civ, secretKeys, threadCipher(), secretKeys.threadMac());
+    }
 
-      byte[] ivCipherConcat = CipherTextIvMac.ivCipherConcat(civ.getIv(), civ.getCipherText());
-      byte[] computedMac = generateMac(ivCipherConcat, secretKeys.getIntegrityKey());
+    /**
+     * AES CBC decrypt reusing the given crypto engines.
+     *
+     * @param civ the cipher text, iv, and mac
+     * @param secretKeys the AES & HMAC keys
+     * @param aesCipherForDecryption Cipher of CIPHER_TRANSFORMATION, it gets initialised here
+     * @param integrityMac Mac of HMAC_ALGORITHM already initialised with the integrity key
+     * @return The raw decrypted bytes
+     * @throws GeneralSecurityException if MACs don't match or AES is not implemented
+     */
+    static byte[] decrypt(CipherTextIvMac civ, SecretKeys secretKeys,
+        Cipher aesCipherForDecryption, Mac integrityMac) throws GeneralSecurityException {
+
+      integrityMac.update(civ.getIv());
+      byte[] computedMac = integrityMac.doFinal(civ.getCipherText());
       if (constantTimeEq(computedMac, civ.getMac())) {
-        Cipher aesCipherForDecryption = Cipher.getInstance(CIPHER_TRANSFORMATION);
         aesCipherForDecryption.init(Cipher.DECRYPT_MODE, secretKeys.getConfidentialityKey(),
             new IvParameterSpec(civ.getIv()));
         return aesCipherForDecryption.doFinal(civ.getCipherText());
@@ -445,6 +800,300 @@ public class SecurityUtils {
       }
     }
 
+    /*
+     * -----------------------------------------------------------------
+     * Binary format
+     * -----------------------------------------------------------------
+     */
+
+    /**
+     * Encrypts the plain text straight into the binary format, version | iv | mac | ciphertext,
+     * without intermediate arrays.
+     *
+     * @param plaintext The bytes that will be encrypted
+     * @param secretKeys The AES & HMAC keys with which to encrypt
+     * @return the encrypted bytes in binary format
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     */
+    static byte[] encryptToBytes(byte[] plaintext, SecretKeys secretKeys)
+        throws GeneralSecurityException {
+      Cipher cipher = threadCipher();
+      Mac mac = secretKeys.threadMac();
+      cipher.init(Cipher.ENCRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(generateIv()));
+      byte[] iv = cipher.getIV();
+
+      byte[] output = new byte[BINARY_HEADER_LENGTH + cipher.getOutputSize(plaintext.length)];
+      int cipherTextLength = cipher.doFinal(plaintext, 0, plaintext.length, output,
+          BINARY_HEADER_LENGTH);
+      output[0] = BINARY_FORMAT_VERSION;
+      System.arraycopy(iv, 0, output, 1, IV_LENGTH_BYTES);
+      mac.update(iv);
+      mac.update(output, BINARY_HEADER_LENGTH, cipherTextLength);
+      mac.doFinal(output, 1 + IV_LENGTH_BYTES);
+
+      int length = BINARY_HEADER_LENGTH + cipherTextLength;
+      return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Decrypts a buffer in binary format from its position to its limit. The iv, mac and
+     * ciphertext are read in place, and the position is moved to the limit.
+     *
+     * @param encrypted Buffer with version | iv | mac | ciphertext
+     * @param secretKeys The AES & HMAC keys
+     * @return Buffer with the raw decrypted bytes, backed by an array
+     * @throws GeneralSecurityException if MACs don't match, the version is unknown or AES is not
+     * implemented
+     */
+    static ByteBuffer decrypt(ByteBuffer encrypted, SecretKeys secretKeys)
+        throws GeneralSecurityException {
+      if (encrypted.remaining() < BINARY_HEADER_LENGTH) {
+        throw new GeneralSecurityException("Buffer is too short to hold the binary header");
+      }
+      byte version = encrypted.get();
+      if (version != BINARY_FORMAT_VERSION) {
+        throw new GeneralSecurityException("Unknown binary format version " + version);
+      }
+      byte[] iv = new byte[IV_LENGTH_BYTES];
+      encrypted.get(iv);
+      byte[] storedMac = new byte[MAC_LENGTH_BYTES];
+      encrypted.get(storedMac);
+
+      Mac mac = secretKeys.threadMac();
+      mac.update(iv);
+      mac.update(encrypted.duplicate());
+      if (!constantTimeEq(mac.doFinal(), storedMac)) {
+        throw new GeneralSecurityException("MAC stored in buffer does not match computed MAC.");
+      }
+
+      Cipher cipher = threadCipher();
+      cipher.init(Cipher.DECRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(iv));
+      ByteBuffer output = ByteBuffer.allocate(cipher.getOutputSize(encrypted.remaining()));
+      cipher.doFinal(encrypted, output);
+      output.flip();
+      return output;
+    }
+
+    /*
+     * -----------------------------------------------------------------
+     * Streaming
+     * -----------------------------------------------------------------
+     */
+
+    /**
+     * Encrypts the source stream into the target stream in chunks, updating the mac as the cipher
+     * text is produced. The target gets iv | ciphertext | mac, with the same iv, ciphertext and
+     * mac a CipherTextIvMac of the whole payload would hold. Streams are not closed.
+     *
+     * @param source The stream with the plain bytes
+     * @param target The stream receiving the encrypted bytes
+     * @param secretKeys The AES & HMAC keys with which to encrypt
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     * @throws IOException if reading or writing the streams fails
+     */
+    public static void encrypt(InputStream source, OutputStream target, SecretKeys secretKeys)
+        throws GeneralSecurityException, IOException {
+      Cipher cipher = threadCipher();
+      Mac mac = secretKeys.threadMac();
+      cipher.init(Cipher.ENCRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(generateIv()));
+      byte[] iv = cipher.getIV();
+      mac.update(iv);
+      target.write(iv);
+
+      byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+      byte[] output =
+          new byte[cipher.getOutputSize(STREAM_BUFFER_SIZE) + cipher.getBlockSize()];
+      int read;
+      while ((read = source.read(buffer)) != -1) {
+        int length = cipher.update(buffer, 0, read, output);
+        mac.update(output, 0, length);
+        target.write(output, 0, length);
+      }
+      int length = cipher.doFinal(output, 0);
+      mac.update(output, 0, length);
+      target.write(output, 0, length);
+      target.write(mac.doFinal());
+    }
+
+    /**
+     * Decrypts a stream written by encrypt(InputStream, OutputStream, SecretKeys) in chunks. The
+     * mac can only be checked once the whole source has been read, so the target may already hold
+     * part of the plain bytes when the mac does not match, and must then be discarded. Use
+     * decrypt(FileChannel, FileChannel, SecretKeys) to check the mac before decrypting anything.
+     * Streams are not closed.
+     *
+     * @param source The stream with iv | ciphertext | mac
+     * @param target The stream receiving the plain bytes
+     * @param secretKeys The AES & HMAC keys
+     * @throws GeneralSecurityException if MACs don't match or AES is not implemented
+     * @throws IOException if reading or writing the streams fails
+     */
+    public static void decrypt(InputStream source, OutputStream target, SecretKeys secretKeys)
+        throws GeneralSecurityException, IOException {
+      Cipher cipher = threadCipher();
+      Mac mac = secretKeys.threadMac();
+      int macLength = mac.getMacLength();
+      byte[] iv = new byte[IV_LENGTH_BYTES];
+      try {
+        new DataInputStream(source).readFully(iv);
+      } catch (EOFException e) {
+        throw new GeneralSecurityException("Stream is too short to hold an iv", e);
+      }
+      mac.update(iv);
+      cipher.init(Cipher.DECRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(iv));
+
+      // The last macLength bytes read are held back, as they may be the mac
+      byte[] buffer = new byte[STREAM_BUFFER_SIZE + macLength];
+      byte[] output =
+          new byte[cipher.getOutputSize(STREAM_BUFFER_SIZE) + cipher.getBlockSize()];
+      int held = 0;
+      int read;
+      while ((read = source.read(buffer, held, buffer.length - held)) != -1) {
+        held += read;
+        int ready = held - macLength;
+        if (ready > 0) {
+          mac.update(buffer, 0, ready);
+          int length = cipher.update(buffer, 0, ready, output);
+          target.write(output, 0, length);
+          System.arraycopy(buffer, ready, buffer, 0, macLength);
+          held = macLength;
+        }
+      }
+      if (held != macLength
+          || !constantTimeEq(mac.doFinal(), Arrays.copyOf(buffer, macLength))) {
+        throw new GeneralSecurityException("MAC stored in stream does not match computed MAC.");
+      }
+      int length = cipher.doFinal(output, 0);
+      target.write(output, 0, length);
+    }
+
+    /**
+     * Encrypts the source channel from its current position into the target channel, with the
+     * same layout as encrypt(InputStream, OutputStream, SecretKeys).
+     *
+     * @param source The channel with the plain bytes
+     * @param target The channel receiving the encrypted bytes
+     * @param secretKeys The AES & HMAC keys with which to encrypt
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     * @throws IOException if reading or writing the channels fails
+     */
+    public static void encrypt(FileChannel source, FileChannel target, SecretKeys secretKeys)
+        throws GeneralSecurityException, IOException {
+      Cipher cipher = threadCipher();
+      Mac mac = secretKeys.threadMac();
+      cipher.init(Cipher.ENCRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(generateIv()));
+      byte[] iv = cipher.getIV();
+      mac.update(iv);
+      writeFully(target, ByteBuffer.wrap(iv));
+
+      ByteBuffer input = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+      ByteBuffer output = ByteBuffer.allocate(
+          cipher.getOutputSize(STREAM_BUFFER_SIZE) + cipher.getBlockSize());
+      while (source.read(input) != -1) {
+        input.flip();
+        cipher.update(input, output);
+        writeCipherText(target, output, mac);
+        input.clear();
+      }
+      cipher.doFinal(input, output);
+      writeCipherText(target, output, mac);
+      writeFully(target, ByteBuffer.wrap(mac.doFinal()));
+    }
+
+    /**
+     * Decrypts the whole source channel, written by encrypt(FileChannel, FileChannel,
+     * SecretKeys) or encrypt(InputStream, OutputStream, SecretKeys), into the target channel. The
+     * mac is checked in a first pass, so nothing is written to the target when it does not match.
+     *
+     * @param source The channel with iv | ciphertext | mac
+     * @param target The channel receiving the plain bytes
+     * @param secretKeys The AES & HMAC keys
+     * @throws GeneralSecurityException if MACs don't match or AES is not implemented
+     * @throws IOException if reading or writing the channels fails
+     */
+    public static void decrypt(FileChannel source, FileChannel target, SecretKeys secretKeys)
+        throws GeneralSecurityException, IOException {
+      Cipher cipher = threadCipher();
+      Mac mac = secretKeys.threadMac();
+      int macLength = mac.getMacLength();
+      long macPosition = source.size() - macLength;
+      if (macPosition < IV_LENGTH_BYTES) {
+        throw new GeneralSecurityException("Channel is too short to hold an iv and a mac");
+      }
+
+      // First pass, check the mac over iv | ciphertext
+      ByteBuffer input = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+      long position = 0;
+      while (position < macPosition) {
+        input.clear();
+        input.limit((int) Math.min(input.capacity(), macPosition - position));
+        position += readFully(source, input, position);
+        input.flip();
+        mac.update(input);
+      }
+      ByteBuffer storedMac = ByteBuffer.allocate(macLength);
+      readFully(source, storedMac, macPosition);
+      if (!constantTimeEq(mac.doFinal(), storedMac.array())) {
+        throw new GeneralSecurityException("MAC stored in channel does not match computed MAC.");
+      }
+
+      // Second pass, decrypt the ciphertext
+      ByteBuffer iv = ByteBuffer.allocate(IV_LENGTH_BYTES);
+      readFully(source, iv, 0);
+      cipher.init(Cipher.DECRYPT_MODE, secretKeys.getConfidentialityKey(),
+          new IvParameterSpec(iv.array()));
+      ByteBuffer output = ByteBuffer.allocate(
+          cipher.getOutputSize(STREAM_BUFFER_SIZE) + cipher.getBlockSize());
+      position = IV_LENGTH_BYTES;
+      while (position < macPosition) {
+        input.clear();
+        input.limit((int) Math.min(input.capacity(), macPosition - position));
+        position += readFully(source, input, position);
+        input.flip();
+        cipher.update(input, output);
+        output.flip();
+        writeFully(target, output);
+        output.clear();
+      }
+      input.clear();
+      input.flip();
+      cipher.doFinal(input, output);
+      output.flip();
+      writeFully(target, output);
+    }
+
+    private static void writeCipherText(FileChannel target, ByteBuffer cipherText, Mac mac)
+        throws IOException {
+      cipherText.flip();
+      mac.update(cipherText.duplicate());
+      writeFully(target, cipherText);
+      cipherText.clear();
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        target.write(buffer);
+      }
+    }
+
+    private static int readFully(FileChannel source, ByteBuffer buffer, long position)
+        throws IOException {
+      int total = 0;
+      while (buffer.hasRemaining()) {
+        int read = source.read(buffer, position + total);
+        if (read == -1) {
+          throw new EOFException();
+        }
+        total += read;
+      }
+      return total;
+    }
+
     /*
      * -----------------------------------------------------------------
      * Helper Code
@@ -461,11 +1110,30 @@ public class SecurityUtils {
     public static byte[] generateMac(byte[] byteCipherText, SecretKey integrityKey) throws
         NoSuchAlgorithmException, InvalidKeyException {
       //Now compute the mac for later integrity checking
-      Mac sha256_HMAC = Mac.getInstance(HMAC_ALGORITHM);
+      Mac sha256_HMAC = MACS.get();
+      if (sha256_HMAC == null) {
+        sha256_HMAC = Mac.getInstance(HMAC_ALGORITHM);
+        MACS.set(sha256_HMAC);
+      }
       sha256_HMAC.init(integrityKey);
       return sha256_HMAC.doFinal(byteCipherText);
     }
 
+    /**
+     * Provides the Cipher of CIPHER_TRANSFORMATION of the current thread
+     *
+     * @return Cipher to be initialised before use
+     * @throws GeneralSecurityException if AES is not implemented on this system
+     */
+    private static Cipher threadCipher() throws GeneralSecurityException {
+      Cipher cipher = CIPHERS.get();
+      if (cipher == null) {
+        cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        CIPHERS.set(cipher);
+      }
+      return cipher;
+    }
+
     /**
      * Holder class that has both the secret AES key for encryption (confidentiality) and the
      * secret HMAC key for integrity.
@@ -475,6 +1143,8 @@ public class SecurityUtils {
 
       private SecretKey confidentialityKey;
       private SecretKey integrityKey;
+      // Mac of every thread, already initialised with the integrity key
+      private ThreadLocal<Mac> integrityMacs = new ThreadLocal<>();
 
       /**
        * Construct the secret keys container.
@@ -501,6 +1171,28 @@ public class SecurityUtils {
 
       public void setIntegrityKey(SecretKey integrityKey) {
         this.integrityKey = integrityKey;
+        this.integrityMacs = new ThreadLocal<>();
+      }
+
+      /**
+       * Provides the Mac of the current thread initialised with the integrity key. The Mac keeps
+       * the key after every doFinal or reset, so it is only initialised once per thread
+       *
+       * @return Mac of HMAC_ALGORITHM ready to be used
+       * @throws GeneralSecurityException if HMAC is not implemented or the key is invalid
+       */
+      Mac threadMac() throws GeneralSecurityException {
+        final ThreadLocal<Mac> macs = integrityMacs;
+        Mac mac = macs.get();
+        if (mac == null) {
+          mac = Mac.getInstance(HMAC_ALGORITHM);
+          mac.init(integrityKey);
+          macs.set(mac);
+        } else {
+          // Drops anything left by an operation that failed halfway
+          mac.reset();
+        }
+        return mac;
       }
 
       /**
@@ -603,16 +1295,32 @@ public class SecurityUtils {
        * ciphertext must each be base64-encoded.
        */
       CipherTextIvMac(String base64IvAndCiphertext) {
-        String[] civArray = base64IvAndCiphertext.split(":");
-        if (civArray.length != 3) {
+        int macStart = base64IvAndCiphertext.indexOf(':') + 1;
+        int cipherTextStart = base64IvAndCiphertext.indexOf(':', macStart) + 1;
+        if (macStart == 0 || cipherTextStart == 0
+            || base64IvAndCiphertext.indexOf(':', cipherTextStart) != -1) {
           throw new IllegalArgumentException("Cannot parse iv:ciphertext:mac");
         } else {
-          iv = Base64.decode(civArray[0], BASE64_FLAGS);
-          mac = Base64.decode(civArray[1], BASE64_FLAGS);
-          cipherText = Base64.decode(civArray[2], BASE64_FLAGS);
+          // Decodes the bytes of every part in place, instead of splitting into new strings
+          byte[] input = base64IvAndCiphertext.getBytes(US_ASCII);
+          iv = Base64.decode(input, 0, macStart - 1, BASE64_FLAGS);
+          mac = Base64.decode(input, macStart, cipherTextStart - macStart - 1, BASE64_FLAGS);
+          cipherText = Base64.decode(input, cipherTextStart, input.length - cipherTextStart,
+              BASE64_FLAGS);
         }
       }
 
+      /**
+       * Encodes this ciphertext, IV, mac in the binary format.
+       *
+       * @return version | iv | mac | ciphertext
+       */
+      public byte[] toBytes() {
+        ByteBuffer output = ByteBuffer.allocate(1 + iv.length + mac.length + cipherText.length);
+        output.put(BINARY_FORMAT_VERSION).put(iv).put(mac).put(cipherText);
+        return output.array();
+      }
+
       /**
        * Concatinate the IV to the cipherText using array copy. This is used e.g. before
        * computing mac.
@@ -0,0 +1,93 @@
+package org.zalando.core.data;
+
+import static org.junit.Assert.assertEquals;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.SingleSubject;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Test for {@link BaseRepository}
+ */
+public class BaseRepositoryTest {
+
+  private final BaseRepository repository = new BaseRepository() {
+  };
+
+  @Test
+  public void testConcurrentObservablesShareUpstream() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final PublishSubject<String> source = PublishSubject.create();
+    final Observable<String> request = source.doOnSubscribe(new CountingConsumer(subscriptions));
+
+    final TestObserver<String> first = request
+        .compose(repository.<String>applyDeduplicationToObservable("key")).test();
+    final TestObserver<String> second = request
+        .compose(repository.<String>applyDeduplicationToObservable("key")).test();
+    source.onNext("value");
+    source.onComplete();
+
+    assertEquals(1, subscriptions.get());
+    first.assertResult("value");
+    second.assertResult("value");
+
+    // Once terminated a new request goes upstream again
+    request.compose(repository.<String>applyDeduplicationToObservable("key")).test();
+    assertEquals(2, subscriptions.get());
+  }
+
+  @Test
+  public void testDifferentKeysDoNotShare() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final Observable<String> request = PublishSubject.<String>create()
+        .doOnSubscribe(new CountingConsumer(subscriptions));
+
+    request.compose(repository.<String>applyDeduplicationToObservable("first")).test();
+    request.compose(repository.<String>applyDeduplicationToObservable("second")).test();
+
+    assertEquals(2, subscriptions.get());
+  }
+
+  @Test
+  public void testConcurrentSinglesShareUpstream() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final SingleSubject<String> source = SingleSubject.create();
+    final Single<String> request = source.doOnSubscribe(new CountingConsumer(subscriptions));
+
+    final TestObserver<String> first = request
+        .compose(repository.<String>applyDeduplicationToSingle("key")).test();
+    final TestObserver<String> second = request
+        .compose(repository.<String>applyDeduplicationToSingle("key")).test();
+    // Disposing one subscriber keeps the request running for the other
+    first.dispose();
+    source.onSuccess("value");
+
+    assertEquals(1, subscriptions.get());
+    second.assertResult("value");
+  }
+
+  private static class CountingConsumer implements Consumer<Object> {
+
+    private final AtomicInteger counter;
+
+    CountingConsumer(AtomicInteger counter) {
+
+      this.counter = counter;
+    }
+
+    @Override
+    public void accept(Object disposable) throws Exception {
+
+      counter.incrementAndGet();
+    }
+  }
+
+}
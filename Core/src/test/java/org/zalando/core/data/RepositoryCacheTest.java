@@ -0,0 +1,214 @@
+package org.zalando.core.data;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Build;
+import com.google.gson.Gson;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+
+/**
+ * Test for {@link RepositoryCache}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP, manifest =
+    "src/main/AndroidManifest.xml")
+public class RepositoryCacheTest {
+
+  private static final int MAX_DISK_ENTRIES = 2;
+
+  private final BaseRepository repository = new BaseRepository() {
+  };
+  private final TestScheduler scheduler = new TestScheduler();
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+
+    directory = File.createTempFile("cache", null);
+    directory.delete();
+  }
+
+  @Test
+  public void testCacheThenNetwork() {
+
+    final RepositoryCache<String> cache = createCache(10);
+
+    request("network").compose(repository.applyCacheToObservable(cache, "key")).test()
+        .assertResult("network");
+    final TestObserver<String> observer = request("newer")
+        .compose(repository.applyCacheToObservable(cache, "key")).test();
+
+    // Memory hits are emitted synchronously
+    observer.assertResult("network", "newer");
+  }
+
+  @Test
+  public void testReadThroughFromDisk() {
+
+    createCache(10).put("key", "value");
+    scheduler.triggerActions();
+
+    // A new cache only has the value on disk
+    final TestObserver<String> observer = Single.just("network")
+        .compose(repository.applyCacheToSingle(createCache(10), "key")).test();
+    scheduler.triggerActions();
+
+    observer.assertResult("value");
+  }
+
+  @Test
+  public void testExpiredValuesAreIgnored() {
+
+    final RepositoryCache<String> cache = createCache(10);
+    cache.put("key", "value");
+    scheduler.triggerActions();
+    scheduler.advanceTimeBy(2, TimeUnit.MINUTES);
+
+    final TestObserver<String> observer = cache.get("key").test();
+    scheduler.triggerActions();
+    observer.assertNoValues().assertComplete();
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testMemoryEviction() {
+
+    final RepositoryCache<String> cache = createCache(1);
+    cache.put("first", "1");
+    cache.put("second", "2");
+
+    // Evicted values are still read from disk
+    final TestObserver<String> observer = cache.get("first").test();
+    observer.assertNoValues();
+    scheduler.triggerActions();
+    observer.assertResult("1");
+  }
+
+  @Test
+  public void testInvalidate() {
+
+    final RepositoryCache<String> cache = createCache(10);
+    cache.put("first", "1");
+    cache.put("second", "2");
+    scheduler.triggerActions();
+
+    cache.invalidate("first");
+    final TestObserver<String> observer = cache.get("first").test();
+    scheduler.triggerActions();
+    observer.assertNoValues().assertComplete();
+    cache.get("second").test().assertResult("2");
+
+    cache.invalidateAll();
+    final TestObserver<String> invalidatedObserver = cache.get("second").test();
+    scheduler.triggerActions();
+    invalidatedObserver.assertNoValues().assertComplete();
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testInvalidateBeforeWrite() {
+
+    final RepositoryCache<String> cache = createCache(10);
+    cache.put("key", "value");
+    cache.invalidate("key");
+    scheduler.triggerActions();
+
+    final TestObserver<String> observer = cache.get("key").test();
+    scheduler.triggerActions();
+    observer.assertNoValues().assertComplete();
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testInvalidateDuringRead() {
+
+    final RepositoryCache<String> cache = createCache(1);
+    cache.put("first", "1");
+    cache.put("second", "2");
+    scheduler.triggerActions();
+
+    // The read of the value evicted from memory is pending when it is invalidated
+    final TestObserver<String> observer = cache.get("first").test();
+    cache.invalidate("first");
+    scheduler.triggerActions();
+
+    observer.assertNoValues().assertComplete();
+    final TestObserver<String> laterObserver = cache.get("first").test();
+    scheduler.triggerActions();
+    laterObserver.assertNoValues().assertComplete();
+  }
+
+  @Test
+  public void testInvalidateAllBeforeWrite() {
+
+    final RepositoryCache<String> cache = createCache(10);
+    cache.put("first", "1");
+    cache.invalidateAll();
+    cache.put("second", "2");
+    scheduler.triggerActions();
+
+    // Only the value put after the invalidation is kept
+    assertEquals(1, directory.list().length);
+    final TestObserver<String> observer = createCache(10).get("second").test();
+    scheduler.triggerActions();
+    observer.assertResult("2");
+  }
+
+  @Test
+  public void testDiskEntriesAreBounded() {
+
+    final RepositoryCache<String> cache = createCache(10);
+    cache.put("first", "1");
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    cache.put("second", "2");
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    cache.put("third", "3");
+    scheduler.triggerActions();
+
+    // The oldest value is deleted
+    assertEquals(MAX_DISK_ENTRIES, directory.list().length);
+    final RepositoryCache<String> diskCache = createCache(10);
+    final TestObserver<String> firstObserver = diskCache.get("first").test();
+    final TestObserver<String> thirdObserver = diskCache.get("third").test();
+    scheduler.triggerActions();
+    firstObserver.assertNoValues().assertComplete();
+    thirdObserver.assertResult("3");
+  }
+
+  @Test
+  public void testExpiredFilesAreSwept() {
+
+    createCache(10).put("old", "value");
+    scheduler.triggerActions();
+    scheduler.advanceTimeBy(2, TimeUnit.MINUTES);
+
+    // The first write of a new cache sweeps the files left by the previous one
+    createCache(10).put("new", "value");
+    scheduler.triggerActions();
+    assertEquals(1, directory.list().length);
+  }
+
+  private RepositoryCache<String> createCache(int maxMemoryEntries) {
+
+    return new RepositoryCache<>(new Gson(), String.class, maxMemoryEntries, directory,
+        MAX_DISK_ENTRIES, 1, TimeUnit.MINUTES, scheduler);
+  }
+
+  private static Observable<String> request(String value) {
+
+    return Observable.just(value);
+  }
+
+}
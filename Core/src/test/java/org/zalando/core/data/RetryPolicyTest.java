@@ -0,0 +1,155 @@
+package org.zalando.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Test for {@link RetryPolicy}
+ */
+public class RetryPolicyTest {
+
+  private final TestScheduler scheduler = new TestScheduler();
+
+  @Test
+  public void testDelaysAreJitteredAndCapped() {
+
+    final RetryPolicy policy = new RetryPolicy.Builder()
+        .setBaseDelay(100, TimeUnit.MILLISECONDS)
+        .setMaxDelay(1, TimeUnit.SECONDS)
+        .setRandom(new Random(42))
+        .build();
+
+    boolean jittered = false;
+    for (int i = 0; i < 100; i++) {
+      final long first = policy.delayMillis(1);
+      final long tenth = policy.delayMillis(10);
+      final long hundredth = policy.delayMillis(100);
+      assertTrue(first >= 0 && first <= 100);
+      assertTrue(tenth >= 0 && tenth <= 1000);
+      assertTrue(hundredth >= 0 && hundredth <= 1000);
+      jittered |= first != policy.delayMillis(1);
+    }
+    assertTrue(jittered);
+  }
+
+  @Test
+  public void testRetriesRecoverableErrors() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final TestObserver<Object> observer = failingRequest(subscriptions,
+        new SocketTimeoutException())
+        .compose(policy(2).forObservable())
+        .test();
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    observer.assertError(SocketTimeoutException.class);
+    assertEquals(3, subscriptions.get());
+  }
+
+  @Test
+  public void testDoesNotRetryOtherErrors() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final TestObserver<Object> observer = failingRequest(subscriptions,
+        new IllegalStateException())
+        .compose(policy(2).forObservable())
+        .test();
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    observer.assertError(IllegalStateException.class);
+    assertEquals(1, subscriptions.get());
+  }
+
+  @Test
+  public void testResubscriptionsDoNotShareRetries() {
+
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final Observable<Object> request = failingRequest(subscriptions, new SocketTimeoutException())
+        .compose(policy(2).forObservable());
+
+    request.test();
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    request.test();
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    assertEquals(6, subscriptions.get());
+  }
+
+  @Test
+  public void testBudgetLimitsRetries() {
+
+    final RetryBudget budget = new RetryBudget(2, 1);
+    final AtomicInteger subscriptions = new AtomicInteger();
+    final AtomicInteger exhausted = new AtomicInteger();
+    final RetryPolicy policy = new RetryPolicy.Builder()
+        .setMaxRetries(5)
+        .setBudget(budget)
+        .setScheduler(scheduler)
+        .setListener(new RetryPolicy.Listener() {
+          @Override
+          public void onRetry(int retry, long delayMillis, Throwable throwable) {
+          }
+
+          @Override
+          public void onGiveUp(int retries, Throwable throwable) {
+          }
+
+          @Override
+          public void onBudgetExhausted(int retries, Throwable throwable) {
+
+            exhausted.incrementAndGet();
+          }
+        })
+        .build();
+
+    failingRequest(subscriptions, new SocketTimeoutException())
+        .compose(policy.forObservable())
+        .test();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    assertEquals(3, subscriptions.get());
+    assertEquals(1, exhausted.get());
+  }
+
+  @Test
+  public void testBudgetIsGivenBackOverTime() {
+
+    final RetryBudget budget = new RetryBudget(1, 1);
+
+    assertTrue(budget.tryAcquire(0));
+    assertFalse(budget.tryAcquire(500));
+    assertTrue(budget.tryAcquire(1500));
+  }
+
+  private RetryPolicy policy(int maxRetries) {
+
+    return new RetryPolicy.Builder()
+        .setMaxRetries(maxRetries)
+        .setScheduler(scheduler)
+        .build();
+  }
+
+  private static Observable<Object> failingRequest(final AtomicInteger subscriptions,
+      Throwable throwable) {
+
+    return Observable.error(throwable).doOnSubscribe(new Consumer<Object>() {
+      @Override
+      public void accept(Object disposable) throws Exception {
+
+        subscriptions.incrementAndGet();
+      }
+    });
+  }
+
+}
@@ -0,0 +1,65 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.Test;
+
+/**
+ * Test for {@link CacheMaxAgeInterceptor}
+ */
+public class CacheMaxAgeInterceptorTest {
+
+  private final CacheMaxAgeInterceptor interceptor = new CacheMaxAgeInterceptor()
+      .maxAge("/data/", 1, TimeUnit.HOURS)
+      .maxAge("/data/weather", 10, TimeUnit.MINUTES);
+
+  @Test
+  public void testLongestPrefixWins() throws IOException {
+
+    assertEquals("public, max-age=600",
+        intercept("GET", "/data/weather?q=Berlin", 200).header("Cache-Control"));
+    assertEquals("public, max-age=3600",
+        intercept("GET", "/data/forecast", 200).header("Cache-Control"));
+  }
+
+  @Test
+  public void testOtherResponsesUntouched() throws IOException {
+
+    assertEquals("no-cache", intercept("GET", "/other", 200).header("Cache-Control"));
+    assertEquals("no-cache", intercept("POST", "/data/weather", 200).header("Cache-Control"));
+    assertEquals("no-cache", intercept("GET", "/data/weather", 500).header("Cache-Control"));
+    assertNull(intercept("GET", "/data/weather", 200).header("Pragma"));
+  }
+
+  private Response intercept(String method, String path, int code) throws IOException {
+
+    final Request request = new Request.Builder()
+        .url("http://localhost" + path)
+        .method(method, "GET".equals(method) ? null : RequestBody.create(null, new byte[0]))
+        .build();
+    final Response response = new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("message")
+        .header("Cache-Control", "no-cache")
+        .header("Pragma", "no-cache")
+        .build();
+    final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(request)).thenReturn(response);
+
+    return interceptor.intercept(chain);
+  }
+
+}
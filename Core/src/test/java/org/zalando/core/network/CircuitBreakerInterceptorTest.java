@@ -0,0 +1,167 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.reactivex.schedulers.TestScheduler;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+import org.zalando.core.exception.BaseThrowable;
+
+/**
+ * Test for {@link CircuitBreakerInterceptor}
+ */
+public class CircuitBreakerInterceptorTest {
+
+  private final TestScheduler clock = new TestScheduler();
+  private final CircuitBreakerInterceptor interceptor = new CircuitBreakerInterceptor(4, 2, 0.5f,
+      10, TimeUnit.SECONDS, clock);
+
+  @Test
+  public void testOpensOnFailures() throws IOException {
+
+    assertEquals(200, intercept("failing", 200).code());
+    assertEquals(500, intercept("failing", 500).code());
+
+    // Half of the window failed, so the next request fails fast
+    assertOpen("failing");
+    // Other hosts are not affected
+    assertEquals(200, intercept("working", 200).code());
+  }
+
+  @Test
+  public void testHalfOpenProbe() throws IOException {
+
+    timeout("host");
+    timeout("host");
+    assertOpen("host");
+
+    // The failed probe opens the circuit again
+    clock.advanceTimeBy(10, TimeUnit.SECONDS);
+    timeout("host");
+    assertOpen("host");
+
+    // The successful probe closes it
+    clock.advanceTimeBy(10, TimeUnit.SECONDS);
+    assertEquals(200, intercept("host", 200).code());
+    assertEquals(200, intercept("host", 200).code());
+    assertEquals(200, intercept("host", 200).code());
+  }
+
+  @Test
+  public void testCanceledRequestsAreNotRecorded() throws IOException {
+
+    final Interceptor.Chain chain = chain("host", true);
+    when(chain.proceed(chain.request())).thenThrow(new IOException("Canceled"));
+    for (int i = 0; i < 4; i++) {
+      try {
+        interceptor.intercept(chain);
+        fail("The request must be canceled");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+
+    assertEquals(200, intercept("host", 200).code());
+  }
+
+  @Test
+  public void testOfflineRequestsAreNotRecorded() throws IOException {
+
+    offline("host");
+    offline("host");
+    assertEquals(200, intercept("host", 200).code());
+
+    // Half of the window failed
+    timeout("host");
+    assertOpen("host");
+
+    // The probe failing offline lets another probe through
+    clock.advanceTimeBy(10, TimeUnit.SECONDS);
+    offline("host");
+    assertEquals(200, intercept("host", 200).code());
+    assertEquals(200, intercept("host", 200).code());
+  }
+
+  @Test
+  public void testOpenCircuitIsClassified() {
+
+    assertEquals(BaseThrowable.Type.CIRCUIT_OPEN,
+        new BaseThrowable(new CircuitBreakerOpenException("host")).getType());
+  }
+
+  private void assertOpen(String host) throws IOException {
+
+    try {
+      intercept(host, 200);
+      fail("Requests must fail fast while the circuit is open");
+    } catch (CircuitBreakerOpenException e) {
+      assertEquals(host, e.getHost());
+    }
+  }
+
+  private void timeout(String host) throws IOException {
+
+    final Interceptor.Chain chain = chain(host, false);
+    when(chain.proceed(chain.request())).thenThrow(new SocketTimeoutException());
+    try {
+      interceptor.intercept(chain);
+      fail("The request must time out");
+    } catch (SocketTimeoutException e) {
+      // Expected
+    }
+  }
+
+  private void offline(String host) throws IOException {
+
+    final Interceptor.Chain chain = chain(host, false);
+    when(chain.proceed(chain.request())).thenThrow(new UnknownHostException(host));
+    try {
+      interceptor.intercept(chain);
+      fail("The host must not be resolved");
+    } catch (UnknownHostException e) {
+      // Expected
+    }
+  }
+
+  private Response intercept(String host, int code) throws IOException {
+
+    final Request request = request(host);
+    final Response response = new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("message")
+        .build();
+    final Interceptor.Chain chain = chain(host, false);
+    when(chain.proceed(chain.request())).thenReturn(response);
+
+    return interceptor.intercept(chain);
+  }
+
+  private static Interceptor.Chain chain(String host, boolean canceled) {
+
+    final Call call = mock(Call.class);
+    when(call.isCanceled()).thenReturn(canceled);
+    final Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    when(chain.request()).thenReturn(request(host));
+    when(chain.call()).thenReturn(call);
+    return chain;
+  }
+
+  private static Request request(String host) {
+
+    return new Request.Builder().url("http://" + host + "/path").build();
+  }
+
+}
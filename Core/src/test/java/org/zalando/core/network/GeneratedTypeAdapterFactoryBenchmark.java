@@ -0,0 +1,93 @@
+package org.zalando.core.network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.zalando.core.network.GeneratedTypeAdapterFactoryTest.Entity;
+
+/**
+ * Benchmark for {@link GeneratedTypeAdapterFactory}, only run with -Pbenchmark. Reports the
+ * timings of the generated and the reflective adapters without asserting on them
+ */
+public class GeneratedTypeAdapterFactoryBenchmark {
+
+  private static final Type ENTITY_LIST = new TypeToken<List<Entity>>() {
+  }.getType();
+  private static final int ENTITIES = 200;
+  private static final int WARM_UP_PARSES = 200;
+  private static final int PARSES = 500;
+
+  private final Gson reflectiveGson = new Gson();
+  private final Gson generatedGson = new GsonBuilder()
+      .registerTypeAdapterFactory(GeneratedTypeAdapterFactory.create())
+      .create();
+
+  /**
+   * Measures the first parse of a class, adapter lookup included, and the throughput of parsing a
+   * list of entities, with the generated and the reflective adapters
+   */
+  @Test
+  public void benchmarkFirstCallAndThroughput() {
+
+    final String firstCallJson = "{\"name\":\"name\",\"count\":1,\"values\":[1,2,3]}";
+    // Classes never used before, so their adapters are looked up and created
+    long start = System.nanoTime();
+    new Gson().fromJson(firstCallJson, FirstCallReflective.class);
+    final long reflectiveFirstCall = System.nanoTime() - start;
+    start = System.nanoTime();
+    new GsonBuilder().registerTypeAdapterFactory(GeneratedTypeAdapterFactory.create()).create()
+        .fromJson(firstCallJson, FirstCallGenerated.class);
+    final long generatedFirstCall = System.nanoTime() - start;
+
+    final List<Entity> entities = new ArrayList<>();
+    for (int i = 0; i < ENTITIES; i++) {
+      entities.add(GeneratedTypeAdapterFactoryTest.fullEntity(i));
+    }
+    final String json = reflectiveGson.toJson(entities);
+    // Let the JIT settle
+    long checksum = parse(reflectiveGson, json, WARM_UP_PARSES)
+        + parse(generatedGson, json, WARM_UP_PARSES);
+
+    start = System.nanoTime();
+    checksum += parse(reflectiveGson, json, PARSES);
+    final long reflectiveNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    checksum += parse(generatedGson, json, PARSES);
+    final long generatedNanos = System.nanoTime() - start;
+
+    System.out.println(String.format("First call: reflective %d us, generated %d us",
+        reflectiveFirstCall / 1000, generatedFirstCall / 1000));
+    System.out.println(String.format("%d entities: reflective %d ms, generated %d ms (checksum %d)",
+        ENTITIES * PARSES, reflectiveNanos / 1000000, generatedNanos / 1000000, checksum));
+  }
+
+  private static long parse(Gson gson, String json, int times) {
+
+    long checksum = 0;
+    for (int i = 0; i < times; i++) {
+      final List<Entity> entities = gson.fromJson(json, ENTITY_LIST);
+      checksum += entities.get(entities.size() - 1).intValue;
+    }
+    return checksum;
+  }
+
+  static class FirstCallReflective {
+
+    String name;
+    int count;
+    List<Integer> values;
+  }
+
+  @GenerateTypeAdapter
+  static class FirstCallGenerated {
+
+    String name;
+    int count;
+    List<Integer> values;
+  }
+
+}
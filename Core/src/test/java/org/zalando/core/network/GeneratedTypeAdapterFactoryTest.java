@@ -0,0 +1,224 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Test for {@link GeneratedTypeAdapterFactory} and the adapters generated by GsonProcessor, which
+ * must behave as the reflective adapters of {@link Gson}
+ */
+public class GeneratedTypeAdapterFactoryTest {
+
+  private final Gson reflectiveGson = new Gson();
+  private final Gson generatedGson = new GsonBuilder()
+      .registerTypeAdapterFactory(GeneratedTypeAdapterFactory.create())
+      .create();
+
+  @Test
+  public void testProvidesGeneratedAdapters() {
+
+    assertTrue(generatedGson.getAdapter(Entity.class).getClass().getName()
+        .endsWith("Entity_TypeAdapter"));
+    // Classes not annotated are left to Gson
+    assertEquals(reflectiveGson.getAdapter(Plain.class).getClass(),
+        generatedGson.getAdapter(Plain.class).getClass());
+  }
+
+  @Test
+  public void testWritesAsReflectiveGson() {
+
+    final Entity entity = fullEntity(1);
+
+    assertEquals(reflectiveGson.toJson(entity), generatedGson.toJson(entity));
+  }
+
+  @Test
+  public void testWritesNullsAsReflectiveGson() {
+
+    final Entity entity = new Entity();
+
+    assertEquals(reflectiveGson.toJson(entity), generatedGson.toJson(entity));
+    final Gson reflectiveNullsGson = new GsonBuilder().serializeNulls().create();
+    final Gson generatedNullsGson = new GsonBuilder().serializeNulls()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory.create())
+        .create();
+    assertEquals(reflectiveNullsGson.toJson(entity), generatedNullsGson.toJson(entity));
+    assertEquals("null", generatedGson.toJson(null, Entity.class));
+  }
+
+  @Test
+  public void testReadsAsReflectiveGson() {
+
+    final String json = reflectiveGson.toJson(fullEntity(1));
+
+    assertRead(json);
+  }
+
+  @Test
+  public void testReadsNullsAsReflectiveGson() {
+
+    // Nulls leave the primitives with their initial value
+    final String json = "{\"booleanValue\":null,\"intValue\":null,\"charValue\":null,"
+        + "\"stringValue\":null,\"boxedValue\":null,\"renamed_value\":null,\"nested\":null,"
+        + "\"plain\":null,\"nestedList\":null,\"map\":null,\"array\":null}";
+
+    final Entity entity = assertRead(json);
+    assertEquals(7, entity.intValue);
+    assertEquals('c', entity.charValue);
+  }
+
+  @Test
+  public void testReadsSerializedNamesAsReflectiveGson() {
+
+    assertEquals("value", assertRead("{\"renamed_value\":\"value\"}").renamedValue);
+    assertEquals("value", assertRead("{\"oldName\":\"value\"}").renamedValue);
+    // Fields with a serialized name are not read by their Java name
+    assertEquals(null, assertRead("{\"renamedValue\":\"value\"}").renamedValue);
+    // Unknown fields are skipped, whatever their value
+    assertRead("{\"unknown\":{\"a\":[1,2,{}]},\"intValue\":3}");
+  }
+
+  @Test
+  public void testReadsLenientPrimitivesAsReflectiveGson() {
+
+    assertRead("{\"intValue\":\"12\",\"longValue\":\"34\",\"doubleValue\":\"1.5\","
+        + "\"stringValue\":true,\"booleanValue\":\"true\",\"charValue\":\"x\"}");
+  }
+
+  @Test
+  public void testInheritedFields() {
+
+    final Child child = new Child();
+    child.baseValue = "base";
+    child.childValue = 2;
+
+    final String json = reflectiveGson.toJson(child);
+    assertEquals(json, generatedGson.toJson(child));
+    assertEquals(json, generatedGson.toJson(generatedGson.fromJson(json, Child.class)));
+  }
+
+  @Test
+  public void testFieldNamingStrategy() {
+
+    final Gson reflectiveNamingGson = new GsonBuilder()
+        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+        .create();
+    final Gson generatedNamingGson = new GsonBuilder()
+        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+        .registerTypeAdapterFactory(
+            GeneratedTypeAdapterFactory.create(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES))
+        .create();
+    final Entity entity = fullEntity(1);
+
+    final String json = reflectiveNamingGson.toJson(entity);
+    assertTrue(json.contains("\"boolean_value\""));
+    assertEquals(json, generatedNamingGson.toJson(entity));
+    assertEquals(json,
+        reflectiveNamingGson.toJson(generatedNamingGson.fromJson(json, Entity.class)));
+  }
+
+  /**
+   * Reads the given JSON with the generated and the reflective adapters, checking they produce
+   * the same entity
+   *
+   * @param json {@link String} with the JSON of an {@link Entity}
+   * @return {@link Entity} read by the generated adapter
+   */
+  private Entity assertRead(String json) {
+
+    final Entity generated = generatedGson.fromJson(json, Entity.class);
+    final Entity reflective = reflectiveGson.fromJson(json, Entity.class);
+    assertEquals(reflectiveGson.toJson(reflective), reflectiveGson.toJson(generated));
+    return generated;
+  }
+
+  static Entity fullEntity(int seed) {
+
+    final Entity entity = new Entity();
+    entity.booleanValue = true;
+    entity.intValue = seed;
+    entity.longValue = Long.MAX_VALUE - seed;
+    entity.doubleValue = seed + 0.25;
+    entity.floatValue = seed + 0.5f;
+    entity.shortValue = (short) -seed;
+    entity.byteValue = (byte) seed;
+    entity.charValue = '\u00e9';
+    entity.stringValue = "quote \" and \u2603";
+    entity.boxedValue = seed * 2;
+    entity.renamedValue = "renamed";
+    entity.nested = new Nested();
+    entity.nested.name = "nested";
+    entity.plain = new Plain();
+    entity.plain.value = seed;
+    entity.nestedList = new ArrayList<>();
+    entity.nestedList.add(entity.nested);
+    entity.nestedList.add(null);
+    entity.map = new LinkedHashMap<>();
+    entity.map.put("key", seed);
+    entity.array = new int[]{1, 2, seed};
+    entity.transientValue = "transient";
+    return entity;
+  }
+
+  @GenerateTypeAdapter
+  static class Entity {
+
+    static String staticValue = "static";
+
+    boolean booleanValue;
+    int intValue = 7;
+    long longValue;
+    double doubleValue;
+    float floatValue;
+    short shortValue;
+    byte byteValue;
+    char charValue = 'c';
+    String stringValue;
+    Integer boxedValue;
+    @SerializedName(value = "renamed_value", alternate = {"oldName"})
+    String renamedValue;
+    Nested nested;
+    Plain plain;
+    List<Nested> nestedList;
+    Map<String, Integer> map;
+    int[] array;
+    transient String transientValue;
+  }
+
+  @GenerateTypeAdapter
+  static class Nested {
+
+    String name;
+  }
+
+  /**
+   * Not annotated, read by the reflective adapter of Gson
+   */
+  static class Plain {
+
+    int value;
+  }
+
+  @GenerateTypeAdapter
+  static class Base {
+
+    String baseValue;
+  }
+
+  @GenerateTypeAdapter
+  static class Child extends Base {
+
+    int childValue;
+  }
+
+}
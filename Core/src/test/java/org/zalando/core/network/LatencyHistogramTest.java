@@ -0,0 +1,66 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Test for {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsCoverValues() {
+
+    // Every value falls in a bucket holding it, with a bounded relative error
+    for (long value = 0; value < 1L << 36; value = value * 3 / 2 + 1) {
+      final int bucket = LatencyHistogram.bucketOf(value);
+      final long highest = LatencyHistogram.highestValueOf(bucket);
+      assertTrue(highest >= value);
+      assertTrue(highest - value <= value / 16);
+      if (bucket > 0) {
+        assertTrue(LatencyHistogram.highestValueOf(bucket - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i, TimeUnit.MILLISECONDS);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMaxMicros());
+    assertWithin(500000, histogram.getPercentileMicros(50));
+    assertWithin(990000, histogram.getPercentileMicros(99));
+    assertEquals(1000000, histogram.getPercentileMicros(100));
+    assertWithin(1000, histogram.getPercentileMicros(0));
+  }
+
+  @Test
+  public void testSnapshotAndReset() {
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(10, TimeUnit.MICROSECONDS);
+    histogram.record(20, TimeUnit.MICROSECONDS);
+
+    final LatencyHistogram snapshot = histogram.snapshotAndReset();
+    assertEquals(2, snapshot.getCount());
+    assertEquals(20, snapshot.getMaxMicros());
+    assertEquals(10, snapshot.getPercentileMicros(50));
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentileMicros(50));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+
+    assertTrue(String.format("%d is not close to %d", actual, expected),
+        Math.abs(actual - expected) <= expected / 16);
+  }
+
+}
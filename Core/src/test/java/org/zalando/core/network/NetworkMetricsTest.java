@@ -0,0 +1,140 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link NetworkMetrics}
+ */
+public class NetworkMetricsTest {
+
+  private MockWebServer server;
+
+  @Before
+  public void setUp() throws IOException {
+
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+
+    server.shutdown();
+  }
+
+  @Test
+  public void testRecordsPhases() throws IOException {
+
+    final NetworkMetrics metrics = new NetworkMetrics();
+    server.enqueue(new MockResponse().setBody("body"));
+    get(metrics, "/items/123");
+
+    final TestReporter reporter = new TestReporter();
+    metrics.report(reporter);
+    final Set<NetworkMetrics.Phase> phases =
+        reporter.phases.get("GET " + server.url("/").host() + "/items/{id}");
+    assertTrue(String.valueOf(reporter.phases), phases.containsAll(EnumSet.of(
+        NetworkMetrics.Phase.TOTAL, NetworkMetrics.Phase.CONNECT, NetworkMetrics.Phase.TTFB,
+        NetworkMetrics.Phase.BODY)));
+    assertEquals(1, reporter.phases.size());
+  }
+
+  @Test
+  public void testReportResetsHistograms() throws IOException {
+
+    final NetworkMetrics metrics = new NetworkMetrics();
+    server.enqueue(new MockResponse().setBody("body"));
+    get(metrics, "/items");
+    metrics.report(new TestReporter());
+
+    // Nothing was recorded since the last report
+    final TestReporter reporter = new TestReporter();
+    metrics.report(reporter);
+    assertTrue(reporter.phases.isEmpty());
+  }
+
+  @Test
+  public void testEndpointsAreBounded() throws IOException {
+
+    final NetworkMetrics metrics = new NetworkMetrics(NetworkMetrics.EndpointResolver.DEFAULT, 2);
+    final String host = server.url("/").host();
+    for (String path : new String[]{"/first", "/second", "/third", "/fourth", "/first"}) {
+      server.enqueue(new MockResponse().setBody("body"));
+      get(metrics, path);
+    }
+
+    final TestReporter reporter = new TestReporter();
+    metrics.report(reporter);
+    assertEquals(3, reporter.phases.size());
+    assertTrue(reporter.phases.containsKey("GET " + host + "/first"));
+    assertTrue(reporter.phases.containsKey("GET " + host + "/second"));
+    assertTrue(reporter.phases.containsKey(NetworkMetrics.OTHER_ENDPOINT));
+    assertEquals(2, reporter.totals.get(NetworkMetrics.OTHER_ENDPOINT).longValue());
+    assertEquals(2, reporter.totals.get("GET " + host + "/first").longValue());
+  }
+
+  @Test
+  public void testDefaultResolverCollapsesIds() {
+
+    assertEquals("GET example.com/users/{id}/orders/{id}/v2/2.5",
+        NetworkMetrics.EndpointResolver.DEFAULT.resolve(new Request.Builder()
+            .url("https://example.com/users/123/orders/3f2a9c1e-7b1d-4c2e-9a6b-1f2e3d4c5b6a"
+                + "/v2/2.5?query=1")
+            .build()));
+    assertEquals("GET example.com/data/2.5/weather",
+        NetworkMetrics.EndpointResolver.DEFAULT.resolve(new Request.Builder()
+            .url("https://example.com/data/2.5/weather")
+            .build()));
+  }
+
+  private void get(NetworkMetrics metrics, String path) throws IOException {
+
+    final OkHttpClient client = new OkHttpClient.Builder()
+        .addInterceptor(metrics.getInterceptor())
+        .eventListenerFactory(metrics.getEventListenerFactory())
+        .build();
+    final Response response = client.newCall(new Request.Builder()
+        .url(server.url(path))
+        .build()).execute();
+    try {
+      response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  private static class TestReporter implements NetworkMetrics.Reporter {
+
+    private final Map<String, Set<NetworkMetrics.Phase>> phases = new HashMap<>();
+    // Count of the whole calls by endpoint
+    private final Map<String, Long> totals = new HashMap<>();
+
+    @Override
+    public void report(String endpoint, NetworkMetrics.Phase phase, LatencyHistogram histogram) {
+
+      if (!phases.containsKey(endpoint)) {
+        phases.put(endpoint, EnumSet.noneOf(NetworkMetrics.Phase.class));
+      }
+      phases.get(endpoint).add(phase);
+      if (phase == NetworkMetrics.Phase.TOTAL) {
+        totals.put(endpoint, histogram.getCount());
+      }
+    }
+  }
+
+}
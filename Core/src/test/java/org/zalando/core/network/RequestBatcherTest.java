@@ -0,0 +1,102 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Test for {@link RequestBatcher}
+ */
+public class RequestBatcherTest {
+
+  private final TestScheduler scheduler = new TestScheduler();
+  private final List<List<Integer>> batches = new ArrayList<>();
+  private final RequestBatcher.BatchAdapter<Integer, String> adapter =
+      new RequestBatcher.BatchAdapter<Integer, String>() {
+        @Override
+        public Single<Map<Integer, String>> load(Set<Integer> keys) {
+
+          batches.add(new ArrayList<>(keys));
+          final Map<Integer, String> items = new HashMap<>();
+          for (Integer key : keys) {
+            // Negative keys are not found
+            if (key >= 0) {
+              items.put(key, "item" + key);
+            }
+          }
+          return Single.just(items);
+        }
+      };
+
+  @Test
+  public void testRequestsInWindowAreBatched() {
+
+    final RequestBatcher<Integer, String> batcher = new RequestBatcher<>(adapter, 10,
+        TimeUnit.MILLISECONDS, 100, scheduler);
+
+    final TestObserver<String> first = batcher.get(1).test();
+    final TestObserver<String> second = batcher.get(2).test();
+    final TestObserver<String> duplicate = batcher.get(1).test();
+    final TestObserver<String> missing = batcher.get(-1).test();
+    first.assertNoValues();
+
+    scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+    first.assertResult("item1");
+    second.assertResult("item2");
+    duplicate.assertResult("item1");
+    missing.assertError(NoSuchElementException.class);
+    assertEquals(Arrays.asList(Arrays.asList(1, 2, -1)), batches);
+
+    // The next window is a new batch
+    batcher.get(3).test();
+    scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+    assertEquals(Arrays.asList(3), batches.get(1));
+  }
+
+  @Test
+  public void testFullBatchIsSentRightAway() {
+
+    final RequestBatcher<Integer, String> batcher = new RequestBatcher<>(adapter, 10,
+        TimeUnit.MILLISECONDS, 2, scheduler);
+
+    batcher.get(1).test();
+    batcher.get(2).test().assertResult("item2");
+    batcher.get(3).test().assertNoValues();
+
+    scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+    assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), batches);
+  }
+
+  @Test
+  public void testBatchErrorsReachEveryRequest() {
+
+    final IllegalStateException error = new IllegalStateException();
+    final RequestBatcher<Integer, String> batcher = new RequestBatcher<>(
+        new RequestBatcher.BatchAdapter<Integer, String>() {
+          @Override
+          public Single<Map<Integer, String>> load(Set<Integer> keys) {
+
+            return Single.error(error);
+          }
+        }, 10, TimeUnit.MILLISECONDS, 100, scheduler);
+
+    final TestObserver<String> first = batcher.get(1).test();
+    final TestObserver<String> second = batcher.get(2).test();
+    scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+
+    first.assertError(error);
+    second.assertError(error);
+  }
+
+}
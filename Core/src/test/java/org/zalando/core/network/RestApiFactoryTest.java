@@ -0,0 +1,69 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import org.junit.Test;
+
+/**
+ * Test for {@link RestApiFactory}
+ */
+public class RestApiFactoryTest {
+
+  @Test
+  public void testSameConfigurationSameClient() {
+
+    final List<Interceptor> interceptors = Collections.singletonList(new TestInterceptor());
+
+    assertSame(RestApiFactory.getClient(null, null, true),
+        RestApiFactory.getClient(null, null, true));
+    assertSame(RestApiFactory.getClient(interceptors, null, false),
+        RestApiFactory.getClient(Collections.unmodifiableList(interceptors), null, false));
+  }
+
+  @Test
+  public void testClientsShareConnections() {
+
+    final OkHttpClient first = RestApiFactory.getClient(
+        Collections.<Interceptor>singletonList(new TestInterceptor()), null, false);
+    final OkHttpClient second = RestApiFactory.getClient(null,
+        Collections.<Interceptor>singletonList(new TestInterceptor()), true);
+
+    assertNotSame(first, second);
+    assertSame(RestApiFactory.getRootClient().connectionPool(), first.connectionPool());
+    assertSame(first.connectionPool(), second.connectionPool());
+    assertSame(first.dispatcher(), second.dispatcher());
+  }
+
+  @Test
+  public void testClientsAreBounded() {
+
+    final List<Interceptor> interceptors = Collections.<Interceptor>singletonList(
+        new TestInterceptor());
+    final OkHttpClient client = RestApiFactory.getClient(interceptors, null, false);
+
+    for (int i = 0; i < RestApiFactory.MAX_CLIENTS; i++) {
+      RestApiFactory.getClient(Collections.<Interceptor>singletonList(new TestInterceptor()), null,
+          false);
+    }
+
+    // The least recently used client is not kept, so neither are its interceptors
+    assertNotSame(client, RestApiFactory.getClient(interceptors, null, false));
+  }
+
+  private static class TestInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+      return chain.proceed(chain.request());
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link StaleWhileRevalidateInterceptor}
+ */
+public class StaleWhileRevalidateInterceptorTest {
+
+  private static final String AUTHORIZATION = "Bearer token";
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  private MockWebServer server;
+  private File cacheDirectory;
+  private OkHttpClient client;
+
+  @Before
+  public void setUp() throws IOException {
+
+    server = new MockWebServer();
+    server.start();
+    cacheDirectory = File.createTempFile("cache", "");
+    assertTrue(cacheDirectory.delete() && cacheDirectory.mkdir());
+    client = new OkHttpClient.Builder()
+        .cache(new Cache(cacheDirectory, 1024 * 1024))
+        .addInterceptor(new AuthInterceptor())
+        .addInterceptor(new StaleWhileRevalidateInterceptor(1, TimeUnit.MINUTES))
+        // Responses are stale right away
+        .addNetworkInterceptor(new CacheMaxAgeInterceptor().maxAge("/", 0, TimeUnit.SECONDS))
+        .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+
+    server.shutdown();
+    client.cache().delete();
+  }
+
+  @Test
+  public void testRefreshesThroughSameClient() throws Exception {
+
+    // Not cacheable without the network interceptor
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("first"));
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("second"));
+    server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("third"));
+
+    assertEquals("first", get());
+    assertEquals(AUTHORIZATION, server.takeRequest().getHeader("Authorization"));
+
+    // Stale, served from the cache while refreshed in background
+    assertEquals("first", get());
+    final RecordedRequest refresh = server.takeRequest(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    assertEquals(AUTHORIZATION, refresh.getHeader("Authorization"));
+    awaitRefresh();
+
+    // The refresh was stored in the cache, with the max age of the network interceptor
+    assertEquals("second", get());
+    awaitRefresh();
+    assertEquals(3, server.getRequestCount());
+  }
+
+  @Test
+  public void testResponsesStaleForTooLongGoToNetwork() throws Exception {
+
+    final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'",
+        Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    final String hourAgo = format.format(new Date(System.currentTimeMillis()
+        - TimeUnit.HOURS.toMillis(1)));
+    server.enqueue(new MockResponse().setHeader("Date", hourAgo).setBody("old"));
+    server.enqueue(new MockResponse().setBody("new"));
+
+    assertEquals("old", get());
+    assertEquals("new", get());
+    assertEquals(2, server.getRequestCount());
+  }
+
+  private String get() throws IOException {
+
+    final Response response = client.newCall(new Request.Builder()
+        .url(server.url("/data/weather"))
+        .build()).execute();
+    try {
+      return response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  private void awaitRefresh() throws InterruptedException {
+
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (client.dispatcher().runningCallsCount() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, client.dispatcher().runningCallsCount());
+  }
+
+  private static class AuthInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+
+      return chain.proceed(chain.request().newBuilder()
+          .header("Authorization", AUTHORIZATION)
+          .build());
+    }
+  }
+
+}
@@ -0,0 +1,228 @@
+package org.zalando.core.network;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Okio;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Streaming;
+
+/**
+ * Test for {@link StreamingJsonCallAdapterFactory}
+ */
+public class StreamingJsonCallAdapterFactoryTest {
+
+  private final StreamingJsonCallAdapterFactory factory = StreamingJsonCallAdapterFactory
+      .create(new Gson(), Schedulers.trampoline());
+  private final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+
+  @Test
+  public void testNotAnnotatedMethodsIgnored() throws Exception {
+
+    assertNull(adapter("notAnnotated"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStreamingRequired() throws Exception {
+
+    adapter("notStreaming");
+  }
+
+  @Test
+  public void testNestedArray() throws Exception {
+
+    final Observable<Element> elements = adapt("nested",
+        "{\"count\":2,\"meta\":{\"list\":[]},\"list\":[{\"id\":1},{\"id\":2}],\"more\":true}");
+
+    elements.map(new Function<Element, Integer>() {
+      @Override
+      public Integer apply(Element element) throws Exception {
+
+        return element.id;
+      }
+    }).test().assertResult(1, 2);
+  }
+
+  @Test
+  public void testFlowableReadsOnDemand() throws Exception {
+
+    final Flowable<Element> elements = adapt("root", "[{\"id\":1},{\"id\":2},{\"id\":3}]");
+
+    final TestSubscriber<Element> subscriber = elements.test(1);
+    subscriber.assertValueCount(1).assertNotComplete();
+    subscriber.request(2);
+    subscriber.assertValueCount(3).assertComplete();
+  }
+
+  @Test
+  public void testMissingArray() throws Exception {
+
+    final Observable<Element> elements = adapt("nested", "{\"count\":0}");
+
+    elements.test().assertError(JsonParseException.class);
+  }
+
+  @Test
+  public void testCancelStopsBlockedRead() throws Exception {
+
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    final Call<ResponseBody> call = mockCall(ResponseBody.create(
+        MediaType.parse("application/json"), -1,
+        Okio.buffer(Okio.source(new StalledInputStream("[{\"id\":1},", cancelled)))));
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+
+        cancelled.countDown();
+        return null;
+      }
+    }).when(call).cancel();
+    when(call.isCanceled()).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+
+        return cancelled.getCount() == 0;
+      }
+    });
+    final Flowable<Element> elements = adapt(StreamingJsonCallAdapterFactory
+        .create(new Gson(), Schedulers.io()), "root", call);
+
+    final CountDownLatch firstElement = new CountDownLatch(1);
+    final TestSubscriber<Element> subscriber = elements.doOnNext(new Consumer<Element>() {
+      @Override
+      public void accept(Element element) throws Exception {
+
+        firstElement.countDown();
+      }
+    }).test();
+    // The second element never arrives, so the reader blocks until the call is cancelled
+    assertTrue(firstElement.await(5, TimeUnit.SECONDS));
+    subscriber.cancel();
+    assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    subscriber.assertValueCount(1).assertNoErrors();
+  }
+
+  private CallAdapter<?, ?> adapter(String methodName) throws NoSuchMethodException {
+
+    final Method method = TestApi.class.getMethod(methodName);
+    return factory.get(method.getGenericReturnType(), method.getAnnotations(), retrofit);
+  }
+
+  private <T> T adapt(String methodName, String json) throws NoSuchMethodException,
+      IOException {
+
+    return adapt(factory, methodName,
+        mockCall(ResponseBody.create(MediaType.parse("application/json"), json)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T adapt(StreamingJsonCallAdapterFactory factory, String methodName,
+      Call<ResponseBody> call) throws NoSuchMethodException {
+
+    final Method method = TestApi.class.getMethod(methodName);
+    return (T) ((CallAdapter<ResponseBody, ?>) factory.get(method.getGenericReturnType(),
+        method.getAnnotations(), retrofit)).adapt(call);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Call<ResponseBody> mockCall(ResponseBody body) throws IOException {
+
+    final Call<ResponseBody> call = mock(Call.class);
+    when(call.clone()).thenReturn(call);
+    when(call.execute()).thenReturn(Response.success(body));
+    return call;
+  }
+
+  private static class Element {
+
+    int id;
+  }
+
+  /**
+   * Stream returning the given content, then blocking as a stalled download until released
+   */
+  private static final class StalledInputStream extends InputStream {
+
+    private final byte[] content;
+    private final CountDownLatch release;
+    private int position;
+
+    StalledInputStream(String content, CountDownLatch release) {
+
+      this.content = content.getBytes(Charset.forName("UTF-8"));
+      this.release = release;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      final byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+      if (position < content.length) {
+        final int count = Math.min(length, content.length - position);
+        System.arraycopy(content, position, buffer, offset, count);
+        position += count;
+        return count;
+      }
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      throw new IOException("Canceled");
+    }
+  }
+
+  private interface TestApi {
+
+    @GET("elements")
+    Observable<Element> notAnnotated();
+
+    @StreamJsonArray("list")
+    @GET("elements")
+    Observable<Element> notStreaming();
+
+    @Streaming
+    @StreamJsonArray("list")
+    @GET("elements")
+    Observable<Element> nested();
+
+    @Streaming
+    @StreamJsonArray
+    @GET("elements")
+    Flowable<Element> root();
+  }
+
+}
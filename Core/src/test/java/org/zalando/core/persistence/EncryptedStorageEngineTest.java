@@ -0,0 +1,199 @@
+package org.zalando.core.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+import org.zalando.core.utils.SecurityUtils;
+
+/**
+ * Test for {@link EncryptedStorageEngine}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP, manifest =
+    "src/main/AndroidManifest.xml")
+public class EncryptedStorageEngineTest {
+
+  private static final String TABLE_ID = "encrypted_table";
+
+  private String key;
+  private SharedPreferences storage;
+
+  @Before
+  public void setup() throws Exception {
+
+    key = SecurityUtils.encrypt("").second;
+    storage = RuntimeEnvironment.application.getSharedPreferences(TABLE_ID, Context.MODE_PRIVATE);
+    storage.edit().clear().commit();
+  }
+
+  @Test
+  public void testSameTableSameInstance() throws GeneralSecurityException {
+
+    final EncryptedStorageEngine storageEngine = new EncryptedStorageEngine(key);
+
+    assertSame(storageEngine.open(RuntimeEnvironment.application, TABLE_ID),
+        storageEngine.open(RuntimeEnvironment.application, TABLE_ID));
+  }
+
+  @Test
+  public void testValuesAreEncrypted() throws GeneralSecurityException {
+
+    final Set<String> stringSet = new HashSet<>();
+    stringSet.add("first");
+    stringSet.add("second");
+
+    final SharedPreferences table = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+    table.edit()
+        .putBoolean("boolean", true)
+        .putInt("int", 1)
+        .putLong("long", 2L)
+        .putFloat("float", 3f)
+        .putString("string", "token")
+        .putStringSet("set", stringSet)
+        .commit();
+
+    // Nothing is stored in plain text
+    assertNotEquals("token", storage.getString("string", null));
+    assertFalse(storage.getStringSet("set", null).contains("first"));
+
+    // A new engine with the same key reads the values back
+    final SharedPreferences reopened = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+    assertTrue(reopened.getBoolean("boolean", false));
+    assertEquals(1, reopened.getInt("int", 0));
+    assertEquals(2L, reopened.getLong("long", 0L));
+    assertEquals(3f, reopened.getFloat("float", 0f), 0.01);
+    assertEquals("token", reopened.getString("string", null));
+    assertEquals(stringSet, reopened.getStringSet("set", null));
+    assertEquals(6, reopened.getAll().size());
+  }
+
+  @Test(expected = ClassCastException.class)
+  public void testReadingWithAnotherType() throws GeneralSecurityException {
+
+    final SharedPreferences table = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+    table.edit().putString("key", "value").commit();
+
+    table.getInt("key", 0);
+  }
+
+  @Test
+  public void testValuesAreBoundToTheirKey() throws GeneralSecurityException {
+
+    final SharedPreferences table = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+    table.edit()
+        .putString("token", "secret")
+        .putStringSet("tokens", Collections.singleton("secret"))
+        .commit();
+
+    // Encrypted values copied to other keys are not read
+    storage.edit()
+        .putString("other", storage.getString("token", null))
+        .putStringSet("otherSet", storage.getStringSet("tokens", null))
+        .commit();
+
+    assertEquals("default", table.getString("other", "default"));
+    assertNull(table.getStringSet("otherSet", null));
+    assertFalse(table.contains("other"));
+    assertFalse(table.contains("otherSet"));
+    assertEquals("secret", table.getString("token", null));
+    assertTrue(table.contains("token"));
+  }
+
+  @Test
+  public void testUndecryptableValuesAreAbsent() throws GeneralSecurityException {
+
+    storage.edit()
+        .putString("plain", "legacy")
+        .putStringSet("plainSet", Collections.singleton("legacy"))
+        .commit();
+    final SharedPreferences table = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+    table.edit().putInt("int", 1).commit();
+
+    assertEquals("default", table.getString("plain", "default"));
+    assertEquals(0, table.getInt("plain", 0));
+    assertNull(table.getStringSet("plainSet", null));
+    assertFalse(table.contains("plain"));
+    assertFalse(table.contains("plainSet"));
+    assertEquals(Collections.singletonMap("int", 1), table.getAll());
+
+    // Values encrypted with another key can not be decrypted either
+    final SharedPreferences otherTable = new EncryptedStorageEngine(
+        SecurityUtils.encrypt("").second).open(RuntimeEnvironment.application, TABLE_ID);
+    assertEquals(0, otherTable.getInt("int", 0));
+    assertTrue(otherTable.getAll().isEmpty());
+  }
+
+  @Test
+  public void testPlainPrimitivesAreAbsent() throws GeneralSecurityException {
+
+    // Stored before the table was encrypted
+    storage.edit()
+        .putBoolean("boolean", true)
+        .putInt("int", 1)
+        .putLong("long", 2L)
+        .putFloat("float", 3f)
+        .commit();
+    final SharedPreferences table = new EncryptedStorageEngine(key)
+        .open(RuntimeEnvironment.application, TABLE_ID);
+
+    assertFalse(table.getBoolean("boolean", false));
+    assertEquals(0, table.getInt("int", 0));
+    assertEquals(0L, table.getLong("long", 0L));
+    assertEquals(0f, table.getFloat("float", 0f), 0.01);
+    assertEquals("default", table.getString("int", "default"));
+    assertNull(table.getStringSet("int", null));
+    assertFalse(table.contains("boolean"));
+    assertFalse(table.contains("int"));
+    assertTrue(table.getAll().isEmpty());
+
+    // Read through the contains check of the persistent hash table
+    final PersistentHashTable persistentHashTable = new PersistentHashTable(
+        RuntimeEnvironment.application, new EncryptedStorageEngine(key));
+    persistentHashTable.switchStorage(TABLE_ID);
+    assertFalse(persistentHashTable.getBoolean("boolean", false));
+    assertEquals(5, persistentHashTable.getInt("int", 5));
+
+    // Encrypted values replace them
+    persistentHashTable.putInt("int", 6);
+    assertEquals(6, table.getInt("int", 0));
+  }
+
+  @Test
+  public void testPersistentHashTableOnEncryptedStorage() throws GeneralSecurityException {
+
+    final PersistentHashTable persistentHashTable = new PersistentHashTable(
+        RuntimeEnvironment.application, new EncryptedStorageEngine(key));
+    persistentHashTable.switchStorage(TABLE_ID);
+
+    persistentHashTable.put("token", "secret");
+    persistentHashTable.putLong("expiration", 10L);
+
+    assertEquals("secret", persistentHashTable.get("token", ""));
+    assertEquals(10L, persistentHashTable.getLong("expiration", 0L));
+    assertNotEquals("secret", storage.getString("token", null));
+  }
+
+}
@@ -0,0 +1,124 @@
+package org.zalando.core.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.SharedPreferences;
+import android.os.Build;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+
+/**
+ * Test for {@link LogStorageEngine}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP, manifest =
+    "src/main/AndroidManifest.xml")
+public class LogStorageEngineTest {
+
+  private File logFile;
+
+  @Before
+  public void setup() {
+
+    logFile = new File(RuntimeEnvironment.application.getFilesDir(), "test_table.log");
+    logFile.delete();
+  }
+
+  @Test
+  public void testSameTableSameInstance() {
+
+    final LogStorageEngine storageEngine = new LogStorageEngine();
+
+    assertSame(storageEngine.open(RuntimeEnvironment.application, "table"),
+        storageEngine.open(RuntimeEnvironment.application, "table"));
+  }
+
+  @Test
+  public void testValuesSurviveReopening() {
+
+    final Set<String> stringSet = new HashSet<>();
+    stringSet.add("first");
+    stringSet.add("second");
+
+    new LogSharedPreferences(logFile).edit()
+        .putBoolean("boolean", true)
+        .putInt("int", 1)
+        .putLong("long", 2L)
+        .putFloat("float", 3f)
+        .putString("string", "value")
+        .putStringSet("set", stringSet)
+        .commit();
+
+    // Replay the log with a fresh instance
+    final SharedPreferences reopened = new LogSharedPreferences(logFile);
+    assertTrue(reopened.getBoolean("boolean", false));
+    assertEquals(1, reopened.getInt("int", 0));
+    assertEquals(2L, reopened.getLong("long", 0L));
+    assertEquals(3f, reopened.getFloat("float", 0f), 0.01);
+    assertEquals("value", reopened.getString("string", null));
+    assertEquals(stringSet, reopened.getStringSet("set", null));
+  }
+
+  @Test
+  public void testRemoveAndClearSurviveReopening() {
+
+    final SharedPreferences table = new LogSharedPreferences(logFile);
+    table.edit().putInt("removed", 1).putInt("kept", 2).commit();
+    table.edit().remove("removed").commit();
+
+    SharedPreferences reopened = new LogSharedPreferences(logFile);
+    assertFalse(reopened.contains("removed"));
+    assertEquals(2, reopened.getInt("kept", 0));
+
+    reopened.edit().clear().putInt("afterClear", 3).commit();
+
+    reopened = new LogSharedPreferences(logFile);
+    assertEquals(Collections.singletonMap("afterClear", 3), reopened.getAll());
+  }
+
+  @Test
+  public void testLogIsCompacted() {
+
+    final SharedPreferences table = new LogSharedPreferences(logFile);
+
+    // Overwrite the same keys way beyond the initial log capacity
+    for (int i = 0; i < 20000; i++) {
+      table.edit().putInt("counter", i).putString("timestamp", "time " + i).apply();
+    }
+
+    // The log keeps the size of the live records instead of growing with every write
+    assertTrue(logFile.length() < 64 * 1024);
+
+    final SharedPreferences reopened = new LogSharedPreferences(logFile);
+    assertEquals(19999, reopened.getInt("counter", 0));
+    assertEquals("time 19999", reopened.getString("timestamp", null));
+    assertEquals(2, reopened.getAll().size());
+  }
+
+  @Test
+  public void testPersistentHashTableOnLog() {
+
+    final PersistentHashTable persistentHashTable = new PersistentHashTable(
+        RuntimeEnvironment.application, new LogStorageEngine());
+    persistentHashTable.switchStorage("testPersistentHashTableOnLog");
+    persistentHashTable.reset();
+
+    assertTrue(persistentHashTable.isEmpty());
+    persistentHashTable.put("key", "value");
+    assertEquals("value", persistentHashTable.get("key", "default"));
+    assertFalse(persistentHashTable.isEmpty());
+  }
+
+}
@@ -4,12 +4,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import android.os.Build;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.TestScheduler;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +34,13 @@ import org.zalando.core.BuildConfig;
     "src/main/AndroidManifest.xml")
 public class PersistentHashTableTest {
 
+  // Keys used by the allocation test, so the test itself does not build strings while measuring
+  private static final String BOOLEAN_KEY = "allocationBoolean";
+  private static final String INT_KEY = "allocationInt";
+  private static final String LONG_KEY = "allocationLong";
+  private static final String FLOAT_KEY = "allocationFloat";
+  private static final String MISSING_KEY = "allocationMissing";
+
   private PersistentHashTable persistentHashTable;
 
   @Before
@@ -141,6 +156,80 @@ public class PersistentHashTableTest {
     assertEquals(persistentHashTable.get(" " + key + "\n", new Date(0)), dateToSave);
   }
 
+  @Test
+  public void testSavingPrimitives() {
+
+    final String key = "testSavingPrimitives";
+
+    // Test default values
+    assertTrue(persistentHashTable.getBoolean(key + "Boolean", true));
+    assertEquals(1, persistentHashTable.getInt(key + "Int", 1));
+    assertEquals(1L, persistentHashTable.getLong(key + "Long", 1L));
+    assertEquals(1f, persistentHashTable.getFloat(key + "Float", 1f), 0.01);
+    assertEquals(1L, persistentHashTable.getDateMillis(key + "Date", 1L));
+
+    // Save values with the keys
+    persistentHashTable.putBoolean(key + "Boolean", false);
+    persistentHashTable.putInt(key + "Int", 2);
+    persistentHashTable.putLong(key + "Long", 2L);
+    persistentHashTable.putFloat(key + "Float", 2f);
+    persistentHashTable.putDateMillis(key + "Date", 2L);
+
+    // Check they are properly saved and readable through the boxed accessors too
+    assertFalse(persistentHashTable.getBoolean(key + "Boolean", true));
+    assertEquals(2, persistentHashTable.getInt(" " + key + "Int\n", 1));
+    assertEquals(2L, persistentHashTable.getLong(key + "Long", 1L));
+    assertEquals(2f, persistentHashTable.getFloat(key + "Float", 1f), 0.01);
+    assertEquals(new Date(2L), persistentHashTable.get(key + "Date", new Date(1L)));
+    assertEquals(2, persistentHashTable.get(key + "Int", 1).intValue());
+
+    // Check dates saved as Date are readable as millis
+    persistentHashTable.put(key + "Date", new Date(3L));
+    assertEquals(3L, persistentHashTable.getDateMillis(key + "Date", 1L));
+  }
+
+  // Only reads are covered, writes box their value as SharedPreferences does
+  @Test
+  public void testPrimitiveReadsDoNotAllocate() {
+
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocationBean =
+        (com.sun.management.ThreadMXBean) threadBean;
+    assumeTrue(allocationBean.isThreadAllocatedMemorySupported()
+        && allocationBean.isThreadAllocatedMemoryEnabled());
+
+    persistentHashTable.putBoolean(BOOLEAN_KEY, true);
+    persistentHashTable.putInt(INT_KEY, 100000);
+    persistentHashTable.putLong(LONG_KEY, 100000L);
+    persistentHashTable.putFloat(FLOAT_KEY, 100000f);
+
+    // Warm up the cache and let the JIT settle
+    long checksum = readPrimitives(10000);
+
+    final long threadId = Thread.currentThread().getId();
+    final long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+    checksum += readPrimitives(100000);
+    final long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    // 500k reads would allocate megabytes if any of them boxed or allocated
+    assertTrue("Reads allocated " + allocated + " bytes", allocated < 16 * 1024);
+    assertTrue(checksum > 0);
+  }
+
+  private long readPrimitives(int times) {
+
+    long checksum = 0;
+    for (int i = 0; i < times; i++) {
+      checksum += persistentHashTable.getBoolean(BOOLEAN_KEY, false) ? 1 : 0;
+      checksum += persistentHashTable.getInt(INT_KEY, 0);
+      checksum += persistentHashTable.getLong(LONG_KEY, 0L);
+      checksum += (long) persistentHashTable.getFloat(FLOAT_KEY, 0f);
+      checksum += persistentHashTable.getDateMillis(MISSING_KEY, 1L);
+    }
+    return checksum;
+  }
+
   @SuppressWarnings("all")
   @Test
   public void testSavingMap() {
@@ -198,6 +287,59 @@ public class PersistentHashTableTest {
         + stringValue + "\n").trim());
   }
 
+  @Test
+  public void testTransaction() {
+
+    final String key = "testTransaction";
+    persistentHashTable.put(key + "Removed", "toRemove");
+
+    persistentHashTable.transaction()
+        .putBoolean(key + "Boolean", true)
+        .putInt(key + "Int", 1)
+        .putString(key + "String", "value")
+        .putDate(key + "Date", new Date(1L))
+        .remove(key + "Removed")
+        .commit();
+
+    assertTrue(persistentHashTable.getBoolean(key + "Boolean", false));
+    assertEquals(1, persistentHashTable.getInt(key + "Int", 0));
+    assertEquals("value", persistentHashTable.get(key + "String", "default"));
+    assertEquals(1L, persistentHashTable.getDateMillis(key + "Date", 0L));
+    assertEquals("default", persistentHashTable.get(key + "Removed", "default"));
+  }
+
+  @Test
+  public void testDebouncedWrites() {
+
+    final String key = "testDebouncedWrites";
+    final TestScheduler scheduler = new TestScheduler();
+    RxJavaPlugins.setIoSchedulerHandler(new Function<Scheduler, Scheduler>() {
+      @Override
+      public Scheduler apply(Scheduler ignored) throws Exception {
+        return scheduler;
+      }
+    });
+
+    try {
+      final PersistentHashTable anotherTable =
+          new PersistentHashTable(RuntimeEnvironment.application);
+      persistentHashTable.setWriteDebounce(1, TimeUnit.SECONDS);
+
+      persistentHashTable.putInt(key, 1);
+      persistentHashTable.transaction().putInt(key, 2).commit();
+
+      // Written values are readable right away, but not written to the storage yet
+      assertEquals(2, persistentHashTable.getInt(key, 0));
+      assertEquals(0, anotherTable.getInt(key, 0));
+
+      // Once the window finishes everything is written at once
+      scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+      assertEquals(2, anotherTable.getInt(key, 0));
+    } finally {
+      RxJavaPlugins.reset();
+    }
+  }
+
   @Test
   public void testReset() {
 
@@ -261,6 +403,27 @@ public class PersistentHashTableTest {
     assertFalse(persistentHashTable.get(key, false));
   }
 
+  @Test
+  public void testReadingValuesWrittenByAnotherTable() {
+
+    final String key = "testReadingValuesWrittenByAnotherTable";
+    final PersistentHashTable anotherTable =
+        new PersistentHashTable(RuntimeEnvironment.application);
+
+    // Read it first so the missing value gets cached
+    assertEquals("default", persistentHashTable.get(key, "default"));
+
+    // Check that a write through another instance is seen by this one
+    anotherTable.put(key, "first");
+    assertEquals("first", persistentHashTable.get(key, "default"));
+    anotherTable.put(key, "second");
+    assertEquals("second", persistentHashTable.get(key, "default"));
+
+    // Check that resetting drops the cached values
+    persistentHashTable.reset();
+    assertEquals("default", persistentHashTable.get(key, "default"));
+  }
+
   @Test
   public void testLoadBoolean() {
 
@@ -291,6 +454,35 @@ public class PersistentHashTableTest {
     subscriber.assertNoErrors();
   }
 
+  @Test
+  public void testLoadSameKeyManyTimes() {
+
+    final String key = "testLoadSameKeyManyTimes";
+
+    TestObserver<Integer> firstSubscriber = persistentHashTable.load(key, 0).test();
+    TestObserver<Integer> secondSubscriber = persistentHashTable.load(key, 0).test();
+    TestObserver<Integer> otherKeySubscriber = persistentHashTable.load(key + "Other", 0).test();
+
+    // Verify both subscribers of the key are notified, and only them
+    persistentHashTable.put(key, 1);
+    firstSubscriber.assertValues(0, 1);
+    secondSubscriber.assertValues(0, 1);
+    otherKeySubscriber.assertValues(0);
+
+    // Verify disposing one of them keeps notifying the other one
+    firstSubscriber.dispose();
+    persistentHashTable.put(key, 2);
+    firstSubscriber.assertValues(0, 1);
+    secondSubscriber.assertValues(0, 1, 2);
+
+    // Verify subscribing again after everybody left still works
+    secondSubscriber.dispose();
+    TestObserver<Integer> thirdSubscriber = persistentHashTable.load(key, 0).test();
+    persistentHashTable.put(key, 3);
+    thirdSubscriber.assertValues(2, 3);
+    thirdSubscriber.assertNoErrors();
+  }
+
   @Test
   public void testLoadString() {
 
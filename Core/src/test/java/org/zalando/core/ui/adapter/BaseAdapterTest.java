@@ -0,0 +1,175 @@
+package org.zalando.core.ui.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Build;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import io.reactivex.Scheduler;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+import org.zalando.core.ui.adapter.viewholder.BaseViewHolder;
+import org.zalando.core.ui.callback.DiffUtilCallback;
+
+/**
+ * Test for {@link BaseAdapter}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class,
+    sdk = Build.VERSION_CODES.LOLLIPOP,
+    manifest = "src/main/AndroidManifest.xml")
+public class BaseAdapterTest {
+
+  private final TestScheduler computationScheduler = new TestScheduler();
+  private final List<Throwable> errors = new ArrayList<>();
+  private TestAdapter adapter;
+
+  @Before
+  public void setUp() {
+
+    RxJavaPlugins.setComputationSchedulerHandler(new Function<Scheduler, Scheduler>() {
+      @Override
+      public Scheduler apply(Scheduler scheduler) throws Exception {
+
+        return computationScheduler;
+      }
+    });
+    RxAndroidPlugins.setMainThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+      @Override
+      public Scheduler apply(Scheduler scheduler) throws Exception {
+
+        return Schedulers.trampoline();
+      }
+    });
+    // Errors not handled by the adapter end here
+    RxJavaPlugins.setErrorHandler(new Consumer<Throwable>() {
+      @Override
+      public void accept(Throwable throwable) throws Exception {
+
+        errors.add(throwable);
+      }
+    });
+    adapter = new TestAdapter(new ArrayList<>(Arrays.asList("a", "b")));
+  }
+
+  @After
+  public void tearDown() {
+
+    RxJavaPlugins.reset();
+    RxAndroidPlugins.reset();
+  }
+
+  @Test
+  public void testNewerSwapWins() {
+
+    final TestComparator olderComparator = new TestComparator();
+    adapter.swapItemsAsync(Arrays.asList("c"), olderComparator);
+    adapter.swapItemsAsync(Arrays.asList("d", "e"), new TestComparator());
+    computationScheduler.triggerActions();
+
+    assertEquals(Arrays.asList("d", "e"), adapter.items);
+    assertEquals(2, adapter.getItemCount());
+    // The older swap was never computed
+    assertEquals(0, olderComparator.calls);
+  }
+
+  @Test
+  public void testSyncMutationDiscardsPendingSwap() {
+
+    adapter.swapItemsAsync(Arrays.asList("c"), new TestComparator());
+    adapter.addItem("x", 0);
+    computationScheduler.triggerActions();
+
+    assertEquals(Arrays.asList("x", "a", "b"), adapter.items);
+  }
+
+  @Test
+  public void testDetachCancels() {
+
+    final RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+    recyclerView.setLayoutManager(new LinearLayoutManager(RuntimeEnvironment.application));
+    recyclerView.setAdapter(adapter);
+    final TestComparator comparator = new TestComparator();
+    adapter.swapItemsAsync(Arrays.asList("c"), comparator);
+
+    recyclerView.setAdapter(null);
+    computationScheduler.triggerActions();
+
+    assertEquals(Arrays.asList("a", "b"), adapter.items);
+    assertEquals(0, comparator.calls);
+  }
+
+  @Test
+  public void testFailedSwapKeepsItems() {
+
+    final TestComparator failingComparator = new TestComparator() {
+      @Override
+      public boolean areItemsTheSame(String oldItem, String newItem) {
+
+        throw new IllegalStateException("Unable to compare");
+      }
+    };
+    adapter.swapItemsAsync(Arrays.asList("a", "c"), failingComparator);
+    computationScheduler.triggerActions();
+
+    assertEquals(Arrays.asList("a", "b"), adapter.items);
+    assertTrue(errors.isEmpty());
+
+    // Later swaps are applied
+    adapter.swapItemsAsync(Arrays.asList("c"), new TestComparator());
+    computationScheduler.triggerActions();
+    assertEquals(Arrays.asList("c"), adapter.items);
+  }
+
+  private static class TestComparator implements DiffUtilCallback.DiffUtilComparator<String> {
+
+    private int calls;
+
+    @Override
+    public boolean areItemsTheSame(String oldItem, String newItem) {
+
+      calls++;
+      return oldItem.equals(newItem);
+    }
+
+    @Override
+    public Object getChangePayload(String oldItem, String newItem) {
+
+      return null;
+    }
+  }
+
+  private static class TestAdapter extends BaseAdapter<String, BaseViewHolder<String>> {
+
+    TestAdapter(List<String> items) {
+
+      super(items);
+    }
+
+    @Override
+    public BaseViewHolder<String> onCreateViewHolder(ViewGroup parent, int viewType) {
+
+      return new BaseViewHolder<String>(new View(parent.getContext())) {
+      };
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+package org.zalando.core.ui.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.os.Build;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import io.reactivex.Single;
+import io.reactivex.subjects.PublishSubject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.zalando.core.BuildConfig;
+import org.zalando.core.ui.adapter.viewholder.BaseViewHolder;
+
+/**
+ * Test for {@link PagedAdapter}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class,
+    sdk = Build.VERSION_CODES.LOLLIPOP,
+    manifest = "src/main/AndroidManifest.xml")
+public class PagedAdapterTest {
+
+  // Ten items are visible at once
+  private static final int LIST_HEIGHT = 100;
+  private static final int ITEM_HEIGHT = 10;
+  private static final int MAX_SETTLE_ROUNDS = 20;
+
+  private RecyclerView recyclerView;
+  private TestLoader loader;
+  private TestAdapter adapter;
+
+  @Before
+  public void setUp() {
+
+    final Activity activity = Robolectric.setupActivity(Activity.class);
+    recyclerView = new RecyclerView(activity);
+    recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+  }
+
+  @Test
+  public void testLoadsPagesAroundAttachedPositions() {
+
+    setUpAdapter(100, 5, 3, 5);
+    settle();
+
+    // Pages of the ten visible positions and the ones within the prefetch distance
+    assertEquals(Arrays.asList(0, 1, 2), loader.requests);
+    assertAttachedBound();
+    assertEquals("14", adapter.getItem(14));
+    assertNull(adapter.getItem(15));
+  }
+
+  @Test
+  public void testEvictsPagesAwayFromAttachedPositions() {
+
+    setUpAdapter(100, 5, 3, 5);
+    settle();
+
+    scrollTo(50);
+
+    assertAttachedBound();
+    assertNull(adapter.getItem(0));
+    assertNotNull(adapter.getItem(50));
+    assertNotNull(adapter.getItem(59));
+    assertLoadedOnce();
+  }
+
+  @Test
+  public void testAttachedPagesAreNotEvicted() {
+
+    // Five pages are visible, more than the window holds
+    setUpAdapter(100, 2, 1, 0);
+    settle();
+
+    assertAttachedBound();
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), loader.requests);
+
+    // Once they are not attached, the window shrinks back
+    scrollTo(80);
+    assertAttachedBound();
+    assertNull(adapter.getItem(0));
+    assertLoadedOnce();
+  }
+
+  @Test
+  public void testEndOfFeed() {
+
+    setUpAdapter(12, 5, 3, 5);
+    settle();
+
+    // The short last page ends the feed, no placeholders follow it
+    assertEquals(12, adapter.getItemCount());
+    assertEquals(Arrays.asList(0, 1, 2), loader.requests);
+    assertEquals("11", adapter.getItem(11));
+    assertAttachedBound();
+  }
+
+  @Test
+  public void testFailedPage() {
+
+    setUpAdapter(100, 5, 3, 5);
+    layout();
+    loader.fail(0);
+
+    assertEquals(Collections.singletonList(0), adapter.failedPages);
+    // Binding its positions again does not load it
+    adapter.notifyDataSetChanged();
+    layout();
+    assertEquals(Collections.singletonList(0), loader.requests);
+    assertNull(adapter.getItem(0));
+
+    adapter.retry();
+    settle();
+    assertEquals(Arrays.asList(0, 0, 1, 2), loader.requests);
+    assertAttachedBound();
+  }
+
+  private void setUpAdapter(int itemCount, int pageSize, int maxPagesInMemory,
+      int prefetchDistance) {
+
+    loader = new TestLoader(itemCount, pageSize);
+    adapter = new TestAdapter(loader, pageSize, maxPagesInMemory, prefetchDistance);
+    recyclerView.setAdapter(adapter);
+  }
+
+  private void layout() {
+
+    recyclerView.measure(View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(LIST_HEIGHT, View.MeasureSpec.EXACTLY));
+    recyclerView.layout(0, 0, 100, LIST_HEIGHT);
+  }
+
+  /**
+   * Lays the list out and delivers the requested pages until no more pages are requested
+   */
+  private void settle() {
+
+    layout();
+    for (int i = 0; i < MAX_SETTLE_ROUNDS; i++) {
+      if (!loader.deliverAll()) {
+        return;
+      }
+      ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+      layout();
+    }
+    throw new AssertionError("Pages kept being requested: " + loader.requests);
+  }
+
+  /**
+   * Scrolls until the given position is the first visible one, as far as the loaded pages allow
+   * every time
+   *
+   * @param position {@link Integer} with the position
+   */
+  private void scrollTo(int position) {
+
+    final LinearLayoutManager layoutManager =
+        (LinearLayoutManager) recyclerView.getLayoutManager();
+    for (int i = 0; i < MAX_SETTLE_ROUNDS; i++) {
+      layoutManager.scrollToPositionWithOffset(
+          Math.min(position, adapter.getItemCount() - 1), 0);
+      settle();
+      if (layoutManager.findFirstVisibleItemPosition() == position) {
+        return;
+      }
+    }
+    throw new AssertionError("Unable to scroll to " + position);
+  }
+
+  private void assertAttachedBound() {
+
+    assertTrue(recyclerView.getChildCount() > 0);
+    for (int i = 0; i < recyclerView.getChildCount(); i++) {
+      final RecyclerView.ViewHolder holder =
+          recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+      assertEquals(String.valueOf(holder.getLayoutPosition()),
+          ((TestHolder) holder).getModel());
+    }
+  }
+
+  private void assertLoadedOnce() {
+
+    assertEquals(new ArrayList<>(new LinkedHashSet<>(loader.requests)),
+        loader.requests);
+  }
+
+  private static class TestLoader implements PagedAdapter.PageLoader<String> {
+
+    private final int itemCount;
+    private final int pageSize;
+    private final List<Integer> requests = new ArrayList<>();
+    private final Map<Integer, PublishSubject<List<String>>> pendingPages =
+        new LinkedHashMap<>();
+
+    TestLoader(int itemCount, int pageSize) {
+
+      this.itemCount = itemCount;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public Single<List<String>> loadPage(int page) {
+
+      requests.add(page);
+      final PublishSubject<List<String>> subject = PublishSubject.create();
+      pendingPages.put(page, subject);
+      return subject.firstOrError();
+    }
+
+    /**
+     * Delivers the pages requested so far
+     *
+     * @return {@link Boolean} indicating if any page was requested
+     */
+    boolean deliverAll() {
+
+      if (pendingPages.isEmpty()) {
+        return false;
+      }
+      final Map<Integer, PublishSubject<List<String>>> delivered =
+          new LinkedHashMap<>(pendingPages);
+      pendingPages.clear();
+      for (Map.Entry<Integer, PublishSubject<List<String>>> entry : delivered.entrySet()) {
+        final List<String> items = new ArrayList<>();
+        final int end = Math.min(itemCount, (entry.getKey() + 1) * pageSize);
+        for (int i = entry.getKey() * pageSize; i < end; i++) {
+          items.add(String.valueOf(i));
+        }
+        entry.getValue().onNext(items);
+      }
+      return true;
+    }
+
+    void fail(int page) {
+
+      pendingPages.remove(page).onError(new IOException("offline"));
+      ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+  }
+
+  private static class TestAdapter extends PagedAdapter<String, TestHolder> {
+
+    private final List<Integer> failedPages = new ArrayList<>();
+
+    TestAdapter(TestLoader loader, int pageSize, int maxPagesInMemory, int prefetchDistance) {
+
+      super(loader, pageSize, maxPagesInMemory, prefetchDistance);
+    }
+
+    @Override
+    public TestHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+
+      final View view = new View(parent.getContext());
+      view.setLayoutParams(
+          new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+      return new TestHolder(view);
+    }
+
+    @Override
+    protected void onPageFailed(int page, Throwable throwable) {
+
+      super.onPageFailed(page, throwable);
+      failedPages.add(page);
+    }
+  }
+
+  private static class TestHolder extends BaseViewHolder<String> {
+
+    TestHolder(View itemView) {
+
+      super(itemView);
+    }
+  }
+
+}
@@ -0,0 +1,182 @@
+package org.zalando.core.ui.adapter;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.os.Build;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+import org.zalando.core.ui.adapter.viewholder.BaseViewHolder;
+
+/**
+ * Test for {@link ViewHolderPools}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class,
+    sdk = Build.VERSION_CODES.LOLLIPOP,
+    manifest = "src/main/AndroidManifest.xml")
+public class ViewHolderPoolsTest {
+
+  private ViewHolderPools pools;
+  private ActivityController<Activity> activityController;
+  private Activity activity;
+
+  @Before
+  public void setUp() {
+
+    pools = new ViewHolderPools(RuntimeEnvironment.application);
+    activityController = Robolectric.buildActivity(Activity.class).create();
+    activity = activityController.get();
+  }
+
+  @Test
+  public void testAdaptersWithSameViewTypeDoNotShareHolders() {
+
+    final RecyclerView firstList = list(new FirstAdapter());
+    final RecyclerView secondList = list(new SecondAdapter());
+    final ViewHolderPool firstPool = pools.attach(firstList);
+    final ViewHolderPool secondPool = pools.attach(secondList);
+    assertNotSame(firstPool, secondPool);
+    // Another list of the same adapter class shares the pool, and keeps it when the first one
+    // drops its adapter
+    assertSame(firstPool, pools.attach(list(new FirstAdapter())));
+
+    // The holders of the first list are recycled, the second list must not get them
+    layout(firstList);
+    firstList.setAdapter(null);
+    layout(secondList);
+
+    assertTrue(secondList.getChildCount() > 0);
+    for (int i = 0; i < secondList.getChildCount(); i++) {
+      assertTrue(secondList.getChildViewHolder(secondList.getChildAt(i)) instanceof SecondHolder);
+    }
+    final RecyclerView.ViewHolder recycled = firstPool.getRecycledView(0);
+    assertTrue(recycled instanceof FirstHolder);
+    assertNull(secondPool.getRecycledView(0));
+  }
+
+  @Test
+  public void testDropsHoldersOfDestroyedActivity() {
+
+    final RecyclerView recyclerView = list(new FirstAdapter());
+    final ViewHolderPool pool = pools.attach(recyclerView);
+    pool.putRecycledView(recyclerView.getAdapter().createViewHolder(recyclerView, 0));
+
+    activityController.destroy();
+    assertNull(pool.getRecycledView(0));
+
+    // Recycled after the activity was destroyed, such as in setAdapter(null) after onDestroy
+    pool.putRecycledView(recyclerView.getAdapter().createViewHolder(recyclerView, 0));
+    assertNull(pool.getRecycledView(0));
+  }
+
+  @Test
+  public void testKeepsHoldersOfOtherActivities() {
+
+    final RecyclerView recyclerView = list(new FirstAdapter());
+    final ViewHolderPool pool = pools.attach(recyclerView);
+    final RecyclerView.ViewHolder holder =
+        recyclerView.getAdapter().createViewHolder(recyclerView, 0);
+    pool.putRecycledView(holder);
+
+    Robolectric.buildActivity(Activity.class).create().destroy();
+
+    assertSame(holder, pool.getRecycledView(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPreInflateNeedsItsPool() {
+
+    final RecyclerView recyclerView = list(new FirstAdapter());
+    pools.getPool(FirstAdapter.class)
+        .preInflate(recyclerView, 0, android.R.layout.simple_list_item_1, 1);
+  }
+
+  private RecyclerView list(RecyclerView.Adapter adapter) {
+
+    final RecyclerView recyclerView = new RecyclerView(activity);
+    recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+    recyclerView.setAdapter(adapter);
+    return recyclerView;
+  }
+
+  private static void layout(RecyclerView recyclerView) {
+
+    recyclerView.measure(View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+    recyclerView.layout(0, 0, 100, 100);
+  }
+
+  private static View itemView(ViewGroup parent) {
+
+    final View view = new View(parent.getContext());
+    view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 10));
+    return view;
+  }
+
+  private static List<String> items() {
+
+    return Arrays.asList("a", "b", "c");
+  }
+
+  private static class FirstAdapter extends BaseAdapter<String, FirstHolder> {
+
+    FirstAdapter() {
+
+      super(items());
+    }
+
+    @Override
+    public FirstHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+
+      return new FirstHolder(itemView(parent));
+    }
+  }
+
+  private static class SecondAdapter extends BaseAdapter<Integer, SecondHolder> {
+
+    SecondAdapter() {
+
+      super(Arrays.asList(1, 2, 3));
+    }
+
+    @Override
+    public SecondHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+
+      return new SecondHolder(itemView(parent));
+    }
+  }
+
+  private static class FirstHolder extends BaseViewHolder<String> {
+
+    FirstHolder(View itemView) {
+
+      super(itemView);
+    }
+  }
+
+  private static class SecondHolder extends BaseViewHolder<Integer> {
+
+    SecondHolder(View itemView) {
+
+      super(itemView);
+    }
+  }
+
+}
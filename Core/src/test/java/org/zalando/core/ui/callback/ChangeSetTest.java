@@ -0,0 +1,151 @@
+package org.zalando.core.ui.callback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Test;
+
+/**
+ * Test for {@link ChangeSet}
+ */
+public class ChangeSetTest {
+
+  private static final ChangeSet.Fields<Item> FIELDS = new ChangeSet.Fields<Item>()
+      .add("id", new ChangeSet.Field<Item>() {
+        @Override
+        public Object get(Item item) {
+
+          return item.id;
+        }
+      })
+      .add("name", new ChangeSet.Field<Item>() {
+        @Override
+        public Object get(Item item) {
+
+          return item.name;
+        }
+      })
+      .add("price", new ChangeSet.Field<Item>() {
+        @Override
+        public Object get(Item item) {
+
+          return item.price;
+        }
+      })
+      .add("tags", new ChangeSet.Field<Item>() {
+        @Override
+        public Object get(Item item) {
+
+          return item.tags;
+        }
+      });
+
+  @Test
+  public void testBetween() {
+
+    final ChangeSet changeSet = FIELDS.between(new Item(1, "name", 10, "a"),
+        new Item(1, "other name", 10, "b"));
+
+    assertTrue(changeSet.contains("name"));
+    assertFalse(changeSet.contains("id"));
+    assertFalse(changeSet.contains("price"));
+    // Fields not declared are ignored
+    assertFalse(changeSet.contains("label"));
+    assertEquals(Collections.singleton("name"), changeSet.getFields());
+  }
+
+  @Test
+  public void testBetweenWithNullFields() {
+
+    final ChangeSet changeSet = FIELDS.between(new Item(1, null, 10, null),
+        new Item(1, "name", 10, null));
+
+    assertEquals(Collections.singleton("name"), changeSet.getFields());
+    assertTrue(FIELDS.between(new Item(1, null, 10, null), new Item(1, null, 10, null))
+        .getFields().isEmpty());
+  }
+
+  @Test
+  public void testBetweenComparesArrayContents() {
+
+    final Item item = new Item(1, "name", 10, "a");
+    final Item sameTags = new Item(1, "name", 10, "a");
+    sameTags.tags = new String[][]{{"new"}, {"sale"}};
+
+    assertTrue(FIELDS.between(item, sameTags).getFields().isEmpty());
+    sameTags.tags[1][0] = "sold out";
+    assertEquals(Collections.singleton("tags"), FIELDS.between(item, sameTags).getFields());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFieldsAddedOnce() {
+
+    new ChangeSet.Fields<Item>().add("id", new ChangeSet.Field<Item>() {
+      @Override
+      public Object get(Item item) {
+
+        return item.id;
+      }
+    }).add("id", new ChangeSet.Field<Item>() {
+      @Override
+      public Object get(Item item) {
+
+        return item.name;
+      }
+    });
+  }
+
+  @Test
+  public void testMerge() {
+
+    final ChangeSet first = new ChangeSet(Collections.singleton("name"));
+    final ChangeSet second = new ChangeSet(Collections.singleton("price"));
+
+    assertEquals(first, ChangeSet.merge(Collections.<Object>singletonList(first)));
+    assertEquals(new ChangeSet(new HashSet<>(Arrays.asList("name", "price"))),
+        ChangeSet.merge(Arrays.<Object>asList(first, second)));
+    assertNull(ChangeSet.merge(Arrays.<Object>asList(first, "payload")));
+  }
+
+  @Test
+  public void testComparatorPayload() {
+
+    final ChangeSetDiffUtilComparator<Item> comparator =
+        new ChangeSetDiffUtilComparator<Item>(FIELDS) {
+          @Override
+          public boolean areItemsTheSame(Item oldItem, Item newItem) {
+
+            return oldItem.id == newItem.id;
+          }
+        };
+
+    assertEquals(new ChangeSet(Collections.singleton("price")),
+        comparator.getChangePayload(new Item(1, "name", 10, "a"), new Item(1, "name", 20, "a")));
+    // Only fields not declared changed, a full bind is needed
+    assertNull(comparator.getChangePayload(new Item(1, "name", 10, "a"),
+        new Item(1, "name", 10, "b")));
+  }
+
+  private static class Item {
+
+    private final long id;
+    private final String name;
+    private final int price;
+    private final String label;
+    private String[][] tags = {{"new"}, {"sale"}};
+
+    Item(long id, String name, int price, String label) {
+
+      this.id = id;
+      this.name = name;
+      this.price = price;
+      this.label = label;
+    }
+  }
+
+}
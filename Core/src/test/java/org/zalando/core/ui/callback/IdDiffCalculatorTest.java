@@ -0,0 +1,227 @@
+package org.zalando.core.ui.callback;
+
+import static org.junit.Assert.assertEquals;
+
+import android.support.v7.util.ListUpdateCallback;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test for {@link IdDiffCalculator}
+ */
+public class IdDiffCalculatorTest {
+
+  @Test
+  public void testLinearDiff() {
+
+    final List<Item> oldList = items("1a", "2a", "3a", "4a", "5a");
+    final List<Item> newList = items("0a", "1a", "3b", "4a", "6a", "7a");
+    final RecordingCallback callback = dispatch(oldList, newList, new ItemComparator(false));
+
+    assertEquals(newList, callback.apply(newList));
+    assertEquals(1, callback.changes);
+    assertEquals(0, callback.moves);
+  }
+
+  @Test
+  public void testMovesWithoutDetection() {
+
+    final List<Item> oldList = items("1a", "2a", "3a", "4a");
+    final List<Item> newList = items("4a", "2a", "1a", "3b");
+    final RecordingCallback callback = dispatch(oldList, newList, new ItemComparator(false));
+
+    assertEquals(newList, callback.apply(newList));
+    assertEquals(0, callback.moves);
+  }
+
+  @Test
+  public void testKeepsLongestRunInOrder() {
+
+    final List<Item> oldList = items("1a", "2a", "3a", "4a");
+    final List<Item> newList = items("4a", "1a", "2a", "3a");
+    final RecordingCallback callback = dispatch(oldList, newList, new ItemComparator(false));
+
+    assertEquals(newList, callback.apply(newList));
+    // Only the last item is removed and inserted again
+    assertEquals(1, callback.removals);
+    assertEquals(1, callback.insertions);
+    assertEquals(0, callback.changes);
+  }
+
+  @Test
+  public void testMovesWithDetection() {
+
+    final List<Item> oldList = items("1a", "2a", "3a", "4a");
+    final List<Item> newList = items("4a", "1a", "2a", "3a");
+    final RecordingCallback callback = dispatch(oldList, newList, new ItemComparator(true));
+
+    assertEquals(newList, callback.apply(newList));
+    assertEquals(1, callback.moves);
+  }
+
+  @Test
+  public void testRandomLists() {
+
+    final Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      final List<Item> oldList = randomItems(random);
+      final List<Item> newList = randomItems(random);
+      if (round % 2 == 0) {
+        Collections.shuffle(newList, random);
+      }
+      for (boolean detectMoves : new boolean[]{false, true}) {
+        final RecordingCallback callback = dispatch(oldList, newList,
+            new ItemComparator(detectMoves));
+        assertEquals(newList, callback.apply(newList));
+      }
+    }
+  }
+
+  private static RecordingCallback dispatch(List<Item> oldList, List<Item> newList,
+      ItemComparator comparator) {
+
+    final RecordingCallback callback = new RecordingCallback(oldList);
+    IdDiffCalculator.calculateDiff(oldList, newList, comparator).dispatchUpdatesTo(callback);
+    return callback;
+  }
+
+  private static List<Item> randomItems(Random random) {
+
+    final List<Item> items = new ArrayList<>();
+    for (int id = 0; id < 30; id++) {
+      if (random.nextInt(3) > 0) {
+        items.add(new Item(id, random.nextBoolean() ? "a" : "b"));
+      }
+    }
+    return items;
+  }
+
+  private static List<Item> items(String... values) {
+
+    final List<Item> items = new ArrayList<>();
+    for (String value : values) {
+      items.add(new Item(Long.parseLong(value.substring(0, 1)), value.substring(1)));
+    }
+    return items;
+  }
+
+  /**
+   * Replays the updates on a copy of the old list, filling inserted and changed positions with the
+   * items the new list has in the end
+   */
+  private static class RecordingCallback implements ListUpdateCallback {
+
+    private final List<Object> list;
+    private int insertions;
+    private int removals;
+    private int changes;
+    private int moves;
+
+    RecordingCallback(List<Item> oldList) {
+
+      list = new ArrayList<Object>(oldList);
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+
+      list.addAll(position, Collections.nCopies(count, null));
+      insertions += count;
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+
+      list.subList(position, position + count).clear();
+      removals += count;
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+
+      list.add(toPosition, list.remove(fromPosition));
+      moves++;
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+
+      for (int i = position; i < position + count; i++) {
+        list.set(i, null);
+        changes++;
+      }
+    }
+
+    List<Item> apply(List<Item> newList) {
+
+      assertEquals(newList.size(), list.size());
+      final List<Item> result = new ArrayList<>();
+      for (int i = 0; i < list.size(); i++) {
+        // Untouched positions must already hold the final item
+        result.add(list.get(i) != null ? (Item) list.get(i) : newList.get(i));
+      }
+      return result;
+    }
+  }
+
+  private static class ItemComparator extends IdDiffUtilComparator<Item> {
+
+    private final boolean detectMoves;
+
+    ItemComparator(boolean detectMoves) {
+
+      this.detectMoves = detectMoves;
+    }
+
+    @Override
+    public long getId(Item item) {
+
+      return item.id;
+    }
+
+    @Override
+    public boolean detectMoves() {
+
+      return detectMoves;
+    }
+  }
+
+  private static class Item {
+
+    private final long id;
+    private final String content;
+
+    Item(long id, String content) {
+
+      this.id = id;
+      this.content = content;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+      if (!(o instanceof Item)) {
+        return false;
+      }
+      final Item other = (Item) o;
+      return id == other.id && content.equals(other.content);
+    }
+
+    @Override
+    public int hashCode() {
+
+      return Arrays.hashCode(new Object[]{id, content});
+    }
+
+    @Override
+    public String toString() {
+
+      return id + content;
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package org.zalando.core.utils;
+
+import android.os.Build;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.zalando.core.BuildConfig;
+
+/**
+ * Benchmark for {@link SecurityUtils}, only run with -Pbenchmark. Reports the timings without
+ * asserting on them
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP, manifest =
+    "src/main/AndroidManifest.xml")
+public class SecurityUtilsBenchmark {
+
+  private static final String TEXT_TO_ENCRYPT = "Text to encrypt!";
+  private static final int WARM_UP_ROUND_TRIPS = 2000;
+  private static final int ROUND_TRIPS = 10000;
+
+  /**
+   * Measures the throughput of encrypting and decrypting small values with the engines reused by
+   * {@link SecurityUtils.Cryptor}, and with new engines for every value as before they were reused
+   */
+  @Test
+  public void benchmarkReusedEngines() throws GeneralSecurityException,
+      UnsupportedEncodingException {
+
+    SecurityUtils.Cryptor cryptor = SecurityUtils.createCryptor(SecurityUtils.encrypt("").second);
+    KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+    keyGenerator.init(128);
+    SecretKey confidentialityKey = keyGenerator.generateKey();
+    byte[] integrityKeyBytes = new byte[32];
+    new SecureRandom().nextBytes(integrityKeyBytes);
+    SecretKey integrityKey = new SecretKeySpec(integrityKeyBytes, "HmacSHA256");
+
+    // Let the JIT settle
+    long checksum = roundTripsWithReusedEngines(cryptor, WARM_UP_ROUND_TRIPS)
+        + roundTripsWithNewEngines(confidentialityKey, integrityKey, WARM_UP_ROUND_TRIPS);
+
+    long start = System.nanoTime();
+    checksum += roundTripsWithReusedEngines(cryptor, ROUND_TRIPS);
+    final long reusedNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    checksum += roundTripsWithNewEngines(confidentialityKey, integrityKey, ROUND_TRIPS);
+    final long newNanos = System.nanoTime() - start;
+
+    // The reused engines also encode in Base64, which the new ones skip
+    System.out.println(String.format("%d round trips: reused engines %d ms, new engines %d ms"
+        + " (checksum %d)", ROUND_TRIPS, reusedNanos / 1000000, newNanos / 1000000, checksum));
+  }
+
+  private static long roundTripsWithReusedEngines(SecurityUtils.Cryptor cryptor, int times)
+      throws GeneralSecurityException, UnsupportedEncodingException {
+
+    long checksum = 0;
+    for (int i = 0; i < times; i++) {
+      checksum += cryptor.decrypt(cryptor.encrypt(TEXT_TO_ENCRYPT)).length();
+    }
+    return checksum;
+  }
+
+  /**
+   * Encrypts and decrypts the text as the engines did before being reused: a new {@link
+   * SecureRandom}, {@link Cipher} and {@link Mac} for every operation
+   */
+  private static long roundTripsWithNewEngines(SecretKey confidentialityKey,
+      SecretKey integrityKey, int times) throws GeneralSecurityException,
+      UnsupportedEncodingException {
+
+    long checksum = 0;
+    for (int i = 0; i < times; i++) {
+      byte[] iv = new byte[16];
+      new SecureRandom().nextBytes(iv);
+      Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+      cipher.init(Cipher.ENCRYPT_MODE, confidentialityKey, new IvParameterSpec(iv));
+      byte[] cipherText = cipher.doFinal(TEXT_TO_ENCRYPT.getBytes("UTF-8"));
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(integrityKey);
+      mac.update(iv);
+      byte[] computedMac = mac.doFinal(cipherText);
+
+      mac = Mac.getInstance("HmacSHA256");
+      mac.init(integrityKey);
+      mac.update(iv);
+      if (!Arrays.equals(computedMac, mac.doFinal(cipherText))) {
+        throw new GeneralSecurityException("MAC does not match");
+      }
+      cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+      cipher.init(Cipher.DECRYPT_MODE, confidentialityKey, new IvParameterSpec(iv));
+      checksum += new String(cipher.doFinal(cipherText), "UTF-8").length();
+    }
+    return checksum;
+  }
+
+}
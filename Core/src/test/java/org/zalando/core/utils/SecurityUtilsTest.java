@@ -3,13 +3,24 @@ package org.zalando.core.utils;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 import android.os.Build;
 import android.util.Base64;
 import android.util.Pair;
+import io.reactivex.Single;
 import org.zalando.core.BuildConfig;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -59,6 +70,24 @@ public class SecurityUtilsTest {
     assertEquals(initialKey, secondKey);
   }
 
+  @Test
+  public void testGenerateKeyAsyncSameAsSync() throws GeneralSecurityException {
+
+    String password = "Password to use";
+
+    SecurityUtils.wipeDerivedKeys();
+    Single<String> first = SecurityUtils.generateKeyAsync(password);
+    Single<String> second = SecurityUtils.generateKeyAsync(password);
+
+    // Check that concurrent derivations and the synchronous derivation agree
+    assertEquals(first.blockingGet(), SecurityUtils.generateKey(password));
+    assertEquals(second.blockingGet(), SecurityUtils.generateKey(password));
+
+    SecurityUtils.wipeDerivedKeys();
+    assertEquals(SecurityUtils.generateKeyAsync(password).blockingGet(),
+        SecurityUtils.generateKey(password));
+  }
+
   @Test
   public void testEncryptionDecryptionRandomKey() throws GeneralSecurityException,
       UnsupportedEncodingException {
@@ -74,6 +103,142 @@ public class SecurityUtilsTest {
         textToEncrypt);
   }
 
+  @Test
+  public void testCryptorCompatibleWithEncryption() throws GeneralSecurityException,
+      UnsupportedEncodingException {
+
+    String textToEncrypt = "Text to encrypt!";
+
+    Pair<String, String> encryptionDuple = SecurityUtils.encrypt(textToEncrypt);
+    SecurityUtils.Cryptor cryptor = SecurityUtils.createCryptor(encryptionDuple.second);
+
+    // Check that values go both ways between the cryptor and the one-shot methods
+    assertEquals(cryptor.decrypt(encryptionDuple.first), textToEncrypt);
+    assertEquals(SecurityUtils.decrypt(cryptor.encrypt(textToEncrypt), encryptionDuple.second),
+        textToEncrypt);
+    // Check that the reused engines keep working for many values
+    for (int i = 0; i < 100; i++) {
+      assertEquals(cryptor.decrypt(cryptor.encrypt(textToEncrypt + i)), textToEncrypt + i);
+    }
+  }
+
+  @Test
+  public void testBinaryFormat() throws GeneralSecurityException, UnsupportedEncodingException {
+
+    String textToEncrypt = "Text to encrypt!";
+
+    Pair<String, String> encryptionDuple = SecurityUtils.encrypt(textToEncrypt);
+    SecurityUtils.Cryptor cryptor = SecurityUtils.createCryptor(encryptionDuple.second);
+
+    // Check that binary values can be decrypted
+    assertEquals(cryptor.decrypt(ByteBuffer.wrap(cryptor.encryptToBytes(textToEncrypt))),
+        textToEncrypt);
+    // Check that values in Base64 format can be migrated without the key
+    assertEquals(cryptor.decrypt(ByteBuffer.wrap(SecurityUtils.toBinaryFormat(
+        encryptionDuple.first))), textToEncrypt);
+
+    // Check that many values can be read from the same buffer
+    byte[] first = cryptor.encryptToBytes("first");
+    byte[] second = cryptor.encryptToBytes("second");
+    ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+    buffer.put(first).put(second);
+    buffer.position(0).limit(first.length);
+    assertEquals(cryptor.decrypt(buffer), "first");
+    buffer.limit(buffer.capacity());
+    assertEquals(cryptor.decrypt(buffer), "second");
+  }
+
+  @Test(expected = GeneralSecurityException.class)
+  public void testBinaryFormatTampered() throws GeneralSecurityException,
+      UnsupportedEncodingException {
+
+    SecurityUtils.Cryptor cryptor = SecurityUtils.createCryptor(SecurityUtils.encrypt("").second);
+
+    byte[] encrypted = cryptor.encryptToBytes("Text to encrypt!");
+    encrypted[encrypted.length - 1] ^= 1;
+    cryptor.decrypt(ByteBuffer.wrap(encrypted));
+  }
+
+  @Test
+  public void testStreamEncryptionDecryption() throws GeneralSecurityException, IOException {
+
+    byte[] payload = new byte[1024 * 1024 + 7];
+    new Random(42).nextBytes(payload);
+    String key = SecurityUtils.encrypt("").second;
+
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    SecurityUtils.encrypt(new ByteArrayInputStream(payload), encrypted, key);
+    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+    SecurityUtils.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, key);
+
+    assertTrue(Arrays.equals(payload, decrypted.toByteArray()));
+  }
+
+  @Test
+  public void testStreamFormatCompatibleWithStrings() throws GeneralSecurityException,
+      IOException {
+
+    String textToEncrypt = "Text to encrypt!";
+    String key = SecurityUtils.encrypt("").second;
+
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    SecurityUtils.encrypt(new ByteArrayInputStream(textToEncrypt.getBytes("UTF-8")), encrypted,
+        key);
+
+    // Stream is iv | ciphertext | mac, strings are base64(iv):base64(mac):base64(ciphertext)
+    byte[] bytes = encrypted.toByteArray();
+    byte[] iv = Arrays.copyOfRange(bytes, 0, 16);
+    byte[] cipherText = Arrays.copyOfRange(bytes, 16, bytes.length - 32);
+    byte[] mac = Arrays.copyOfRange(bytes, bytes.length - 32, bytes.length);
+    String encryptedText = Base64.encodeToString(iv, Base64.NO_WRAP) + ":"
+        + Base64.encodeToString(mac, Base64.NO_WRAP) + ":"
+        + Base64.encodeToString(cipherText, Base64.NO_WRAP);
+
+    assertEquals(SecurityUtils.decrypt(encryptedText, key), textToEncrypt);
+  }
+
+  @Test
+  public void testFileChannelEncryptionDecryption() throws GeneralSecurityException,
+      IOException {
+
+    byte[] payload = new byte[100 * 1024 + 3];
+    new Random(42).nextBytes(payload);
+    String key = SecurityUtils.encrypt("").second;
+    File plainFile = File.createTempFile("plain", null);
+    File encryptedFile = File.createTempFile("encrypted", null);
+    File decryptedFile = File.createTempFile("decrypted", null);
+    plainFile.deleteOnExit();
+    encryptedFile.deleteOnExit();
+    decryptedFile.deleteOnExit();
+
+    try (RandomAccessFile plain = new RandomAccessFile(plainFile, "rw");
+        RandomAccessFile encrypted = new RandomAccessFile(encryptedFile, "rw");
+        RandomAccessFile decrypted = new RandomAccessFile(decryptedFile, "rw")) {
+      plain.write(payload);
+      plain.seek(0);
+      SecurityUtils.encrypt(plain.getChannel(), encrypted.getChannel(), key);
+      SecurityUtils.decrypt(encrypted.getChannel(), decrypted.getChannel(), key);
+
+      byte[] result = new byte[(int) decrypted.length()];
+      decrypted.seek(0);
+      decrypted.readFully(result);
+      assertTrue(Arrays.equals(payload, result));
+
+      // Tampered data is rejected before anything is decrypted
+      decrypted.setLength(0);
+      encrypted.seek(100);
+      int tampered = encrypted.read() ^ 1;
+      encrypted.seek(100);
+      encrypted.write(tampered);
+      try {
+        SecurityUtils.decrypt(encrypted.getChannel(), decrypted.getChannel(), key);
+        fail("Tampered data must not be decrypted");
+      } catch (GeneralSecurityException e) {
+        assertEquals(0, decrypted.length());
+      }
+    }
+  }
+
   @Test
   public void testEncryptionWithSameKeyAlwaysSame() throws GeneralSecurityException,
       UnsupportedEncodingException {
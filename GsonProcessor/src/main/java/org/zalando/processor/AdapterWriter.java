@@ -0,0 +1,332 @@
+package org.zalando.processor;
+
+import java.util.List;
+import javax.lang.model.type.TypeKind;
+import org.zalando.processor.GsonTypeAdapterProcessor.EntityField;
+
+/**
+ * Writes the source of the TypeAdapter of an entity. Primitive and String fields are read and
+ * written straight with the JsonReader and JsonWriter, every other field goes through the adapter
+ * Gson provides for its type, looked up on first use. The field names are constants unless the
+ * adapter is created with a FieldNamingStrategy.
+ */
+final class AdapterWriter {
+
+  private static final String INDENT = "  ";
+
+  private final String packageName;
+  private final String adapterName;
+  private final String entityName;
+  private final List<EntityField> fields;
+  private final StringBuilder source = new StringBuilder();
+
+  AdapterWriter(String packageName, String adapterName, String entityName,
+      List<EntityField> fields) {
+
+    this.packageName = packageName;
+    this.adapterName = adapterName;
+    this.entityName = entityName;
+    this.fields = fields;
+  }
+
+  /**
+   * Writes the adapter
+   *
+   * @return {@link String} with the source of the adapter
+   */
+  String write() {
+
+    line(0, "// Generated by GsonTypeAdapterProcessor, do not modify");
+    if (!packageName.isEmpty()) {
+      line(0, "package " + packageName + ";");
+    }
+    line(0, "");
+    line(0, "import com.google.gson.FieldNamingStrategy;");
+    line(0, "import com.google.gson.Gson;");
+    line(0, "import com.google.gson.JsonSyntaxException;");
+    line(0, "import com.google.gson.TypeAdapter;");
+    line(0, "import com.google.gson.reflect.TypeToken;");
+    line(0, "import com.google.gson.stream.JsonReader;");
+    line(0, "import com.google.gson.stream.JsonToken;");
+    line(0, "import com.google.gson.stream.JsonWriter;");
+    line(0, "import java.io.IOException;");
+    line(0, "import java.util.HashMap;");
+    line(0, "import java.util.Map;");
+    line(0, "");
+    line(0, "public final class " + adapterName + " extends TypeAdapter<" + entityName + "> {");
+    line(0, "");
+    writeFields();
+    writeConstructor();
+    writeWrite();
+    writeRead();
+    writeHelpers();
+    line(0, "}");
+    return source.toString();
+  }
+
+  private void writeFields() {
+
+    // Names of the fields with the identity naming strategy, computed at compile time
+    line(1, "private static final String[] NAMES = {");
+    for (EntityField field : fields) {
+      line(3, literal(field.serializedNames.isEmpty() ? field.name
+          : field.serializedNames.get(0)) + ",");
+    }
+    line(1, "};");
+    line(1, "private static final Map<String, Integer> INDEXES = indexes(NAMES);");
+    line(0, "");
+    line(1, "private final Gson gson;");
+    line(1, "private final String[] names;");
+    line(1, "private final Map<String, Integer> indexes;");
+    for (int i = 0; i < fields.size(); i++) {
+      if (usesAdapter(fields.get(i))) {
+        line(1, "private TypeAdapter<" + typeName(fields.get(i)) + "> adapter" + i + ";");
+      }
+    }
+    line(0, "");
+  }
+
+  private void writeConstructor() {
+
+    line(1, "// Null naming strategy for the identity, the names are then the constants");
+    line(1, "public " + adapterName + "(Gson gson, FieldNamingStrategy fieldNamingStrategy) {");
+    line(2, "this.gson = gson;");
+    line(2, "if (fieldNamingStrategy == null) {");
+    line(3, "names = NAMES;");
+    line(3, "indexes = INDEXES;");
+    line(3, "return;");
+    line(2, "}");
+    line(2, "names = new String[] {");
+    for (int i = 0; i < fields.size(); i++) {
+      final EntityField field = fields.get(i);
+      if (field.serializedNames.isEmpty()) {
+        line(4, "name(fieldNamingStrategy, " + field.declaringClass + ".class, "
+            + literal(field.name) + "),");
+      } else {
+        line(4, "NAMES[" + i + "],");
+      }
+    }
+    line(2, "};");
+    line(2, "indexes = indexes(names);");
+    line(1, "}");
+    line(0, "");
+  }
+
+  private void writeWrite() {
+
+    line(1, "@Override");
+    line(1, "public void write(JsonWriter out, " + entityName + " value) throws IOException {");
+    line(2, "if (value == null) {");
+    line(3, "out.nullValue();");
+    line(3, "return;");
+    line(2, "}");
+    line(2, "out.beginObject();");
+    for (int i = 0; i < fields.size(); i++) {
+      final EntityField field = fields.get(i);
+      final String access = "value." + field.name;
+      line(2, "out.name(names[" + i + "]);");
+      switch (field.type.getKind()) {
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case SHORT:
+        case BYTE:
+        case DOUBLE:
+          line(2, "out.value(" + access + ");");
+          break;
+        case FLOAT:
+          // Written as Gson does, without widening to double
+          line(2, "out.value(Float.valueOf(" + access + "));");
+          break;
+        case CHAR:
+          line(2, "out.value(String.valueOf(" + access + "));");
+          break;
+        default:
+          if (field.isString()) {
+            line(2, "out.value(" + access + ");");
+          } else {
+            line(2, "adapter" + i + "().write(out, " + access + ");");
+          }
+      }
+    }
+    line(2, "out.endObject();");
+    line(1, "}");
+    line(0, "");
+  }
+
+  private void writeRead() {
+
+    line(1, "@Override");
+    line(1, "public " + entityName + " read(JsonReader in) throws IOException {");
+    line(2, "if (in.peek() == JsonToken.NULL) {");
+    line(3, "in.nextNull();");
+    line(3, "return null;");
+    line(2, "}");
+    line(2, entityName + " value = new " + entityName + "();");
+    line(2, "in.beginObject();");
+    line(2, "while (in.hasNext()) {");
+    line(3, "Integer index = indexes.get(in.nextName());");
+    line(3, "if (index == null) {");
+    line(4, "in.skipValue();");
+    line(4, "continue;");
+    line(3, "}");
+    line(3, "switch (index) {");
+    for (int i = 0; i < fields.size(); i++) {
+      final EntityField field = fields.get(i);
+      final String access = "value." + field.name;
+      line(4, "case " + i + ":");
+      final String primitiveRead = primitiveRead(field);
+      if (primitiveRead != null) {
+        // Nulls leave primitives untouched, as Gson does
+        line(5, "if (in.peek() == JsonToken.NULL) {");
+        line(6, "in.nextNull();");
+        line(5, "} else {");
+        line(6, access + " = " + primitiveRead + ";");
+        line(5, "}");
+      } else if (field.isString()) {
+        line(5, access + " = readString(in);");
+      } else {
+        line(5, access + " = adapter" + i + "().read(in);");
+      }
+      line(5, "break;");
+    }
+    line(4, "default:");
+    line(5, "in.skipValue();");
+    line(3, "}");
+    line(2, "}");
+    line(2, "in.endObject();");
+    line(2, "return value;");
+    line(1, "}");
+    line(0, "");
+  }
+
+  private void writeHelpers() {
+
+    for (int i = 0; i < fields.size(); i++) {
+      if (!usesAdapter(fields.get(i))) {
+        continue;
+      }
+      final String type = typeName(fields.get(i));
+      line(1, "private TypeAdapter<" + type + "> adapter" + i + "() {");
+      line(2, "if (adapter" + i + " == null) {");
+      line(3, "adapter" + i + " = gson.getAdapter(new TypeToken<" + type + ">() {});");
+      line(2, "}");
+      line(2, "return adapter" + i + ";");
+      line(1, "}");
+      line(0, "");
+    }
+
+    line(1, "private static String readString(JsonReader in) throws IOException {");
+    line(2, "JsonToken token = in.peek();");
+    line(2, "if (token == JsonToken.NULL) {");
+    line(3, "in.nextNull();");
+    line(3, "return null;");
+    line(2, "}");
+    line(2, "return token == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean())"
+        + " : in.nextString();");
+    line(1, "}");
+    line(0, "");
+    // Lenient as the adapters of Gson
+    line(1, "private static boolean readBoolean(JsonReader in) throws IOException {");
+    line(2, "return in.peek() == JsonToken.STRING ? Boolean.parseBoolean(in.nextString())"
+        + " : in.nextBoolean();");
+    line(1, "}");
+    line(0, "");
+    line(1, "private static char readChar(JsonReader in) throws IOException {");
+    line(2, "String value = in.nextString();");
+    line(2, "if (value.length() != 1) {");
+    line(3, "throw new JsonSyntaxException(\"Expecting character, got: \" + value);");
+    line(2, "}");
+    line(2, "return value.charAt(0);");
+    line(1, "}");
+    line(0, "");
+    line(1, "private static Map<String, Integer> indexes(String[] names) {");
+    line(2, "Map<String, Integer> indexes = new HashMap<>();");
+    line(2, "for (int i = 0; i < names.length; i++) {");
+    line(3, "indexes.put(names[i], i);");
+    line(2, "}");
+    for (int i = 0; i < fields.size(); i++) {
+      final List<String> names = fields.get(i).serializedNames;
+      for (int j = 1; j < names.size(); j++) {
+        line(2, "indexes.put(" + literal(names.get(j)) + ", " + i + ");");
+      }
+    }
+    line(2, "return indexes;");
+    line(1, "}");
+    line(0, "");
+    line(1, "private static String name(FieldNamingStrategy fieldNamingStrategy, Class<?> type,");
+    line(3, "String field) {");
+    line(2, "try {");
+    line(3, "return fieldNamingStrategy.translateName(type.getDeclaredField(field));");
+    line(2, "} catch (NoSuchFieldException e) {");
+    line(3, "throw new IllegalStateException(e);");
+    line(2, "}");
+    line(1, "}");
+  }
+
+  private static boolean usesAdapter(EntityField field) {
+
+    return !field.type.getKind().isPrimitive() && !field.isString();
+  }
+
+  private static String typeName(EntityField field) {
+
+    return field.type.toString();
+  }
+
+  /**
+   * Provides the expression reading the given primitive field
+   *
+   * @param field {@link EntityField} to read
+   * @return {@link String} with the expression, null if the field is not primitive
+   */
+  private static String primitiveRead(EntityField field) {
+
+    final TypeKind kind = field.type.getKind();
+    switch (kind) {
+      case BOOLEAN:
+        return "readBoolean(in)";
+      case INT:
+        return "in.nextInt()";
+      case LONG:
+        return "in.nextLong()";
+      case DOUBLE:
+        return "in.nextDouble()";
+      case FLOAT:
+        return "(float) in.nextDouble()";
+      case SHORT:
+        return "(short) in.nextInt()";
+      case BYTE:
+        return "(byte) in.nextInt()";
+      case CHAR:
+        return "readChar(in)";
+      default:
+        return null;
+    }
+  }
+
+  static String literal(String value) {
+
+    final StringBuilder literal = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        literal.append('\\').append(c);
+      } else if (c < 0x20 || c > 0x7e) {
+        literal.append(String.format("\\u%04x", (int) c));
+      } else {
+        literal.append(c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+
+  private void line(int indentation, String line) {
+
+    for (int i = 0; i < indentation; i++) {
+      source.append(INDENT);
+    }
+    source.append(line).append('\n');
+  }
+
+}
@@ -0,0 +1,331 @@
+package org.zalando.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor generating a Gson TypeAdapter for every class annotated with
+ * org.zalando.core.network.GenerateTypeAdapter. The adapter of a class is generated in the same
+ * package, named as its binary name plus "_TypeAdapter", and reads and writes the fields directly
+ * instead of through reflection.
+ *
+ * The adapters of a compilation are created by a generated registry, a TypeAdapterFactory named
+ * org.zalando.core.network.GeneratedTypeAdapters by default, which GeneratedTypeAdapterFactory, in
+ * Core, loads once. Libraries with annotated classes must give their registry another name with
+ * the typeAdapterRegistry option, and register it themselves, so it does not clash with the one
+ * of the app.
+ *
+ * Fields are serialised as Gson does by default: static and transient fields are skipped,
+ * inherited fields are included, and SerializedName names and alternates are honoured. The names
+ * of the other fields are computed at compile time, and only resolved through reflection, once
+ * per adapter, when the factory has a FieldNamingStrategy other than the identity.
+ */
+@SupportedAnnotationTypes(GsonTypeAdapterProcessor.ANNOTATION)
+@SupportedOptions(GsonTypeAdapterProcessor.REGISTRY_OPTION)
+public class GsonTypeAdapterProcessor extends AbstractProcessor {
+
+  static final String ANNOTATION = "org.zalando.core.network.GenerateTypeAdapter";
+  static final String REGISTRY_OPTION = "typeAdapterRegistry";
+  static final String DEFAULT_REGISTRY = "org.zalando.core.network.GeneratedTypeAdapters";
+  private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+  private static final String OBJECT = "java.lang.Object";
+  private static final String STRING = "java.lang.String";
+  private static final String ADAPTER_SUFFIX = "_TypeAdapter";
+
+  // Qualified names of the adapters by binary name of their entity, waiting for the registry
+  private final Map<String, String> adapters = new TreeMap<>();
+  private final List<Element> originatingElements = new ArrayList<>();
+  private boolean registryWritten;
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+    boolean found = false;
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        found = true;
+        if (element.getKind() != ElementKind.CLASS) {
+          error(element, "@GenerateTypeAdapter can only be applied to classes");
+          continue;
+        }
+        if (registryWritten) {
+          error(element, "@GenerateTypeAdapter class generated after the adapter registry");
+          continue;
+        }
+        try {
+          generateAdapter((TypeElement) element);
+        } catch (InvalidEntityException e) {
+          error(e.element, e.getMessage());
+        } catch (IOException e) {
+          error(element, "Unable to write the type adapter: " + e.getMessage());
+        }
+      }
+    }
+
+    // Written in the first round without new entities, files created in the last round are not
+    // compiled with annotation processing
+    if (!found && !registryWritten && !adapters.isEmpty() && !roundEnv.processingOver()) {
+      registryWritten = true;
+      try {
+        writeRegistry();
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "Unable to write the type adapter registry: " + e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Validates the given entity and writes its adapter
+   *
+   * @param entity {@link TypeElement} of the annotated class
+   * @throws InvalidEntityException if the entity can not be handled by a generated adapter
+   * @throws IOException if the source file can not be written
+   */
+  private void generateAdapter(TypeElement entity) throws InvalidEntityException, IOException {
+
+    validateEntity(entity);
+
+    final String packageName = processingEnv.getElementUtils().getPackageOf(entity)
+        .getQualifiedName().toString();
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+    final String adapterName = (packageName.isEmpty() ? binaryName
+        : binaryName.substring(packageName.length() + 1)) + ADAPTER_SUFFIX;
+    final List<EntityField> fields = collectFields(entity, packageName);
+
+    final String source = new AdapterWriter(packageName, adapterName,
+        entity.getQualifiedName().toString(), fields).write();
+    final String qualifiedAdapterName = packageName.isEmpty() ? adapterName
+        : packageName + "." + adapterName;
+    try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedAdapterName, entity)
+        .openWriter()) {
+      writer.write(source);
+    }
+    adapters.put(binaryName, qualifiedAdapterName);
+    originatingElements.add(entity);
+  }
+
+  /**
+   * Writes the registry creating the adapters generated in this compilation
+   *
+   * @throws IOException if the source file can not be written
+   */
+  private void writeRegistry() throws IOException {
+
+    final String option = processingEnv.getOptions().get(REGISTRY_OPTION);
+    final String registryName = option == null || option.isEmpty() ? DEFAULT_REGISTRY : option;
+    final int separator = registryName.lastIndexOf('.');
+    final String source = new RegistryWriter(
+        separator < 0 ? "" : registryName.substring(0, separator),
+        registryName.substring(separator + 1), adapters).write();
+    try (Writer writer = processingEnv.getFiler().createSourceFile(registryName,
+        originatingElements.toArray(new Element[originatingElements.size()])).openWriter()) {
+      writer.write(source);
+    }
+  }
+
+  private void validateEntity(TypeElement entity) throws InvalidEntityException {
+
+    if (!entity.getTypeParameters().isEmpty()) {
+      throw new InvalidEntityException(entity,
+          "@GenerateTypeAdapter classes can not have type parameters");
+    }
+    if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+      throw new InvalidEntityException(entity, "@GenerateTypeAdapter classes can not be abstract");
+    }
+    for (Element enclosing = entity; enclosing instanceof TypeElement;
+        enclosing = enclosing.getEnclosingElement()) {
+      final TypeElement type = (TypeElement) enclosing;
+      if (type.getModifiers().contains(Modifier.PRIVATE)) {
+        throw new InvalidEntityException(entity,
+            "@GenerateTypeAdapter classes and their enclosing classes can not be private");
+      }
+      if (type.getNestingKind() == NestingKind.MEMBER
+          && !type.getModifiers().contains(Modifier.STATIC)) {
+        throw new InvalidEntityException(entity,
+            "Nested @GenerateTypeAdapter classes must be static");
+      }
+    }
+
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(
+        entity.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()
+          && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        return;
+      }
+    }
+    throw new InvalidEntityException(entity,
+        "@GenerateTypeAdapter classes need a non-private constructor without arguments");
+  }
+
+  /**
+   * Collects the serialised fields of the entity and of its superclasses
+   *
+   * @param entity {@link TypeElement} of the annotated class
+   * @param packageName {@link String} with the package of the generated adapter
+   * @return {@link List} of {@link EntityField}
+   * @throws InvalidEntityException if a field can not be accessed by the adapter
+   */
+  private List<EntityField> collectFields(TypeElement entity, String packageName)
+      throws InvalidEntityException {
+
+    final DeclaredType entityType = (DeclaredType) entity.asType();
+    final List<EntityField> fields = new ArrayList<>();
+    TypeElement type = entity;
+    while (type != null && !OBJECT.equals(type.getQualifiedName().toString())) {
+      final String typePackage = processingEnv.getElementUtils().getPackageOf(type)
+          .getQualifiedName().toString();
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+          continue;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)
+            || modifiers.contains(Modifier.FINAL)
+            || (!modifiers.contains(Modifier.PUBLIC) && !typePackage.equals(packageName))) {
+          throw new InvalidEntityException(field, String.format(
+              "Field %s of a @GenerateTypeAdapter class must be non-final and accessible from %s",
+              field.getSimpleName(), packageName));
+        }
+        final List<String> serializedNames = serializedNames(field);
+        if (serializedNames.isEmpty() && !isAnnotated(type)) {
+          // The consumer ProGuard rules of Core only keep the fields of annotated classes
+          processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format(
+              "Field %s is named through reflection, give it a @SerializedName or keep its name"
+                  + " in the ProGuard rules", field.getSimpleName()), field);
+        }
+        // Resolves the type variables of generic superclasses
+        final TypeMirror fieldType = processingEnv.getTypeUtils().asMemberOf(entityType, field);
+        fields.add(new EntityField(field.getSimpleName().toString(),
+            type.getQualifiedName().toString(), fieldType, serializedNames));
+      }
+      final TypeMirror superclass = type.getSuperclass();
+      type = superclass.getKind() == TypeKind.DECLARED
+          ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+    return fields;
+  }
+
+  /**
+   * Reads the SerializedName annotation of the given field
+   *
+   * @param field {@link VariableElement} of the field
+   * @return {@link List} of {@link String} with the name and then the alternates, empty if not
+   * annotated
+   */
+  private static List<String> serializedNames(VariableElement field) {
+
+    final List<String> names = new ArrayList<>();
+    for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+      if (!SERIALIZED_NAME.equals(annotation.getAnnotationType().toString())) {
+        continue;
+      }
+      String value = null;
+      final List<String> alternates = new ArrayList<>();
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+          : annotation.getElementValues().entrySet()) {
+        final String elementName = entry.getKey().getSimpleName().toString();
+        if ("value".equals(elementName)) {
+          value = (String) entry.getValue().getValue();
+        } else if ("alternate".equals(elementName)) {
+          @SuppressWarnings("unchecked")
+          final List<? extends AnnotationValue> values =
+              (List<? extends AnnotationValue>) entry.getValue().getValue();
+          for (AnnotationValue alternate : values) {
+            alternates.add((String) alternate.getValue());
+          }
+        }
+      }
+      names.add(value);
+      names.addAll(alternates);
+    }
+    return names;
+  }
+
+  private static boolean isAnnotated(TypeElement type) {
+
+    for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+      if (ANNOTATION.equals(annotation.getAnnotationType().toString())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void error(Element element, String message) {
+
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  /**
+   * Serialised field of an entity
+   */
+  static final class EntityField {
+
+    final String name;
+    final String declaringClass;
+    final TypeMirror type;
+    // Name given with SerializedName followed by its alternates, empty if not annotated
+    final List<String> serializedNames;
+
+    EntityField(String name, String declaringClass, TypeMirror type,
+        List<String> serializedNames) {
+
+      this.name = name;
+      this.declaringClass = declaringClass;
+      this.type = type;
+      this.serializedNames = serializedNames;
+    }
+
+    boolean isString() {
+
+      return type.getKind() == TypeKind.DECLARED && STRING.equals(type.toString());
+    }
+  }
+
+  /**
+   * Thrown when an annotated entity can not be handled by a generated adapter
+   */
+  private static final class InvalidEntityException extends Exception {
+
+    final Element element;
+
+    InvalidEntityException(Element element, String message) {
+
+      super(message);
+      this.element = element;
+    }
+  }
+
+}
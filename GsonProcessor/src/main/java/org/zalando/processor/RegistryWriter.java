@@ -0,0 +1,82 @@
+package org.zalando.processor;
+
+import java.util.Map;
+
+/**
+ * Writes the source of the TypeAdapterFactory creating the generated adapters. The adapters are
+ * instantiated directly, matched by the binary name of the requested class, so neither the
+ * adapters nor the entities are looked up through reflection.
+ */
+final class RegistryWriter {
+
+  private static final String INDENT = "  ";
+
+  private final String packageName;
+  private final String registryName;
+  // Qualified names of the adapters by binary name of their entity
+  private final Map<String, String> adapters;
+  private final StringBuilder source = new StringBuilder();
+
+  RegistryWriter(String packageName, String registryName, Map<String, String> adapters) {
+
+    this.packageName = packageName;
+    this.registryName = registryName;
+    this.adapters = adapters;
+  }
+
+  /**
+   * Writes the registry
+   *
+   * @return {@link String} with the source of the registry
+   */
+  String write() {
+
+    line(0, "// Generated by GsonTypeAdapterProcessor, do not modify");
+    if (!packageName.isEmpty()) {
+      line(0, "package " + packageName + ";");
+    }
+    line(0, "");
+    line(0, "import com.google.gson.FieldNamingPolicy;");
+    line(0, "import com.google.gson.FieldNamingStrategy;");
+    line(0, "import com.google.gson.Gson;");
+    line(0, "import com.google.gson.TypeAdapter;");
+    line(0, "import com.google.gson.TypeAdapterFactory;");
+    line(0, "import com.google.gson.reflect.TypeToken;");
+    line(0, "");
+    line(0, "public final class " + registryName + " implements TypeAdapterFactory {");
+    line(0, "");
+    // Null for the identity, the adapters then use the names computed at compile time
+    line(1, "private final FieldNamingStrategy fieldNamingStrategy;");
+    line(0, "");
+    line(1, "public " + registryName + "(FieldNamingStrategy fieldNamingStrategy) {");
+    line(2, "this.fieldNamingStrategy = fieldNamingStrategy == FieldNamingPolicy.IDENTITY ? null");
+    line(4, ": fieldNamingStrategy;");
+    line(1, "}");
+    line(0, "");
+    line(1, "@Override");
+    line(1, "@SuppressWarnings(\"unchecked\")");
+    line(1, "public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {");
+    line(2, "switch (type.getRawType().getName()) {");
+    for (Map.Entry<String, String> adapter : adapters.entrySet()) {
+      line(3, "case " + AdapterWriter.literal(adapter.getKey()) + ":");
+      line(4, "return (TypeAdapter<T>) (TypeAdapter<?>) new " + adapter.getValue()
+          + "(gson, fieldNamingStrategy);");
+    }
+    line(3, "default:");
+    line(4, "return null;");
+    line(2, "}");
+    line(1, "}");
+    line(0, "");
+    line(0, "}");
+    return source.toString();
+  }
+
+  private void line(int indentation, String line) {
+
+    for (int i = 0; i < indentation; i++) {
+      source.append(INDENT);
+    }
+    source.append(line).append('\n');
+  }
+
+}
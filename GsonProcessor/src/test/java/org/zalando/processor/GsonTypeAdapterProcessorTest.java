@@ -0,0 +1,248 @@
+package org.zalando.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link GsonTypeAdapterProcessor}. The behaviour of the generated adapters is tested in
+ * Core, against the reflective adapters of Gson
+ */
+public class GsonTypeAdapterProcessorTest {
+
+  // Same annotation as in Core, which is an Android library
+  private static final String ANNOTATION_SOURCE = "package org.zalando.core.network;\n"
+      + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+      + "public @interface GenerateTypeAdapter {}";
+
+  private File outputDirectory;
+  private DiagnosticCollector<JavaFileObject> diagnostics;
+
+  @Before
+  public void setUp() throws IOException {
+
+    outputDirectory = File.createTempFile("processor", "");
+    assertTrue(outputDirectory.delete() && outputDirectory.mkdir());
+    diagnostics = new DiagnosticCollector<>();
+  }
+
+  @After
+  public void tearDown() {
+
+    delete(outputDirectory);
+  }
+
+  @Test
+  public void testGeneratesCompilingAdapters() {
+
+    assertTrue(compile("test.Entity", "package test;\n"
+        + "import com.google.gson.annotations.SerializedName;\n"
+        + "import java.util.List;\n"
+        + "@org.zalando.core.network.GenerateTypeAdapter\n"
+        + "public class Entity extends Base<String> {\n"
+        + "  static int ignoredStatic;\n"
+        + "  transient int ignoredTransient;\n"
+        + "  public int number;\n"
+        + "  char character;\n"
+        + "  @SerializedName(value = \"renamed\", alternate = {\"old\"}) String name;\n"
+        + "  List<Nested> nested;\n"
+        + "  @org.zalando.core.network.GenerateTypeAdapter\n"
+        + "  public static class Nested {\n"
+        + "    int[] values;\n"
+        + "  }\n"
+        + "}\n"
+        + "class Base<T> {\n"
+        + "  @SerializedName(\"generic\") T generic;\n"
+        + "}"));
+
+    assertEquals(Collections.emptyList(), messages(Diagnostic.Kind.WARNING));
+    assertTrue(new File(outputDirectory, "test/Entity_TypeAdapter.class").exists());
+    assertTrue(new File(outputDirectory, "test/Entity$Nested_TypeAdapter.class").exists());
+    assertTrue(new File(outputDirectory, "org/zalando/core/network/GeneratedTypeAdapters.class")
+        .exists());
+  }
+
+  @Test
+  public void testNamesRegistryWithOption() {
+
+    assertTrue(compile("test.Entity", "package test;\n"
+        + "@org.zalando.core.network.GenerateTypeAdapter\n"
+        + "public class Entity {\n"
+        + "  int value;\n"
+        + "}", "-A" + GsonTypeAdapterProcessor.REGISTRY_OPTION + "=library.LibraryAdapters"));
+
+    assertEquals(Collections.emptyList(), messages(Diagnostic.Kind.WARNING));
+    assertTrue(new File(outputDirectory, "library/LibraryAdapters.class").exists());
+    assertTrue(!new File(outputDirectory, "org/zalando/core/network/GeneratedTypeAdapters.class")
+        .exists());
+  }
+
+  @Test
+  public void testSkipsRegistryWithoutEntities() {
+
+    assertTrue(compile("test.Entity", "package test;\n"
+        + "public class Entity {\n"
+        + "}"));
+
+    assertTrue(!new File(outputDirectory, "org/zalando/core/network/GeneratedTypeAdapters.class")
+        .exists());
+  }
+
+  @Test
+  public void testRejectsPrivateAndFinalFields() {
+
+    assertTrue(!compile("test.Entity", "package test;\n"
+        + "@org.zalando.core.network.GenerateTypeAdapter\n"
+        + "public class Entity {\n"
+        + "  private int hidden;\n"
+        + "  final int constant = 1;\n"
+        + "}"));
+
+    assertEquals(Arrays.asList(
+        "Field hidden of a @GenerateTypeAdapter class must be non-final and accessible from test"),
+        messages(Diagnostic.Kind.ERROR));
+  }
+
+  @Test
+  public void testRejectsEntitiesWithoutConstructor() {
+
+    assertTrue(!compile("test.Entity", "package test;\n"
+        + "@org.zalando.core.network.GenerateTypeAdapter\n"
+        + "public class Entity {\n"
+        + "  Entity(int value) {}\n"
+        + "}"));
+
+    assertEquals(Arrays.asList(
+        "@GenerateTypeAdapter classes need a non-private constructor without arguments"),
+        messages(Diagnostic.Kind.ERROR));
+  }
+
+  @Test
+  public void testRejectsAbstractAndInnerClasses() {
+
+    assertTrue(!compile("test.Entity", "package test;\n"
+        + "public class Entity {\n"
+        + "  @org.zalando.core.network.GenerateTypeAdapter\n"
+        + "  abstract static class Abstract {}\n"
+        + "  @org.zalando.core.network.GenerateTypeAdapter\n"
+        + "  class Inner {}\n"
+        + "}"));
+
+    assertEquals(Arrays.asList("@GenerateTypeAdapter classes can not be abstract",
+        "Nested @GenerateTypeAdapter classes must be static"), messages(Diagnostic.Kind.ERROR));
+  }
+
+  @Test
+  public void testWarnsAboutFieldsNamedThroughReflectionInOtherClasses() {
+
+    assertTrue(compile("test.Entity", "package test;\n"
+        + "@org.zalando.core.network.GenerateTypeAdapter\n"
+        + "public class Entity extends Base {\n"
+        + "}\n"
+        + "class Base {\n"
+        + "  int unnamed;\n"
+        + "  @com.google.gson.annotations.SerializedName(\"named\") int named;\n"
+        + "}"));
+
+    assertEquals(Arrays.asList("Field unnamed is named through reflection, give it a"
+            + " @SerializedName or keep its name in the ProGuard rules"),
+        messages(Diagnostic.Kind.WARNING));
+  }
+
+  /**
+   * Compiles the given source, and the annotation, with the processor
+   *
+   * @param className {@link String} with the name of the class in the source
+   * @param source {@link String} with the source
+   * @param options {@link String} with additional options of the compiler
+   * @return {@link Boolean} indicating if the compilation succeeded
+   */
+  private boolean compile(String className, String source, String... options) {
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, Locale.ROOT, null);
+    try {
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+          Collections.singletonList(outputDirectory));
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
+          Collections.singletonList(outputDirectory));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    final List<JavaFileObject> sources = new ArrayList<>();
+    sources.add(new Source("org.zalando.core.network.GenerateTypeAdapter", ANNOTATION_SOURCE));
+    sources.add(new Source(className, source));
+    // Gson comes from the classpath of the test
+    final List<String> compilerOptions = new ArrayList<>(
+        Arrays.asList("-classpath", System.getProperty("java.class.path")));
+    compilerOptions.addAll(Arrays.asList(options));
+    final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+        compilerOptions, null, sources);
+    task.setProcessors(Collections.singletonList(new GsonTypeAdapterProcessor()));
+    return task.call();
+  }
+
+  private List<String> messages(Diagnostic.Kind kind) {
+
+    final List<String> messages = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == kind) {
+        messages.add(diagnostic.getMessage(Locale.ROOT));
+      }
+    }
+    return messages;
+  }
+
+  private static void delete(File file) {
+
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Source held in memory
+   */
+  private static final class Source extends SimpleJavaFileObject {
+
+    private final String content;
+
+    Source(String className, String content) {
+
+      super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      this.content = content;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+
+      return content;
+    }
+  }
+
+}
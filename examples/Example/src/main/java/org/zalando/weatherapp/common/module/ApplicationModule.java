@@ -5,6 +5,7 @@ import android.content.Context;
 import dagger.Module;
 import dagger.Provides;
 import javax.inject.Singleton;
+import org.zalando.core.ui.adapter.ViewHolderPools;
 
 @Module
 public class ApplicationModule {
@@ -41,4 +42,15 @@ public class ApplicationModule {
   public Context provideApplicationContext() {
     return application.getApplicationContext();
   }
+
+  /**
+   * Provides the {@link ViewHolderPools} shared by the lists of the app for dependency injections
+   *
+   * @return {@link ViewHolderPools} of the app
+   */
+  @Provides
+  @Singleton
+  public ViewHolderPools provideViewHolderPools() {
+    return new ViewHolderPools(application);
+  }
 }
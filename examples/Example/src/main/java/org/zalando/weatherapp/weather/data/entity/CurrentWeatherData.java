@@ -2,7 +2,9 @@ package org.zalando.weatherapp.weather.data.entity;
 
 import com.google.gson.annotations.SerializedName;
 import java.util.ArrayList;
+import org.zalando.core.network.GenerateTypeAdapter;
 
+@GenerateTypeAdapter
 public class CurrentWeatherData extends WeatherData {
 
   @SerializedName("name")
@@ -16,6 +18,7 @@ public class CurrentWeatherData extends WeatherData {
   @SerializedName("main")
   public MainData main;
 
+  @GenerateTypeAdapter
   public static class MainData {
 
     public float temp;
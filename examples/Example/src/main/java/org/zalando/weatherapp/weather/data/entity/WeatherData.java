@@ -1,7 +1,10 @@
 package org.zalando.weatherapp.weather.data.entity;
 
+import org.zalando.core.network.GenerateTypeAdapter;
+
 public class WeatherData {
 
+  @GenerateTypeAdapter
   public static class Weather {
 
     public String description;
@@ -2,18 +2,22 @@ package org.zalando.weatherapp.weather.data.entity;
 
 import com.google.gson.annotations.SerializedName;
 import java.util.ArrayList;
+import org.zalando.core.network.GenerateTypeAdapter;
 
+@GenerateTypeAdapter
 public class WeatherForecastListData extends WeatherData {
 
   public Location city;
 
   public ArrayList<ForecastData> list;
 
+  @GenerateTypeAdapter
   public static class Location {
 
     public String name;
   }
 
+  @GenerateTypeAdapter
   public static class ForecastData {
 
     @SerializedName("dt")
@@ -22,6 +26,7 @@ public class WeatherForecastListData extends WeatherData {
     public ArrayList<Weather> weather;
   }
 
+  @GenerateTypeAdapter
   public static class Temperature {
 
     public float min;
@@ -1,6 +1,5 @@
 package org.zalando.weatherapp.weather.ui.adapter;
 
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import java.util.List;
@@ -18,10 +17,8 @@ public class WeatherForecastAdapter extends
 
   @Override
   public WeatherForecastViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-    // Get LayoutInflater to inflate view
-    final LayoutInflater inflater = LayoutInflater.from(parent.getContext());
-    // Inflate the custom layout
-    final View contactView = inflater.inflate(R.layout.weather_forecast_list_item, parent, false);
+    // Inflate the custom layout, taking the pre-inflated one if there is any
+    final View contactView = inflate(parent, R.layout.weather_forecast_list_item);
     return new WeatherForecastViewHolder(contactView);
   }
 }
@@ -9,6 +9,7 @@ import butterknife.BindView;
 import java.util.ArrayList;
 import java.util.List;
 import javax.inject.Inject;
+import org.zalando.core.ui.adapter.ViewHolderPools;
 import org.zalando.core.ui.fragment.BaseFragment;
 import org.zalando.core.ui.presenter.BasePresenter;
 import org.zalando.weatherapp.R;
@@ -20,12 +21,18 @@ import org.zalando.weatherapp.weather.ui.view.WeatherForecastFragmentView;
 
 public class WeatherForecastFragment extends BaseFragment implements WeatherForecastFragmentView {
 
+  // Forecast days requested by OpenWeatherRestApi
+  private static final int PRE_INFLATED_ITEMS = 7;
+
   @BindView(R.id.weather_recycler)
   RecyclerView recyclerView;
 
   @Inject
   WeatherForecastFragmentPresenter presenter;
 
+  @Inject
+  ViewHolderPools viewHolderPools;
+
   private WeatherForecastAdapter recyclerAdapter;
 
   @Override
@@ -53,6 +60,10 @@ public class WeatherForecastFragment extends BaseFragment implements WeatherFore
     recyclerView.setAdapter(recyclerAdapter);
     // Set layout manager to position the items
     recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+    // Share recycled items with the other forecast lists, and inflate the first ones in background
+    // while the forecasts load
+    viewHolderPools.attach(recyclerView)
+        .preInflate(recyclerView, 0, R.layout.weather_forecast_list_item, PRE_INFLATED_ITEMS);
   }
 
   @Override